@@ -0,0 +1,63 @@
+package com.zjgsu.ljy.coursecloud.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ljy.coursecloud.catalog.controller.CourseController;
+import com.zjgsu.ljy.coursecloud.user.controller.UserController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 控制器响应包装（ServiceResponse：port / hostname / data / count / status）的构建开销。
+ * rows=0 时只剩包装本身，rows 越大映射开销占比越高。
+ * 课程列表响应为序列化后的字节：listCourses 关闭目录快照，每次都构建包装并序列化；
+ * listCoursesCached 命中快照对应的响应缓存，只作对照。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ControllerEnvelopeBenchmark {
+
+    @Param({"0", "1", "100"})
+    public int rows;
+
+    private UserController userController;
+    private CourseController courseController;
+    private CourseController cachedCourseController;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Fixtures.objectMapper();
+        userController = Controllers.userController(Fixtures.students(rows), objectMapper);
+        courseController = Controllers.courseController(Fixtures.courses(rows), objectMapper, false);
+        cachedCourseController = Controllers.courseController(Fixtures.courses(rows), objectMapper, true);
+    }
+
+    @Benchmark
+    public Object listStudents() {
+        return userController.getAllStudents();
+    }
+
+    @Benchmark
+    public Object listCourses() {
+        return courseController.listCourses(null).getBody();
+    }
+
+    @Benchmark
+    public Object listCoursesCached() {
+        return cachedCourseController.listCourses(null).getBody();
+    }
+}
@@ -0,0 +1,64 @@
+package com.zjgsu.ljy.coursecloud.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ljy.coursecloud.catalog.controller.CourseController;
+import com.zjgsu.ljy.coursecloud.catalog.model.Course;
+import com.zjgsu.ljy.coursecloud.catalog.repository.CourseRepository;
+import com.zjgsu.ljy.coursecloud.catalog.service.CourseCatalog;
+import com.zjgsu.ljy.coursecloud.catalog.service.CourseService;
+import com.zjgsu.ljy.coursecloud.common.web.InstanceIdentity;
+import com.zjgsu.ljy.coursecloud.enrollment.admission.AdmissionGate;
+import com.zjgsu.ljy.coursecloud.enrollment.controller.EnrollmentController;
+import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentRecord;
+import com.zjgsu.ljy.coursecloud.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ljy.coursecloud.enrollment.service.EnrollmentService;
+import com.zjgsu.ljy.coursecloud.user.controller.UserController;
+import com.zjgsu.ljy.coursecloud.user.model.Student;
+import com.zjgsu.ljy.coursecloud.user.repository.StudentRepository;
+import com.zjgsu.ljy.coursecloud.user.repository.TeacherRepository;
+import com.zjgsu.ljy.coursecloud.user.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 以桩仓库装配各服务的真实控制器，列表接口直接返回预先构造好的实体
+ */
+final class Controllers {
+
+    static final String PORT = "8080";
+
+    private Controllers() {
+    }
+
+    static UserController userController(List<Student> students, ObjectMapper objectMapper) {
+        StudentRepository studentRepository = Fixtures.stub(StudentRepository.class,
+                (method, args) -> "findAll".equals(method) ? students : null);
+        TeacherRepository teacherRepository = Fixtures.stub(TeacherRepository.class, (method, args) -> null);
+        return new UserController(new UserService(studentRepository, teacherRepository, null, null), objectMapper,
+                new InstanceIdentity(PORT));
+    }
+
+    /**
+     * snapshot=false 时关闭课程目录快照：每次列表请求都从仓库读取、映射并序列化，不命中响应缓存
+     */
+    static CourseController courseController(List<Course> courses, ObjectMapper objectMapper, boolean snapshot) {
+        CourseRepository courseRepository = Fixtures.stub(CourseRepository.class,
+                (method, args) -> "findAll".equals(method) ? courses : null);
+        CourseCatalog courseCatalog = new CourseCatalog(courseRepository, null, snapshot);
+        return new CourseController(courseRepository,
+                new CourseService(courseRepository, null, null, null, courseCatalog, null), objectMapper,
+                new InstanceIdentity(PORT), courseCatalog, Duration.ZERO);
+    }
+
+    static EnrollmentController enrollmentController(List<EnrollmentRecord> records, ObjectMapper objectMapper) {
+        EnrollmentRepository repository = Fixtures.stub(EnrollmentRepository.class,
+                (method, args) -> "findAll".equals(method) ? records : null);
+        EnrollmentService service = new EnrollmentService(null, null, repository, null, null, null, null, null, null, null, null,
+                null, null);
+        return new EnrollmentController(service, objectMapper,
+                new InstanceIdentity(PORT),
+                new AdmissionGate(new SimpleMeterRegistry(), false, 1, 1, 0, Duration.ZERO));
+    }
+}
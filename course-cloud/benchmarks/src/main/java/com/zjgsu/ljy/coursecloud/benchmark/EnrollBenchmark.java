@@ -0,0 +1,158 @@
+package com.zjgsu.ljy.coursecloud.benchmark;
+
+import com.zjgsu.ljy.coursecloud.enrollment.EnrollmentApplication;
+import com.zjgsu.ljy.coursecloud.enrollment.client.CatalogServiceClient;
+import com.zjgsu.ljy.coursecloud.enrollment.client.DownstreamMetrics;
+import com.zjgsu.ljy.coursecloud.enrollment.client.UserServiceClient;
+import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentRecord;
+import com.zjgsu.ljy.coursecloud.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ljy.coursecloud.enrollment.service.EnrollmentIndex;
+import com.zjgsu.ljy.coursecloud.enrollment.service.EnrollmentMetrics;
+import com.zjgsu.ljy.coursecloud.enrollment.service.EnrollmentService;
+import com.zjgsu.ljy.coursecloud.enrollment.service.SeatReleases;
+import com.zjgsu.ljy.coursecloud.enrollment.service.StudentLocks;
+import com.zjgsu.ljy.coursecloud.enrollment.service.StudentLookupCache;
+import com.zjgsu.ljy.coursecloud.enrollment.service.Waitlist;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单条选课热路径 EnrollmentService.enroll：真实的并发校验、WebClient 解码与熔断 / 舱壁链路，
+ * 下游 HTTP 与数据库以进程内桩替代（不计网络与 SQL 耗时）。
+ *
+ * knownStudent 命中学生存在性缓存，只调用 catalog-service；unknownStudent 每次都需远程校验学生。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnrollBenchmark {
+
+    private static final String COURSE_ID = Fixtures.course(1).getId();
+    private static final String KNOWN_STUDENT_ID = "S00000001";
+
+    private static final String STUDENT_BODY = """
+            {"port":"8081","hostname":"user-service","status":"SUCCESS","message":null,\
+            "data":{"id":"1","studentId":"%s","name":"学生","major":"计算机科学与技术","grade":2023}}""";
+    private static final String SEAT_BODY = """
+            {"port":"8082","hostname":"catalog-service","courseId":"%s","seats":1,"status":"SUCCESS","message":null}""";
+
+    private final AtomicLong studentSequence = new AtomicLong();
+    private AsyncTaskExecutor executor;
+    private EnrollmentService enrollmentService;
+
+    @Setup
+    public void setUp() throws Exception {
+        WebClient.Builder builder = WebClient.builder().exchangeFunction(EnrollBenchmark::exchange);
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DownstreamMetrics downstreamMetrics = new DownstreamMetrics(meterRegistry);
+        UserServiceClient userServiceClient = new UserServiceClient(builder, "http://user-service",
+                Duration.ofSeconds(2), circuitBreakerRegistry, bulkheadRegistry, downstreamMetrics);
+        CatalogServiceClient catalogServiceClient = new CatalogServiceClient(builder, "http://catalog-service",
+                Duration.ofSeconds(2), circuitBreakerRegistry, bulkheadRegistry, downstreamMetrics);
+
+        EnrollmentRepository repository = Fixtures.stub(EnrollmentRepository.class, (method, args) ->
+                switch (method) {
+                    case "findCourseIdsByStudentId" -> List.of();
+                    case "saveAndFlush" -> persist((EnrollmentRecord) args[0]);
+                    default -> null;
+                });
+
+        // 与生产一致的扇出线程池配置
+        executor = new EnrollmentApplication().enrollmentExecutor(64, false);
+        if (executor instanceof InitializingBean initializingBean) {
+            initializingBean.afterPropertiesSet();
+        }
+
+        StudentLookupCache studentLookupCache = new StudentLookupCache(meterRegistry,
+                10_000, Duration.ofMinutes(10));
+        studentLookupCache.markKnown(KNOWN_STUDENT_ID);
+
+        enrollmentService = new EnrollmentService(userServiceClient, catalogServiceClient, repository,
+                null, studentLookupCache, executor, null, new EnrollmentMetrics(meterRegistry),
+                new EnrollmentIndex(null, null, meterRegistry, false),
+                new Waitlist(null, null, null, meterRegistry, false, 1000, 30000),
+                new TransactionTemplate(Fixtures.stub(PlatformTransactionManager.class, (method, args) ->
+                        "getTransaction".equals(method) ? new SimpleTransactionStatus() : null)),
+                new StudentLocks(1024),
+                new SeatReleases(catalogServiceClient, meterRegistry, 500, 30000, Duration.ofHours(1)));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (executor instanceof DisposableBean disposableBean) {
+            disposableBean.destroy();
+        }
+    }
+
+    @Benchmark
+    public EnrollmentRecord knownStudent() {
+        return enrollmentService.enroll(COURSE_ID, KNOWN_STUDENT_ID);
+    }
+
+    @Benchmark
+    public EnrollmentRecord unknownStudent() {
+        // 每次使用新学号，保证学生缓存不命中
+        return enrollmentService.enroll(COURSE_ID, "U" + studentSequence.incrementAndGet());
+    }
+
+    private static EnrollmentRecord persist(EnrollmentRecord record) {
+        record.setId(UUID.randomUUID().toString());
+        record.setEnrolledAt(Fixtures.CREATED_AT);
+        return record;
+    }
+
+    /**
+     * 进程内应答 user-service / catalog-service 请求，响应体仍经 WebClient 编解码
+     */
+    private static Mono<ClientResponse> exchange(ClientRequest request) {
+        String path = request.url().getPath();
+        String body;
+        if (path.startsWith("/api/students/studentId/")) {
+            body = STUDENT_BODY.formatted(path.substring(path.lastIndexOf('/') + 1));
+        } else if (path.endsWith("/seats/reserve") || path.endsWith("/seats/release")) {
+            body = SEAT_BODY.formatted(COURSE_ID);
+        } else {
+            return Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+        }
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build());
+    }
+}
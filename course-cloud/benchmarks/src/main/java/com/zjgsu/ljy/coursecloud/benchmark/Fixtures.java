@@ -0,0 +1,102 @@
+package com.zjgsu.ljy.coursecloud.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ljy.coursecloud.catalog.model.Course;
+import com.zjgsu.ljy.coursecloud.catalog.model.Instructor;
+import com.zjgsu.ljy.coursecloud.catalog.model.ScheduleSlot;
+import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentRecord;
+import com.zjgsu.ljy.coursecloud.user.model.Student;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.reflect.Proxy;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+/**
+ * 基准测试公共数据与桩：实体构造、仓库接口桩、与 Spring Boot 默认配置一致的 ObjectMapper
+ */
+final class Fixtures {
+
+    static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 9, 1, 8, 0);
+
+    private Fixtures() {
+    }
+
+    static Student student(int i) {
+        Student student = new Student("user" + i, "user" + i + "@zjgsu.edu.cn",
+                String.format("S%08d", i), "学生" + i, "计算机科学与技术", 2021 + i % 4);
+        student.setId(UUID.nameUUIDFromBytes(("student-" + i).getBytes()).toString());
+        student.setCreatedAt(CREATED_AT);
+        return student;
+    }
+
+    static Course course(int i) {
+        Instructor instructor = new Instructor("T" + i % 100, "教师" + i % 100, "teacher" + i % 100 + "@zjgsu.edu.cn");
+        ScheduleSlot schedule = new ScheduleSlot(DayOfWeek.of(1 + i % 5),
+                LocalTime.of(8 + i % 10, 0), LocalTime.of(9 + i % 10, 30), 60);
+        Course course = new Course(String.format("CSE%03d", i % 1000), "课程" + i, instructor, schedule, 120);
+        course.setId(UUID.nameUUIDFromBytes(("course-" + i).getBytes()).toString());
+        course.setEnrolled(i % 120);
+        course.setCreatedAt(CREATED_AT);
+        return course;
+    }
+
+    static EnrollmentRecord enrollment(int i) {
+        EnrollmentRecord record = new EnrollmentRecord(
+                UUID.nameUUIDFromBytes(("course-" + i % 1000).getBytes()).toString(),
+                String.format("S%08d", i));
+        record.setId(UUID.nameUUIDFromBytes(("enrollment-" + i).getBytes()).toString());
+        record.setEnrolledAt(CREATED_AT);
+        return record;
+    }
+
+    static List<Student> students(int count) {
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(student(i));
+        }
+        return students;
+    }
+
+    static List<Course> courses(int count) {
+        List<Course> courses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            courses.add(course(i));
+        }
+        return courses;
+    }
+
+    static List<EnrollmentRecord> enrollments(int count) {
+        List<EnrollmentRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(enrollment(i));
+        }
+        return records;
+    }
+
+    /**
+     * 与 Spring Boot 自动配置的 ObjectMapper 行为一致（JavaTimeModule、日期不写成时间戳等）
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    /**
+     * 为 Spring Data 仓库等接口生成桩：按方法名应答，未处理的方法返回 null
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T stub(Class<T> type, BiFunction<String, Object[], Object> answer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "toString" -> type.getSimpleName() + "Stub";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> answer.apply(method.getName(), args);
+                });
+    }
+}
@@ -0,0 +1,82 @@
+package com.zjgsu.ljy.coursecloud.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ljy.coursecloud.catalog.controller.CourseController;
+import com.zjgsu.ljy.coursecloud.enrollment.controller.EnrollmentController;
+import com.zjgsu.ljy.coursecloud.user.controller.UserController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 列表接口的完整响应生成：控制器构建响应 + Jackson 序列化（写入丢弃输出流，不含网络开销）
+ * listCourses 关闭课程目录快照，每次都映射并序列化；listCoursesCached 由快照提供，首次调用后直接写出缓存的响应字节。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Thread)
+public class ListSerializationBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private ObjectMapper objectMapper;
+    private UserController userController;
+    private CourseController courseController;
+    private CourseController cachedCourseController;
+    private EnrollmentController enrollmentController;
+    // writeValue 结束时会 close 目标流，nullOutputStream 关闭后不可再写，这里用只丢弃不关闭的流
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        objectMapper = Fixtures.objectMapper();
+        userController = Controllers.userController(Fixtures.students(rows), objectMapper);
+        courseController = Controllers.courseController(Fixtures.courses(rows), objectMapper, false);
+        cachedCourseController = Controllers.courseController(Fixtures.courses(rows), objectMapper, true);
+        enrollmentController = Controllers.enrollmentController(Fixtures.enrollments(rows), objectMapper);
+    }
+
+    @Benchmark
+    public void listStudents() throws IOException {
+        objectMapper.writeValue(sink, userController.getAllStudents());
+    }
+
+    @Benchmark
+    public void listCourses() throws IOException {
+        sink.write(courseController.listCourses(null).getBody());
+    }
+
+    @Benchmark
+    public void listCoursesCached() throws IOException {
+        sink.write(cachedCourseController.listCourses(null).getBody());
+    }
+
+    @Benchmark
+    public void listEnrollments() throws IOException {
+        objectMapper.writeValue(sink, enrollmentController.listAll());
+    }
+}
@@ -0,0 +1,58 @@
+package com.zjgsu.ljy.coursecloud.benchmark;
+
+import com.zjgsu.ljy.coursecloud.catalog.controller.CourseResponse;
+import com.zjgsu.ljy.coursecloud.catalog.model.Course;
+import com.zjgsu.ljy.coursecloud.enrollment.controller.EnrollmentController.EnrollmentResponse;
+import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentRecord;
+import com.zjgsu.ljy.coursecloud.user.controller.UserController.StudentResponse;
+import com.zjgsu.ljy.coursecloud.user.model.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实体 → 响应 DTO 映射（单条），关注每次调用的分配量（-prof gc 下的 gc.alloc.rate.norm）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseMappingBenchmark {
+
+    private Course course;
+    private Student student;
+    private EnrollmentRecord enrollment;
+
+    @Setup
+    public void setUp() {
+        course = Fixtures.course(42);
+        student = Fixtures.student(42);
+        enrollment = Fixtures.enrollment(42);
+    }
+
+    @Benchmark
+    public CourseResponse courseResponseFrom() {
+        return CourseResponse.from(course);
+    }
+
+    @Benchmark
+    public StudentResponse studentResponseFrom() {
+        return StudentResponse.from(student);
+    }
+
+    @Benchmark
+    public EnrollmentResponse enrollmentResponseFrom() {
+        return EnrollmentResponse.from(enrollment);
+    }
+}
@@ -0,0 +1,349 @@
+package com.zjgsu.ljy.coursecloud.benchmark.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * 选课日端到端压测：对已启动的三个服务（见 load-test.sh，loadtest 配置：H2 + 静态服务发现）施加以下流量形态：
+ * <ul>
+ *     <li>burst：少数热门课程开放瞬间的并发抢课</li>
+ *     <li>browse：按 Zipf 分布的长尾课程浏览、分页翻阅与个人选课查询</li>
+ *     <li>cohort：按班级批量导入选课</li>
+ * </ul>
+ * 最后逐门课程核对选课记录数与容量，报告超卖与计数偏差；出现超卖时以退出码 1 结束。
+ *
+ * 参数均为 --name=value 形式，见 {@link Options}。
+ */
+public final class LoadTest {
+
+    private final Options options;
+    private final LoadClient client = new LoadClient();
+    private final ExecutorService workers;
+    private final List<ScenarioStats> scenarios = new ArrayList<>();
+    private final String runId = Long.toString(System.currentTimeMillis() % 1_000_000, 36);
+
+    private final List<String> studentIds = new ArrayList<>();
+    private final List<String> hotCourseIds = new ArrayList<>();
+    private final List<String> tailCourseIds = new ArrayList<>();
+    private final Map<String, Integer> capacities = new ConcurrentHashMap<>();
+
+    private LoadTest(Options options) {
+        this.options = options;
+        this.workers = Executors.newFixedThreadPool(options.concurrency);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        LoadTest loadTest = new LoadTest(options);
+        int oversold;
+        try {
+            oversold = loadTest.run();
+        } finally {
+            loadTest.workers.shutdownNow();
+        }
+        System.exit(oversold > 0 ? 1 : 0);
+    }
+
+    private int run() throws Exception {
+        System.out.printf("压测参数: %s%n%n", options);
+        seed();
+        if (options.burstRequests > 0) {
+            burst();
+        }
+        if (options.browseRequests > 0) {
+            browse();
+        }
+        if (options.cohorts > 0) {
+            cohort();
+        }
+        // 等待座位账本（若启用）写回后再核对
+        Thread.sleep(options.settleMillis);
+        int oversold = verify();
+
+        System.out.println();
+        System.out.println("==================== 压测结果 ====================");
+        for (ScenarioStats stats : scenarios) {
+            stats.print(System.out);
+            stats.writeHistogram(Path.of(options.out));
+        }
+        System.out.printf("延迟分布文件 (*.hgrm): %s%n", Path.of(options.out).toAbsolutePath());
+        return oversold;
+    }
+
+    // ==================== 数据准备 ====================
+    private void seed() throws Exception {
+        ScenarioStats students = new ScenarioStats("seed-students");
+        String[] ids = new String[options.students];
+        runPhase(students, options.students, i -> {
+            String studentId = "LT" + runId + String.format("%06d", i);
+            Map<String, Object> request = Map.of(
+                    "username", "lt_" + studentId,
+                    "email", studentId.toLowerCase() + "@loadtest.local",
+                    "studentId", studentId,
+                    "name", "压测学生" + i,
+                    "major", "计算机科学与技术",
+                    "grade", 2021 + i % 4);
+            if (client.post(students, options.userUrl + "/api/students", request).ok()) {
+                ids[i] = studentId;
+            }
+        });
+        Arrays.stream(ids).filter(id -> id != null).forEach(studentIds::add);
+
+        ScenarioStats courses = new ScenarioStats("seed-courses");
+        int total = options.hotCourses + options.tailCourses;
+        String[] courseIds = new String[total];
+        String prefix = coursePrefix();
+        runPhase(courses, total, i -> {
+            boolean hot = i < options.hotCourses;
+            int capacity = hot ? options.hotCapacity : options.tailCapacity;
+            Map<String, Object> request = new HashMap<>();
+            request.put("code", prefix + String.format("%03d", i));
+            request.put("title", (hot ? "热门课程" : "课程") + i);
+            request.put("instructorId", "T" + i % 50);
+            request.put("instructorName", "教师" + i % 50);
+            request.put("instructorEmail", "t" + i % 50 + "@loadtest.local");
+            request.put("dayOfWeek", List.of("MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY").get(i % 5));
+            request.put("start", String.format("%02d:00", 8 + i % 10));
+            request.put("end", String.format("%02d:30", 9 + i % 10));
+            request.put("capacity", capacity);
+            request.put("expectedAttendance", capacity);
+            LoadClient.Result result = client.post(courses, options.catalogUrl + "/api/courses", request);
+            if (result.ok()) {
+                courseIds[i] = result.body().path("data").path("id").asText();
+                capacities.put(courseIds[i], capacity);
+            }
+        });
+        for (int i = 0; i < total; i++) {
+            if (courseIds[i] != null) {
+                (i < options.hotCourses ? hotCourseIds : tailCourseIds).add(courseIds[i]);
+            }
+        }
+        System.out.printf("已创建学生 %d / %d，热门课程 %d，长尾课程 %d%n",
+                studentIds.size(), options.students, hotCourseIds.size(), tailCourseIds.size());
+        if (studentIds.isEmpty() || hotCourseIds.isEmpty() || tailCourseIds.isEmpty()) {
+            throw new IllegalStateException("Seeding failed, check that all services are up");
+        }
+    }
+
+    // ==================== 流量形态 ====================
+
+    /**
+     * 热门课程抢课：所有请求集中在少数课程上，请求数远超总容量
+     */
+    private void burst() throws Exception {
+        ScenarioStats stats = new ScenarioStats("burst-enroll");
+        runPhase(stats, options.burstRequests, i -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Map<String, Object> request = Map.of(
+                    "courseId", hotCourseIds.get(random.nextInt(hotCourseIds.size())),
+                    "studentId", studentIds.get(random.nextInt(studentIds.size())));
+            client.post(stats, options.enrollmentUrl + "/api/enrollments", request);
+        });
+    }
+
+    /**
+     * 长尾浏览：70% 按 Zipf 分布查看课程详情，20% 分页翻阅课程列表，10% 查询个人已选课程
+     */
+    private void browse() throws Exception {
+        ScenarioStats stats = new ScenarioStats("browse");
+        List<String> allCourses = new ArrayList<>(hotCourseIds);
+        allCourses.addAll(tailCourseIds);
+        double[] cumulative = zipfCumulative(allCourses.size(), options.zipfExponent);
+        runPhase(stats, options.browseRequests, i -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int roll = random.nextInt(10);
+            if (roll < 7) {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble());
+                String courseId = allCourses.get(index >= 0 ? index : Math.min(-index - 1, allCourses.size() - 1));
+                client.get(stats, options.catalogUrl + "/api/courses/" + courseId);
+            } else if (roll < 9) {
+                String after = allCourses.get(random.nextInt(allCourses.size()));
+                client.get(stats, options.catalogUrl + "/api/courses/page?limit=20&after=" + after);
+            } else {
+                String studentId = studentIds.get(random.nextInt(studentIds.size()));
+                client.get(stats, options.enrollmentUrl + "/api/enrollments/student/" + studentId);
+            }
+        });
+    }
+
+    /**
+     * 班级批量导入：每批一个班级（cohortSize 名学生）导入一门长尾课程，班级人数可超过课程容量
+     */
+    private void cohort() throws Exception {
+        ScenarioStats stats = new ScenarioStats("cohort-import");
+        runPhase(stats, options.cohorts, i -> {
+            Random random = new Random(i);
+            String courseId = tailCourseIds.get(i % tailCourseIds.size());
+            List<Map<String, Object>> items = new ArrayList<>(options.cohortSize);
+            int offset = random.nextInt(studentIds.size());
+            for (int k = 0; k < options.cohortSize; k++) {
+                items.add(Map.of("courseId", courseId,
+                        "studentId", studentIds.get((offset + k) % studentIds.size())));
+            }
+            client.post(stats, options.enrollmentUrl + "/api/enrollments/batch", Map.of("items", items));
+        });
+    }
+
+    // ==================== 超卖核对 ====================
+    private int verify() throws Exception {
+        ScenarioStats stats = new ScenarioStats("verify");
+        List<String> courseIds = new ArrayList<>(capacities.keySet());
+        Map<String, int[]> observed = new ConcurrentHashMap<>();
+        runPhase(stats, courseIds.size(), i -> {
+            String courseId = courseIds.get(i);
+            JsonNode course = client.get(stats, options.catalogUrl + "/api/courses/" + courseId).body();
+            JsonNode records = client.get(stats, options.enrollmentUrl + "/api/enrollments/course/" + courseId).body();
+            observed.put(courseId, new int[]{records.size(), course.path("data").path("enrolled").asInt(-1)});
+        });
+
+        int oversoldCourses = 0;
+        int oversoldSeats = 0;
+        int drifted = 0;
+        long enrolledTotal = 0;
+        for (Map.Entry<String, int[]> entry : observed.entrySet()) {
+            int capacity = capacities.get(entry.getKey());
+            int records = entry.getValue()[0];
+            int counter = entry.getValue()[1];
+            enrolledTotal += records;
+            if (records > capacity) {
+                oversoldCourses++;
+                oversoldSeats += records - capacity;
+            }
+            if (counter != records) {
+                drifted++;
+            }
+        }
+        System.out.println();
+        System.out.println("==================== 超卖核对 ====================");
+        System.out.printf("课程数=%d 选课记录总数=%d%n", observed.size(), enrolledTotal);
+        System.out.printf("超卖课程数=%d 超卖座位数=%d（选课记录数 > 容量）%n", oversoldCourses, oversoldSeats);
+        System.out.printf("计数偏差课程数=%d（catalog enrolled ≠ 选课记录数）%n", drifted);
+        return oversoldSeats;
+    }
+
+    // ==================== 辅助方法 ====================
+
+    /**
+     * 以 concurrency 个并发工作线程执行 count 次请求，全部完成后返回
+     */
+    private void runPhase(ScenarioStats stats, int count, IntConsumer request) throws Exception {
+        System.out.printf("[%s] 开始，请求数 %d，并发 %d%n", stats.name(), count, options.concurrency);
+        scenarios.add(stats);
+        stats.start();
+        List<Future<?>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            futures.add(workers.submit(() -> request.accept(index)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        stats.stop();
+    }
+
+    private String coursePrefix() {
+        // 课程代码须满足 [A-Z]{3}\d{3} 且唯一，每次运行换一个前缀以便重复压测同一实例
+        long seed = Long.parseLong(runId, 36);
+        char[] letters = new char[3];
+        for (int i = 0; i < 3; i++) {
+            letters[i] = (char) ('A' + seed % 26);
+            seed /= 26;
+        }
+        return new String(letters);
+    }
+
+    private static double[] zipfCumulative(int size, double exponent) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < size; k++) {
+            cumulative[k] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * 压测参数，命令行以 --name=value 覆盖默认值
+     */
+    static final class Options {
+        String userUrl = "http://localhost:8081";
+        String catalogUrl = "http://localhost:8082";
+        String enrollmentUrl = "http://localhost:8083";
+        int concurrency = 64;
+        int students = 2000;
+        int hotCourses = 5;
+        int hotCapacity = 50;
+        int tailCourses = 200;
+        int tailCapacity = 100;
+        int burstRequests = 5000;
+        int browseRequests = 20000;
+        double zipfExponent = 1.1;
+        int cohorts = 20;
+        int cohortSize = 150;
+        long settleMillis = 1000;
+        String out = "target/loadtest";
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+                }
+                values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+            Options options = new Options();
+            options.userUrl = values.getOrDefault("user-url", options.userUrl);
+            options.catalogUrl = values.getOrDefault("catalog-url", options.catalogUrl);
+            options.enrollmentUrl = values.getOrDefault("enrollment-url", options.enrollmentUrl);
+            options.concurrency = intValue(values, "concurrency", options.concurrency);
+            options.students = intValue(values, "students", options.students);
+            options.hotCourses = intValue(values, "hot-courses", options.hotCourses);
+            options.hotCapacity = intValue(values, "hot-capacity", options.hotCapacity);
+            options.tailCourses = intValue(values, "tail-courses", options.tailCourses);
+            options.tailCapacity = intValue(values, "tail-capacity", options.tailCapacity);
+            options.burstRequests = intValue(values, "burst-requests", options.burstRequests);
+            options.browseRequests = intValue(values, "browse-requests", options.browseRequests);
+            options.zipfExponent = Double.parseDouble(values.getOrDefault("zipf-exponent",
+                    String.valueOf(options.zipfExponent)));
+            options.cohorts = intValue(values, "cohorts", options.cohorts);
+            options.cohortSize = intValue(values, "cohort-size", options.cohortSize);
+            options.settleMillis = intValue(values, "settle-ms", (int) options.settleMillis);
+            options.out = values.getOrDefault("out", options.out);
+            if (options.hotCourses + options.tailCourses > 1000) {
+                throw new IllegalArgumentException("hot-courses + tail-courses must not exceed 1000");
+            }
+            return options;
+        }
+
+        private static int intValue(Map<String, String> values, String name, int defaultValue) {
+            String value = values.get(name);
+            return value == null ? defaultValue : Integer.parseInt(value);
+        }
+
+        @Override
+        public String toString() {
+            return "concurrency=" + concurrency + ", students=" + students
+                    + ", hotCourses=" + hotCourses + "x" + hotCapacity
+                    + ", tailCourses=" + tailCourses + "x" + tailCapacity
+                    + ", burst=" + burstRequests + ", browse=" + browseRequests
+                    + ", cohorts=" + cohorts + "x" + cohortSize;
+        }
+    }
+}
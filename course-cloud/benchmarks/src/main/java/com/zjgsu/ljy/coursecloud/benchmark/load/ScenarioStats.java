@@ -0,0 +1,84 @@
+package com.zjgsu.ljy.coursecloud.benchmark.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个压测场景的统计：延迟直方图（微秒精度）、按 HTTP 状态码计数、吞吐
+ */
+final class ScenarioStats {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final String name;
+    private final Histogram latency = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final Map<String, LongAdder> outcomes = new ConcurrentSkipListMap<>();
+    private long startNanos;
+    private long elapsedNanos;
+
+    ScenarioStats(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    void stop() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * 记录一次请求；outcome 为 HTTP 状态码，连接失败 / 超时记为 "IO_ERROR"
+     */
+    void record(String outcome, long latencyNanos) {
+        latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_LATENCY_MICROS));
+        outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+    }
+
+    long count(String outcome) {
+        LongAdder adder = outcomes.get(outcome);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    void print(PrintStream out) {
+        long total = latency.getTotalCount();
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%-16s requests=%-8d time=%.1fs throughput=%.1f req/s%n",
+                name, total, seconds, seconds > 0 ? total / seconds : 0);
+        out.printf("%-16s latency(ms) p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n", "",
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+                millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+                millis(latency.getMaxValue()));
+        StringBuilder codes = new StringBuilder();
+        outcomes.forEach((outcome, count) -> codes.append(outcome).append('=').append(count.sum()).append(' '));
+        out.printf("%-16s outcomes %s%n", "", codes.toString().trim());
+    }
+
+    /**
+     * 输出 HdrHistogram 百分位分布文件（毫秒），可用 HdrHistogram 在线工具绘图对比
+     */
+    void writeHistogram(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hgrm")))) {
+            latency.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
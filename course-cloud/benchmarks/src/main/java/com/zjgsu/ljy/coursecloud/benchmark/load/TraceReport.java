@@ -0,0 +1,187 @@
+package com.zjgsu.ljy.coursecloud.benchmark.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 离线追踪分析：读取各服务导出的 span 文件（tracing.export.file，每行一个 span），按 traceId 还原调用树。
+ * <ul>
+ *     <li>统计指定入口（默认选课接口）的耗时分布</li>
+ *     <li>对最慢的一部分 trace 沿关键路径（每层取最晚结束的子 span）下钻，按"服务 / 实例 / 操作"归因</li>
+ *     <li>打印最慢几条 trace 的完整调用树，关键路径以 * 标记</li>
+ * </ul>
+ * 参数：--dir=span 文件目录，--root=入口 span 名称，--percentile=归因的尾部分位（默认 99），--top=打印条数。
+ */
+public final class TraceReport {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long END_TOLERANCE_MICROS = 1000;  // 跨服务时钟与计时边界误差
+
+    private record Span(String traceId, String id, String parentId, String name, String service,
+                        long start, long duration, String error, String instance) {
+
+        long end() {
+            return start + duration;
+        }
+    }
+
+    private final Map<String, Span> spans = new HashMap<>();
+    private final Map<String, List<Span>> children = new HashMap<>();
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        TraceReport report = new TraceReport();
+        report.load(Path.of(options.getOrDefault("dir", "target/traces")));
+        report.print(options.getOrDefault("root", "http post /api/enrollments"),
+                Double.parseDouble(options.getOrDefault("percentile", "99")),
+                Integer.parseInt(options.getOrDefault("top", "3")));
+    }
+
+    private void load(Path dir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(file -> file.toString().endsWith(".ndjson")).sorted().toList();
+        }
+        for (Path file : files) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        add(MAPPER.readTree(line));
+                    }
+                }
+            }
+        }
+        for (Span span : spans.values()) {
+            if (span.parentId() != null) {
+                children.computeIfAbsent(span.traceId() + "/" + span.parentId(), key -> new ArrayList<>()).add(span);
+            }
+        }
+        children.values().forEach(list -> list.sort(Comparator.comparingLong(Span::start)));
+    }
+
+    private void add(JsonNode node) {
+        Span span = new Span(node.path("traceId").asText(), node.path("id").asText(),
+                node.hasNonNull("parentId") ? node.get("parentId").asText() : null,
+                node.path("name").asText(), node.path("service").asText(),
+                node.path("start").asLong(), node.path("duration").asLong(),
+                node.hasNonNull("error") ? node.get("error").asText() : null,
+                node.path("tags").hasNonNull("instance") ? node.path("tags").get("instance").asText() : null);
+        spans.put(span.traceId() + "/" + span.id(), span);
+    }
+
+    private List<Span> childrenOf(Span span) {
+        return children.getOrDefault(span.traceId() + "/" + span.id(), List.of());
+    }
+
+    private void print(String rootName, double percentile, int top) {
+        List<Span> roots = spans.values().stream()
+                .filter(span -> span.parentId() == null && span.name().equalsIgnoreCase(rootName))
+                .sorted(Comparator.comparingLong(Span::duration))
+                .toList();
+        System.out.println();
+        System.out.println("==================== 追踪分析 ====================");
+        if (roots.isEmpty()) {
+            System.out.printf("未找到入口 span: %s（共 %d 个 span）%n", rootName, spans.size());
+            return;
+        }
+        System.out.printf("%s: %d 条 trace, p50=%.1fms p99=%.1fms max=%.1fms%n", rootName, roots.size(),
+                millis(at(roots, 50)), millis(at(roots, 99)), millis(roots.get(roots.size() - 1).duration()));
+
+        // 尾部 trace 的关键路径归因
+        long threshold = at(roots, percentile);
+        List<Span> outliers = roots.stream().filter(root -> root.duration() >= threshold).toList();
+        Map<String, long[]> bottlenecks = new HashMap<>();
+        for (Span root : outliers) {
+            List<Span> path = criticalPath(root);
+            Span leaf = path.get(path.size() - 1);
+            long[] totals = bottlenecks.computeIfAbsent(label(path, leaf), key -> new long[2]);
+            totals[0]++;
+            totals[1] += leaf.duration();
+        }
+        System.out.printf("%n最慢 %.1f%%（≥ %.1fms，%d 条）的关键路径瓶颈:%n", 100 - percentile,
+                millis(threshold), outliers.size());
+        System.out.printf("  %-7s %-7s %-10s %s%n", "count", "share", "avg(ms)", "service(instance) span");
+        bottlenecks.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                .forEach(entry -> System.out.printf("  %-7d %-7s %-10.1f %s%n", entry.getValue()[0],
+                        String.format("%.0f%%", 100.0 * entry.getValue()[0] / outliers.size()),
+                        millis(entry.getValue()[1] / entry.getValue()[0]), entry.getKey()));
+
+        System.out.printf("%n最慢 %d 条调用链（偏移 / 耗时，* 为关键路径）:%n", Math.min(top, roots.size()));
+        for (int i = roots.size() - 1; i >= Math.max(0, roots.size() - top); i--) {
+            Span root = roots.get(i);
+            System.out.printf("trace %s%n", root.traceId());
+            printTree(root, root.start(), 1, new HashSet<>(criticalPath(root)));
+        }
+    }
+
+    /**
+     * 从根开始每层取父 span 结束前最晚结束的子 span，即决定父 span 何时结束的那一路；
+     * 父 span 因某一路失败提前结束时，仍在进行的其他子 span（如座位补偿）不计入
+     */
+    private List<Span> criticalPath(Span root) {
+        List<Span> path = new ArrayList<>();
+        Span current = root;
+        while (current != null) {
+            path.add(current);
+            Span parent = current;
+            current = childrenOf(parent).stream()
+                    .filter(child -> child.end() <= parent.end() + END_TOLERANCE_MICROS)
+                    .max(Comparator.comparingLong(Span::end))
+                    .orElse(null);
+        }
+        return path;
+    }
+
+    // 叶子 span 所在服务，加上路径上最近一次客户端调用解析到的实例
+    private static String label(List<Span> path, Span leaf) {
+        String instance = null;
+        for (Span span : path) {
+            if (span.instance() != null) {
+                instance = span.instance();
+            }
+        }
+        return leaf.service() + (instance != null ? "(" + instance + ")" : "") + " " + leaf.name();
+    }
+
+    private void printTree(Span span, long origin, int depth, Set<Span> criticalPath) {
+        System.out.printf("  %s %8.1fms %8.1fms %s%s %s%s%s%n", criticalPath.contains(span) ? "*" : " ",
+                millis(span.start() - origin), millis(span.duration()), "  ".repeat(depth - 1), span.service(),
+                span.name(), span.instance() != null ? " -> " + span.instance() : "",
+                span.error() != null ? " [" + span.error() + "]" : "");
+        for (Span child : childrenOf(span)) {
+            printTree(child, origin, depth + 1, criticalPath);
+        }
+    }
+
+    private static long at(List<Span> sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))).duration();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -1,23 +1,45 @@
 package com.zjgsu.ljy.coursecloud.catalog.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.zjgsu.ljy.coursecloud.catalog.model.Course;
 import com.zjgsu.ljy.coursecloud.catalog.model.Instructor;
 import com.zjgsu.ljy.coursecloud.catalog.model.ScheduleSlot;
 import com.zjgsu.ljy.coursecloud.catalog.repository.CourseRepository;
+import com.zjgsu.ljy.coursecloud.catalog.service.CourseCatalog;
+import com.zjgsu.ljy.coursecloud.catalog.service.CourseService;
+import com.zjgsu.ljy.coursecloud.common.web.InstanceIdentity;
+import com.zjgsu.ljy.coursecloud.common.web.PageResponse;
+import com.zjgsu.ljy.coursecloud.common.web.ServiceResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
@@ -27,81 +49,202 @@ public class CourseController {
     private static final Logger log = LoggerFactory.getLogger(CourseController.class);
 
     private final CourseRepository repository;
+    private final CourseService courseService;
+    private final ObjectMapper objectMapper;
+    private final InstanceIdentity identity;
+    private final CourseCatalog courseCatalog;
+    private final CacheControl cacheControl;
+    private final ObjectWriter listWriter;
 
-    @Value("${server.port}")
-    private String currentPort;
+    // 最近一次课程列表的完整响应体，随快照失效
+    private volatile CachedList cachedList;
 
-    public CourseController(CourseRepository repository) {
+    private record CachedList(CourseCatalog.Snapshot snapshot, byte[] body) {
+    }
+
+    public CourseController(CourseRepository repository, CourseService courseService, ObjectMapper objectMapper,
+                            InstanceIdentity identity, CourseCatalog courseCatalog,
+                            @Value("${catalog.http-cache.max-age:0s}") Duration cacheMaxAge) {
         this.repository = repository;
+        this.courseService = courseService;
+        this.objectMapper = objectMapper;
+        this.identity = identity;
+        this.courseCatalog = courseCatalog;
+        // 客户端可缓存，过期后必须带 If-None-Match 重新验证
+        this.cacheControl = CacheControl.maxAge(cacheMaxAge).mustRevalidate();
+        this.listWriter = objectMapper.writerFor(ServiceResponse.class);
     }
 
-    // ==================== 辅助方法：获取主机名 ====================
-    private String getHostname() {
-        // 优先使用环境变量 HOSTNAME (Docker 容器中最可靠)
-        String hostname = System.getenv("HOSTNAME");
-        if (hostname != null && !hostname.isEmpty()) {
-            return hostname;
-        }
+    // ==================== 辅助方法：条件 GET ====================
+    // ETag 与响应数据取自同一快照，由目录内容决定，各副本一致；快照未加载（回退到数据库）时不提供 ETag。
+    // 使用弱 ETag：响应体外层的 ServiceResponse 带有各副本不同的端口与主机名，只是课程数据相同，字节并不相同
+    private static String etag(CourseCatalog.Snapshot snapshot) {
+        return snapshot.isLoaded() ? "W/\"" + snapshot.tag() + "\"" : null;
+    }
 
-        // 备用方案：使用 InetAddress
-        try {
-            return InetAddress.getLocalHost().getHostName();
-        } catch (Exception e) {
-            log.warn("Failed to get hostname: {}", e.getMessage());
+    // 目录内容未变时直接返回 304，不查询数据库也不序列化响应体
+    private <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+    }
+
+    // If-None-Match 使用弱比较（忽略 W/ 前缀），可能是逗号分隔的多个 ETag 或 *
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
         }
+        String opaque = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaque(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        // 最后的 fallback
-        return "unknown-" + currentPort;
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
     }
 
     // ==================== Course Endpoints ====================
     @GetMapping
-    public Map<String, Object> listCourses() {
+    public ResponseEntity<byte[]> listCourses(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.info("Catalog Service [port: {}, hostname: {}] listing all courses",
-                currentPort, getHostname());
+                identity.port(), identity.hostname());
+
+        CourseCatalog.Snapshot snapshot = courseCatalog.current();
+        String etag = etag(snapshot);
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
 
-        List<CourseResponse> courses = repository.findAll()
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(listBody(snapshot));
+    }
+
+    // 同一快照的列表响应只序列化一次，之后直接写出缓存的字节
+    private byte[] listBody(CourseCatalog.Snapshot snapshot) {
+        CachedList cached = cachedList;
+        if (cached != null && cached.snapshot() == snapshot) {
+            return cached.body();
+        }
+        List<Course> source = snapshot.isLoaded() ? snapshot.courses() : repository.findAll();
+        List<CourseResponse> courses = source.stream()
+                .map(CourseResponse::from)
+                .collect(Collectors.toList());
+        byte[] body;
+        try {
+            body = listWriter.writeValueAsBytes(ServiceResponse.list(identity, courses));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (snapshot.isLoaded()) {
+            cachedList = new CachedList(snapshot, body);
+        }
+        return body;
+    }
+
+    @GetMapping("/page")
+    public PageResponse<CourseResponse> listCoursePage(@RequestParam(required = false) String after,
+                                                      @RequestParam(defaultValue = "50") @Min(1) @Max(500) int limit) {
+        log.info("Catalog Service [port: {}, hostname: {}] listing courses after: {}, limit: {}",
+                identity.port(), identity.hostname(), after, limit);
+
+        List<CourseResponse> courses = courseService.getCoursePage(after, limit)
                 .stream()
                 .map(CourseResponse::from)
                 .collect(Collectors.toList());
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("port", currentPort);
-        response.put("hostname", getHostname());
-        response.put("data", courses);
-        response.put("count", courses.size());
-        response.put("status", "SUCCESS");
-        return response;
+        // 不足一页说明已到末尾
+        return PageResponse.of(identity, courses,
+                courses.size() == limit ? courses.get(courses.size() - 1).id() : null);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCourses() {
+        log.info("Catalog Service [port: {}, hostname: {}] streaming all courses",
+                identity.port(), identity.hostname());
+
+        // NDJSON：每行一个课程 JSON，边读边写，内存占用恒定
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.setRootValueSeparator(null);
+            courseService.forEachCourse(course -> {
+                try {
+                    generator.writeObject(CourseResponse.from(course));
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getCourse(@PathVariable String id) {
+    public ResponseEntity<ServiceResponse<CourseResponse>> getCourse(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.info("Catalog Service [port: {}, hostname: {}] getting course: {}",
-                currentPort, getHostname(), id);
-
-        return repository.findById(id)
-                .map(course -> {
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("port", currentPort);
-                    response.put("hostname", getHostname());
-                    response.put("data", CourseResponse.from(course));
-                    response.put("status", "SUCCESS");
-                    return ResponseEntity.ok(response);
-                })
-                .orElseGet(() -> {
-                    Map<String, Object> errorResponse = new HashMap<>();
-                    errorResponse.put("port", currentPort);
-                    errorResponse.put("hostname", getHostname());
-                    errorResponse.put("status", "ERROR");
-                    errorResponse.put("message", "Course with id " + id + " not found");
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
-                });
+                identity.port(), identity.hostname(), id);
+
+        CourseCatalog.Snapshot snapshot = courseCatalog.current();
+        Optional<Course> course = snapshot.isLoaded() ? snapshot.findById(id) : repository.findById(id);
+        return courseResponse(course, etag(snapshot), ifNoneMatch, "Course with id " + id + " not found");
+    }
+
+    @GetMapping("/code/{code}")
+    public ResponseEntity<ServiceResponse<CourseResponse>> getCourseByCode(
+            @PathVariable String code,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.info("Catalog Service [port: {}, hostname: {}] getting course by code: {}",
+                identity.port(), identity.hostname(), code);
+
+        CourseCatalog.Snapshot snapshot = courseCatalog.current();
+        Optional<Course> course = snapshot.isLoaded() ? snapshot.findByCode(code) : repository.findByCode(code);
+        return courseResponse(course, etag(snapshot), ifNoneMatch, "Course with code " + code + " not found");
+    }
+
+    // 先确认课程存在再比较 ETag：不存在的课程返回 404，即使 If-None-Match 为 *（快照内查找，不访问数据库）
+    private ResponseEntity<ServiceResponse<CourseResponse>> courseResponse(Optional<Course> course, String etag,
+                                                                           String ifNoneMatch, String notFoundMessage) {
+        if (course.isPresent() && matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        return course
+                .map(found -> ResponseEntity.ok()
+                        .eTag(etag)
+                        .cacheControl(cacheControl)
+                        .body(ServiceResponse.success(identity, CourseResponse.from(found))))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ServiceResponse.error(identity, notFoundMessage)));
+    }
+
+    @PostMapping("/batch")
+    public ServiceResponse<Map<String, CourseResponse>> getCoursesByIds(@RequestBody @NotEmpty @Size(max = 20000) List<String> ids) {
+        log.info("Catalog Service [port: {}, hostname: {}] batch getting {} courses",
+                identity.port(), identity.hostname(), ids.size());
+
+        Map<String, CourseResponse> courses = new LinkedHashMap<>();
+        courseService.getCoursesByIds(ids)
+                .forEach((id, course) -> courses.put(id, CourseResponse.from(course)));
+        List<String> missing = ids.stream()
+                .distinct()
+                .filter(id -> !courses.containsKey(id))
+                .toList();
+
+        return ServiceResponse.batch(identity, courses, missing);
     }
 
     @PostMapping
-    public ResponseEntity<Map<String, Object>> createCourse(@Valid @RequestBody CourseRequest request) {
+    public ResponseEntity<ServiceResponse<CourseResponse>> createCourse(@Valid @RequestBody CourseRequest request) {
         log.info("Catalog Service [port: {}, hostname: {}] creating course: {}",
-                currentPort, getHostname(), request.code());
+                identity.port(), identity.hostname(), request.code());
 
         Course course = new Course(
                 request.code(),
@@ -115,14 +258,103 @@ public class CourseController {
                 ),
                 request.capacity()
         );
-        Course saved = repository.save(course);
+        Course saved = courseService.createCourse(course);
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("port", currentPort);
-        response.put("hostname", getHostname());
-        response.put("data", CourseResponse.from(saved));
-        response.put("status", "SUCCESS");
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ServiceResponse.success(identity, CourseResponse.from(saved)));
+    }
+
+    @GetMapping("/{id}/conflicts")
+    public ResponseEntity<ServiceResponse<List<String>>> getScheduleConflicts(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "") @Size(max = 500) List<String> held) {
+        log.info("Catalog Service [port: {}, hostname: {}] checking schedule conflicts of {} against {} course(s)",
+                identity.port(), identity.hostname(), id, held.size());
+
+        try {
+            return ResponseEntity.ok(ServiceResponse.list(identity, courseService.findScheduleConflicts(id, held)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ServiceResponse.error(identity, e.getMessage()));
+        }
+    }
+
+    // ==================== Seat Endpoints ====================
+    // held 为学生已选课程 ID：与本课程上课时间冲突时不预占，返回 409 与冲突课程
+    // key 为调用方生成的幂等 key：重试同一 key 返回首次的结果，不重复变更座位；同一 key 的操作仍在执行时返回 503
+    @PostMapping("/{id}/seats/reserve")
+    public ResponseEntity<SeatResponse> reserveSeat(@PathVariable String id,
+                                                    @RequestParam(defaultValue = "1") @Min(1) int count,
+                                                    @RequestParam(defaultValue = "") @Size(max = 500) List<String> held,
+                                                    @RequestParam(required = false) @Size(max = 200) String key) {
+        log.info("Catalog Service [port: {}, hostname: {}] reserving {} seat(s): {}",
+                identity.port(), identity.hostname(), count, id);
+
+        try {
+            List<String> conflicts = courseService.findScheduleConflicts(id, held);
+            if (!conflicts.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(new SeatResponse(identity.port(), identity.hostname(), id, 0, "ERROR",
+                                "Schedule conflict", conflicts));
+            }
+            int granted = courseService.reserveSeats(id, count, key);
+            if (granted > 0) {
+                return ResponseEntity.ok(seatResponse(id, granted, "SUCCESS", null));
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(seatResponse(id, 0, "ERROR", "Course capacity reached"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(seatResponse(id, 0, "ERROR", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(seatResponse(id, 0, "ERROR", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{id}/seats/release")
+    public ResponseEntity<SeatResponse> releaseSeat(@PathVariable String id,
+                                                    @RequestParam(defaultValue = "1") @Min(1) int count,
+                                                    @RequestParam(required = false) @Size(max = 200) String key) {
+        log.info("Catalog Service [port: {}, hostname: {}] releasing {} seat(s): {}",
+                identity.port(), identity.hostname(), count, id);
+
+        try {
+            int released = courseService.releaseSeats(id, count, key);
+            if (released > 0) {
+                return ResponseEntity.ok(seatResponse(id, released, "SUCCESS", null));
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(seatResponse(id, 0, "ERROR", "No enrolled seat to release"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(seatResponse(id, 0, "ERROR", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(seatResponse(id, 0, "ERROR", e.getMessage()));
+        }
+    }
+
+    // 撤销以 key 执行的预占（选课失败后的补偿），可重复调用；预占尚未到达时记下撤销，迟到的同 key 预占不再扣减座位
+    @PostMapping("/{id}/seats/cancel")
+    public ResponseEntity<SeatResponse> cancelReservation(@PathVariable String id,
+                                                          @RequestParam @NotBlank @Size(max = 200) String key) {
+        log.info("Catalog Service [port: {}, hostname: {}] cancelling reservation {}: {}",
+                identity.port(), identity.hostname(), key, id);
+
+        try {
+            int released = courseService.cancelReservation(id, key);
+            return ResponseEntity.ok(seatResponse(id, released, "SUCCESS", null));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(seatResponse(id, 0, "ERROR", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(seatResponse(id, 0, "ERROR", e.getMessage()));
+        }
+    }
+
+    private SeatResponse seatResponse(String courseId, int seats, String status, String message) {
+        return new SeatResponse(identity.port(), identity.hostname(), courseId, seats, status, message, null);
     }
 
     // ==================== 测试接口（负载均衡验证）====================
@@ -141,8 +373,8 @@ public class CourseController {
     public Map<String, Object> test() {
         Map<String, Object> response = new HashMap<>();
         response.put("service", "catalog-service");
-        response.put("port", currentPort);
-        response.put("hostname", getHostname());
+        response.put("port", identity.port());
+        response.put("hostname", identity.hostname());
 
         // ★ 添加容器IP,用于负载均衡测试
         try {
@@ -162,8 +394,8 @@ public class CourseController {
     public Map<String, Object> health() {
         Map<String, Object> health = new HashMap<>();
         health.put("status", "UP");
-        health.put("port", currentPort);
-        health.put("hostname", getHostname());
+        health.put("port", identity.port());
+        health.put("hostname", identity.hostname());
         health.put("service", "catalog-service");
         health.put("timestamp", System.currentTimeMillis());
         return health;
@@ -12,6 +12,7 @@ public record CourseResponse(
         String start,
         String end,
         int capacity,
+        int enrolled,
         int expectedAttendance
 ) {
     public static CourseResponse from(Course course) {
@@ -25,6 +26,7 @@ public record CourseResponse(
                 course.getSchedule().getStart().toString(),
                 course.getSchedule().getEnd().toString(),
                 course.getCapacity(),
+                course.getEnrolled(),
                 course.getSchedule().expectedAttendance()
         );
     }
@@ -0,0 +1,21 @@
+package com.zjgsu.ljy.coursecloud.catalog.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * 座位预留 / 释放结果，seats 为实际变更的座位数，失败时 message 说明原因；
+ * 因上课时间冲突被拒绝时 conflicts 为冲突的课程 ID
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SeatResponse(
+        String port,
+        String hostname,
+        String courseId,
+        int seats,
+        String status,
+        String message,
+        List<String> conflicts
+) {
+}
@@ -76,4 +76,12 @@ public class ScheduleSlot {
     public Duration duration() {
         return Duration.between(startTime, endTime);
     }
+
+    /**
+     * 同一天且时间段相交；首尾相接不算重叠
+     */
+    public boolean overlaps(ScheduleSlot other) {
+        return other != null && dayOfWeek == other.dayOfWeek
+                && startTime.isBefore(other.endTime) && other.startTime.isBefore(endTime);
+    }
 }
@@ -0,0 +1,65 @@
+package com.zjgsu.ljy.coursecloud.catalog.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 座位预占 / 释放的幂等记录：调用方为每次操作生成 key，重试时返回首次的结果而不再变更座位。
+ * 行由原生 INSERT 写入（主键冲突即重复请求），见 SeatOperationRepository
+ */
+@Entity
+@Table(name = "seat_operations", indexes = {
+    @Index(name = "idx_seat_operation_created_at", columnList = "created_at")
+})
+public class SeatOperation {
+    @Id
+    @Column(name = "op_key", length = 200)
+    private String opKey;
+
+    @Column(name = "course_id", nullable = false, length = 36)
+    private String courseId;
+
+    @Column(nullable = false)
+    private int seats;  // 实际变更的座位数；预占被撤销后为 0
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public SeatOperation() {
+        // JPA requires no-arg constructor
+    }
+
+    // Getters and setters
+    public String getOpKey() {
+        return opKey;
+    }
+
+    public void setOpKey(String opKey) {
+        this.opKey = opKey;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(String courseId) {
+        this.courseId = courseId;
+    }
+
+    public int getSeats() {
+        return seats;
+    }
+
+    public void setSeats(int seats) {
+        this.seats = seats;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
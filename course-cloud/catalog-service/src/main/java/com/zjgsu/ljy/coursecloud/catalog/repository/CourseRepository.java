@@ -1,13 +1,51 @@
 package com.zjgsu.ljy.coursecloud.catalog.repository;
 
 import com.zjgsu.ljy.coursecloud.catalog.model.Course;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CourseRepository extends JpaRepository<Course, String> {
     Optional<Course> findByCode(String code);
     boolean existsByCode(String code);
+
+    // 键集分页：按主键排序，从游标之后取 limit 条
+    List<Course> findAllByOrderByIdAsc(Limit limit);
+    List<Course> findByIdGreaterThanOrderByIdAsc(String after, Limit limit);
+
+    // 流式读取：配合 MySQL useCursorFetch=true 使用服务端游标，按 fetchSize 分批拉取
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT c FROM Course c")
+    Stream<Course> streamAll();
+
+    // ✅ 条件更新：由数据库保证 enrolled 不超过 capacity，返回受影响行数（0 表示余量不足或课程不存在）
+    @Modifying
+    @Query("UPDATE Course c SET c.enrolled = c.enrolled + :count WHERE c.id = :id AND c.enrolled + :count <= c.capacity")
+    int reserveSeats(@Param("id") String id, @Param("count") int count);
+
+    @Modifying
+    @Query("UPDATE Course c SET c.enrolled = c.enrolled - :count WHERE c.id = :id AND c.enrolled >= :count")
+    int releaseSeats(@Param("id") String id, @Param("count") int count);
+
+    // 锁定读（FOR UPDATE）：读取最新已提交值并持有行锁直到事务结束，随后的条件更新必定成功；
+    // 普通 SELECT 在 REPEATABLE READ 下读的是事务快照，可能与条件更新看到的值不一致
+    @Query(value = "SELECT capacity - enrolled FROM courses WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Integer> lockFreeSeats(@Param("id") String id);
+
+    @Query(value = "SELECT enrolled FROM courses WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Integer> lockEnrolled(@Param("id") String id);
 }
@@ -0,0 +1,34 @@
+package com.zjgsu.ljy.coursecloud.catalog.repository;
+
+import com.zjgsu.ljy.coursecloud.catalog.model.SeatOperation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface SeatOperationRepository extends JpaRepository<SeatOperation, String> {
+
+    // 占用 key：主键冲突（DataIntegrityViolationException）表示同一操作已执行或正在执行；
+    // 用原生 INSERT 而非 save，save 对已赋值的主键会先 SELECT 再 merge，无法靠主键冲突判重
+    @Modifying
+    @Query(value = "INSERT INTO seat_operations (op_key, course_id, seats, created_at) VALUES (:key, :courseId, 0, :now)",
+            nativeQuery = true)
+    int claim(@Param("key") String key, @Param("courseId") String courseId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE SeatOperation o SET o.seats = :seats WHERE o.opKey = :key")
+    int record(@Param("key") String key, @Param("seats") int seats);
+
+    // 条件清零：并发撤销同一预占时只有一个成功
+    @Modifying
+    @Query("UPDATE SeatOperation o SET o.seats = 0 WHERE o.opKey = :key AND o.seats = :seats")
+    int cancel(@Param("key") String key, @Param("seats") int seats);
+
+    @Modifying
+    @Query("DELETE FROM SeatOperation o WHERE o.createdAt < :before")
+    int purge(@Param("before") LocalDateTime before);
+}
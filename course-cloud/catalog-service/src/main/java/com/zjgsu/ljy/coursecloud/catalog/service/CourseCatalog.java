@@ -0,0 +1,330 @@
+package com.zjgsu.ljy.coursecloud.catalog.service;
+
+import com.zjgsu.ljy.coursecloud.catalog.model.Course;
+import com.zjgsu.ljy.coursecloud.catalog.model.Instructor;
+import com.zjgsu.ljy.coursecloud.catalog.model.ScheduleSlot;
+import com.zjgsu.ljy.coursecloud.catalog.repository.CourseRepository;
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationListener;
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 课程目录内存快照：全部课程按 ID 与课程代码建立索引，读请求只读取一个 volatile 引用，不加锁、不访问数据库。
+ * <ul>
+ *     <li>写时复制：本实例的课程写操作在事务提交后复制索引、替换单门课程并发布新快照</li>
+ *     <li>内容摘要：各课程字段摘要之和，用于生成 HTTP ETag；只由数据决定，数据相同的副本 / 重启前后 ETag 一致，
+ *     与数据在同一快照中，不会错配；单门课程变化时增量更新</li>
+ *     <li>上课时间索引（ScheduleIndex）：按星期的有序区间索引，用于选课时的时间冲突检查；变化的课程上课时间都未变
+ *     （座位变化、修改标题等）时沿用旧索引</li>
+ *     <li>跨实例：本实例的课程增删改通过 InvalidationPublisher 通知其他副本，收到通知的副本从数据库重新读取这些课程；
+ *     座位变化不广播（余量由座位账本 / 数据库条件更新负责，快照中的已选人数只用于展示），其他副本在定期重载时更新</li>
+ *     <li>定期全量重载（catalog.snapshot.refresh-interval-ms），兜底纠正丢失通知等造成的偏差</li>
+ * </ul>
+ * 快照中的 Course 是脱离持久化上下文的副本，只读，调用方不得修改。
+ * 关闭快照（catalog.snapshot.enabled=false）时读请求回退到数据库，不提供 ETag。
+ */
+@Component
+public class CourseCatalog implements InvalidationListener {
+
+    public static final String INVALIDATION_TYPE = "course";
+
+    private static final Logger log = LoggerFactory.getLogger(CourseCatalog.class);
+    private static final int QUERY_CHUNK_SIZE = 1000;  // IN 列表分片，避免超出驱动参数上限
+
+    private final CourseRepository courseRepository;
+    private final InvalidationPublisher invalidationPublisher;
+    private final boolean enabled;
+    // 写入与重载互斥，读请求不经过该锁；使用 ReentrantLock 以免虚拟线程持锁查询时钉住载体线程
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot;
+
+    public CourseCatalog(CourseRepository courseRepository, InvalidationPublisher invalidationPublisher,
+                         @Value("${catalog.snapshot.enabled:true}") boolean enabled) {
+        this.courseRepository = courseRepository;
+        this.invalidationPublisher = invalidationPublisher;
+        this.enabled = enabled;
+        this.snapshot = new Snapshot(0, null, null, null);
+    }
+
+    /**
+     * 当前快照；首次访问时从数据库加载
+     */
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (enabled && !current.isLoaded()) {
+            reload();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    /**
+     * 从数据库全量重建快照
+     */
+    @Scheduled(fixedDelayString = "${catalog.snapshot.refresh-interval-ms:30000}",
+            initialDelayString = "${catalog.snapshot.refresh-interval-ms:30000}")
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            Map<String, Course> byId = new LinkedHashMap<>();
+            long digest = 0;
+            for (Course course : courseRepository.findAll()) {
+                Course copy = copyOf(course, course.getEnrolled());
+                byId.put(copy.getId(), copy);
+                digest += fingerprint(copy);
+            }
+            publish(byId, digest, ScheduleIndex.of(byId.values()));
+            log.debug("课程目录快照重载，{} 门课程", byId.size());
+        } catch (RuntimeException e) {
+            // 加载失败时保留旧快照（未加载时读请求回退到数据库），等待下一轮
+            log.warn("课程目录快照重载失败: {}", e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 课程新增或修改后调用，事务提交后替换该课程
+     */
+    public void saved(Course course) {
+        Course copy = copyOf(course, course.getEnrolled());
+        afterCommit(() -> apply(Set.of(copy.getId()), byId -> byId.put(copy.getId(), copy)));
+        invalidationPublisher.publish(INVALIDATION_TYPE, copy.getId());
+    }
+
+    /**
+     * 课程删除后调用，事务提交后移除该课程
+     */
+    public void deleted(String courseId) {
+        afterCommit(() -> apply(Set.of(courseId), byId -> byId.remove(courseId)));
+        invalidationPublisher.publish(INVALIDATION_TYPE, courseId);
+    }
+
+    /**
+     * 座位预占（delta &gt; 0）或释放（delta &lt; 0）成功后调用，事务提交后调整本实例快照中的已选人数；
+     * 不通知其他副本：每次选课都向所有副本广播并触发一次数据库读取，正是快照要省掉的流量
+     */
+    public void seatsChanged(String courseId, int delta) {
+        afterCommit(() -> apply(Set.of(courseId), byId -> {
+            Course course = byId.get(courseId);
+            if (course != null) {
+                int enrolled = Math.max(0, Math.min(course.getCapacity(), course.getEnrolled() + delta));
+                byId.put(courseId, copyOf(course, enrolled));
+            }
+        }));
+    }
+
+    @Override
+    public String type() {
+        return INVALIDATION_TYPE;
+    }
+
+    /**
+     * 其他实例修改了这些课程：从数据库重新读取并替换，已删除的移除（不再向外广播），IN 列表按 QUERY_CHUNK_SIZE 分片
+     */
+    @Override
+    public void invalidate(Collection<String> courseIds) {
+        List<String> ids = List.copyOf(new LinkedHashSet<>(courseIds));
+        apply(ids, byId -> {
+            Map<String, Course> found = new HashMap<>();
+            for (int i = 0; i < ids.size(); i += QUERY_CHUNK_SIZE) {
+                List<String> chunk = ids.subList(i, Math.min(i + QUERY_CHUNK_SIZE, ids.size()));
+                for (Course course : courseRepository.findAllById(chunk)) {
+                    found.put(course.getId(), copyOf(course, course.getEnrolled()));
+                }
+            }
+            for (String courseId : courseIds) {
+                Course course = found.get(courseId);
+                if (course != null) {
+                    byId.put(courseId, course);
+                } else {
+                    byId.remove(courseId);
+                }
+            }
+        });
+    }
+
+    // changedIds 为 change 可能修改的课程（不重复），内容摘要只对这些课程增量更新；
+    // 这些课程的上课时间都未变（含增删）时沿用当前快照的上课时间索引
+    private void apply(Collection<String> changedIds, Consumer<Map<String, Course>> change) {
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (!current.isLoaded()) {
+                // 未加载（或已关闭）时数据在下次加载时从数据库读取
+                return;
+            }
+            Map<String, Course> byId = new LinkedHashMap<>(current.byId);
+            long digest = current.digest;
+            for (String id : changedIds) {
+                Course before = byId.get(id);
+                if (before != null) {
+                    digest -= fingerprint(before);
+                }
+            }
+            change.accept(byId);
+            boolean schedulesChanged = false;
+            for (String id : changedIds) {
+                Course after = byId.get(id);
+                if (after != null) {
+                    digest += fingerprint(after);
+                }
+                schedulesChanged |= !sameSchedule(current.byId.get(id), after);
+            }
+            publish(byId, digest, schedulesChanged ? ScheduleIndex.of(byId.values()) : current.scheduleIndex);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void publish(Map<String, Course> byId, long digest, ScheduleIndex scheduleIndex) {
+        Map<String, Course> byCode = new HashMap<>(byId.size() * 2);
+        for (Course course : byId.values()) {
+            byCode.put(course.getCode(), course);
+        }
+        snapshot = new Snapshot(digest, Collections.unmodifiableMap(byId), byCode, scheduleIndex);
+    }
+
+    /**
+     * 单门课程的内容摘要（响应中出现的全部字段，SHA-256 取前 8 字节）；快照摘要为各课程摘要之和，与顺序无关
+     */
+    static long fingerprint(Course course) {
+        Instructor instructor = course.getInstructor();
+        ScheduleSlot schedule = course.getSchedule();
+        String canonical = String.join("\u0000",
+                course.getId(), course.getCode(), course.getTitle(),
+                instructor != null ? instructor.getId() : null,
+                instructor != null ? instructor.getName() : null,
+                instructor != null ? instructor.getEmail() : null,
+                schedule != null ? String.valueOf(schedule.getDayOfWeek()) : null,
+                schedule != null ? String.valueOf(schedule.getStart()) : null,
+                schedule != null ? String.valueOf(schedule.getEnd()) : null,
+                schedule != null ? String.valueOf(schedule.expectedAttendance()) : null,
+                String.valueOf(course.getCapacity()), String.valueOf(course.getEnrolled()),
+                String.valueOf(course.getCreatedAt()));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 两个版本的课程在上课时间索引中的位置相同（都不存在，或星期与起止时间相同）
+    private static boolean sameSchedule(Course before, Course after) {
+        if (before == null || after == null) {
+            return before == after;
+        }
+        ScheduleSlot a = before.getSchedule();
+        ScheduleSlot b = after.getSchedule();
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getDayOfWeek() == b.getDayOfWeek() && a.getStart().equals(b.getStart()) && a.getEnd().equals(b.getEnd());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Course copyOf(Course source, int enrolled) {
+        Course copy = new Course();
+        copy.setId(source.getId());
+        copy.setCode(source.getCode());
+        copy.setTitle(source.getTitle());
+        copy.setInstructor(source.getInstructor());
+        copy.setSchedule(source.getSchedule());
+        copy.setCapacity(source.getCapacity());
+        copy.setEnrolled(enrolled);
+        copy.setCreatedAt(source.getCreatedAt());
+        return copy;
+    }
+
+    /**
+     * 不可变快照。isLoaded() 为 false 时不含数据，调用方应回退到数据库
+     */
+    public static final class Snapshot {
+
+        private final String tag;
+        private final long digest;
+        private final Map<String, Course> byId;
+        private final Map<String, Course> byCode;
+        private final List<Course> courses;
+        private final ScheduleIndex scheduleIndex;
+
+        private Snapshot(long digest, Map<String, Course> byId, Map<String, Course> byCode,
+                         ScheduleIndex scheduleIndex) {
+            this.tag = byId != null ? byId.size() + "-" + Long.toHexString(digest) : null;
+            this.digest = digest;
+            this.byId = byId;
+            this.byCode = byCode;
+            this.scheduleIndex = scheduleIndex;
+            this.courses = byId != null ? List.copyOf(byId.values()) : null;
+        }
+
+        /**
+         * 内容标识（不含引号），用于 ETag；未加载时为 null
+         */
+        public String tag() {
+            return tag;
+        }
+
+        public boolean isLoaded() {
+            return byId != null;
+        }
+
+        public List<Course> courses() {
+            return courses;
+        }
+
+        public Optional<Course> findById(String id) {
+            return Optional.ofNullable(byId.get(id));
+        }
+
+        public Optional<Course> findByCode(String code) {
+            return Optional.ofNullable(byCode.get(code));
+        }
+
+        /**
+         * heldCourseIds 中与 course 上课时间冲突的课程 ID
+         */
+        public List<String> scheduleConflicts(Course course, Set<String> heldCourseIds) {
+            return scheduleIndex.overlapping(course.getSchedule(), heldCourseIds, course.getId());
+        }
+    }
+}
@@ -2,41 +2,138 @@ package com.zjgsu.ljy.coursecloud.catalog.service;
 
 import com.zjgsu.ljy.coursecloud.catalog.model.Course;
 import com.zjgsu.ljy.coursecloud.catalog.repository.CourseRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
 public class CourseService {
 
     private final CourseRepository courseRepository;
+    private final SeatLedger seatLedger;
+    private final SeatOperations seatOperations;
+    private final EntityManager entityManager;
+    private final CourseCatalog courseCatalog;
+    private final TransactionTemplate transactionTemplate;
 
-    public CourseService(CourseRepository courseRepository) {
+    private static final int QUERY_CHUNK_SIZE = 1000;  // IN 列表分片，避免超出驱动参数上限
+
+    public CourseService(CourseRepository courseRepository, SeatLedger seatLedger, SeatOperations seatOperations,
+                         EntityManager entityManager, CourseCatalog courseCatalog,
+                         PlatformTransactionManager transactionManager) {
         this.courseRepository = courseRepository;
+        this.seatLedger = seatLedger;
+        this.seatOperations = seatOperations;
+        this.entityManager = entityManager;
+        this.courseCatalog = courseCatalog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
-     * 获取所有课程
+     * 获取所有课程（优先读取内存快照，命中时不开启事务、不占用数据库连接）
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Course> getAllCourses() {
-        return courseRepository.findAll();
+        CourseCatalog.Snapshot snapshot = courseCatalog.current();
+        return snapshot.isLoaded() ? snapshot.courses() : courseRepository.findAll();
+    }
+
+    /**
+     * 键集分页获取课程，after 为上一页最后一条的 ID（首页传 null）
+     */
+    @Transactional(readOnly = true)
+    public List<Course> getCoursePage(String after, int limit) {
+        return after == null
+                ? courseRepository.findAllByOrderByIdAsc(Limit.of(limit))
+                : courseRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
     }
 
     /**
-     * 根据ID获取课程
+     * 逐行遍历所有课程，处理完即从持久化上下文中移除，内存占用与总行数无关
      */
+    @Transactional(readOnly = true)
+    public void forEachCourse(Consumer<Course> action) {
+        try (Stream<Course> courses = courseRepository.streamAll()) {
+            courses.forEach(course -> {
+                action.accept(course);
+                entityManager.detach(course);
+            });
+        }
+    }
+
+    /**
+     * 根据ID获取课程（优先读取内存快照）
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<Course> getCourseById(String id) {
-        return courseRepository.findById(id);
+        CourseCatalog.Snapshot snapshot = courseCatalog.current();
+        return snapshot.isLoaded() ? snapshot.findById(id) : courseRepository.findById(id);
+    }
+
+    /**
+     * 按 ID 批量查询课程，IN 列表按 QUERY_CHUNK_SIZE 分片，返回以课程 ID 为键的 Map
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Course> getCoursesByIds(Collection<String> ids) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<String, Course> found = new LinkedHashMap<>();
+        for (int i = 0; i < distinct.size(); i += QUERY_CHUNK_SIZE) {
+            List<String> chunk = distinct.subList(i, Math.min(i + QUERY_CHUNK_SIZE, distinct.size()));
+            for (Course course : courseRepository.findAllById(chunk)) {
+                found.put(course.getId(), course);
+            }
+        }
+        return found;
     }
 
     /**
-     * 根据课程代码获取课程
+     * 根据课程代码获取课程（优先读取内存快照）
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<Course> getCourseByCode(String code) {
-        return courseRepository.findByCode(code);
+        CourseCatalog.Snapshot snapshot = courseCatalog.current();
+        return snapshot.isLoaded() ? snapshot.findByCode(code) : courseRepository.findByCode(code);
+    }
+
+    /**
+     * heldCourseIds 中与课程 courseId 上课时间冲突的课程（同一天且时间段相交）。
+     * 快照已加载时走上课时间索引，不访问数据库
+     *
+     * @throws IllegalArgumentException 课程不存在
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<String> findScheduleConflicts(String courseId, Collection<String> heldCourseIds) {
+        CourseCatalog.Snapshot snapshot = courseCatalog.current();
+        Course course = (snapshot.isLoaded() ? snapshot.findById(courseId) : courseRepository.findById(courseId))
+                .orElseThrow(() -> new IllegalArgumentException("Course with id " + courseId + " not found"));
+        if (heldCourseIds.isEmpty()) {
+            return List.of();
+        }
+        if (snapshot.isLoaded()) {
+            return snapshot.scheduleConflicts(course, new HashSet<>(heldCourseIds));
+        }
+        return courseRepository.findAllById(heldCourseIds)
+                .stream()
+                .filter(held -> !held.getId().equals(courseId) && course.getSchedule() != null
+                        && course.getSchedule().overlaps(held.getSchedule()))
+                .map(Course::getId)
+                .toList();
     }
 
     /**
@@ -47,7 +144,9 @@ public class CourseService {
         if (courseRepository.findByCode(course.getCode()).isPresent()) {
             throw new IllegalArgumentException("Course with code " + course.getCode() + " already exists");
         }
-        return courseRepository.save(course);
+        Course saved = courseRepository.save(course);
+        courseCatalog.saved(saved);
+        return saved;
     }
 
     /**
@@ -62,7 +161,12 @@ public class CourseService {
                     existingCourse.setSchedule(updatedCourse.getSchedule());
                     existingCourse.setCapacity(updatedCourse.getCapacity());
                     existingCourse.setEnrolled(updatedCourse.getEnrolled());
-                    return courseRepository.save(existingCourse);
+                    Course saved = courseRepository.save(existingCourse);
+                    if (seatLedger.isEnabled()) {
+                        seatLedger.evict(id);
+                    }
+                    courseCatalog.saved(saved);
+                    return saved;
                 })
                 .orElseThrow(() -> new IllegalArgumentException("Course with id " + id + " not found"));
     }
@@ -75,28 +179,145 @@ public class CourseService {
             throw new IllegalArgumentException("Course with id " + id + " not found");
         }
         courseRepository.deleteById(id);
+        if (seatLedger.isEnabled()) {
+            seatLedger.evict(id);
+        }
+        courseCatalog.deleted(id);
     }
 
     /**
      * 增加课程的选课人数
      */
     public void incrementEnrolled(String courseId) {
-        courseRepository.findById(courseId).ifPresent(course -> {
-            course.setEnrolled(course.getEnrolled() + 1);
-            courseRepository.save(course);
-        });
+        reserveSeats(courseId, 1);
     }
 
     /**
      * 减少课程的选课人数
      */
     public void decrementEnrolled(String courseId) {
-        courseRepository.findById(courseId).ifPresent(course -> {
-            if (course.getEnrolled() > 0) {
-                course.setEnrolled(course.getEnrolled() - 1);
-                courseRepository.save(course);
-            }
-        });
+        releaseSeats(courseId, 1);
+    }
+
+    /**
+     * 预占座位：单条条件 UPDATE 完成检查与扣减，并发下不会超卖；余量不足 count 时按剩余量部分预占。
+     * 开启座位账本时改为内存 CAS 扣减，增量异步写回数据库，不开启事务、不占用数据库连接
+     *
+     * @return 实际预占的座位数，0 表示课程已满
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int reserveSeats(String courseId, int count) {
+        int granted = reserve(courseId, count);
+        if (granted > 0) {
+            courseCatalog.seatsChanged(courseId, granted);
+        }
+        return granted;
+    }
+
+    /**
+     * 幂等预占：同一 key 只预占一次，重试时返回首次预占的座位数；key 为 null 时等同 reserveSeats(courseId, count)
+     *
+     * @throws IllegalStateException 同一 key 的操作正在执行
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int reserveSeats(String courseId, int count, String key) {
+        return key == null
+                ? reserveSeats(courseId, count)
+                : seatOperations.apply(key, courseId, () -> reserveSeats(courseId, count));
+    }
+
+    private int reserve(String courseId, int count) {
+        if (seatLedger.isEnabled()) {
+            return seatLedger.reserve(courseId, count);
+        }
+        return transactionTemplate.execute(status -> reserveInDatabase(courseId, count));
+    }
+
+    private int reserveInDatabase(String courseId, int count) {
+        if (courseRepository.reserveSeats(courseId, count) == 1) {
+            return count;
+        }
+        if (count == 1) {
+            // 单个座位没有部分预占：课程已满只需确认课程存在，不加行锁（满员时的重试风暴不会在该行上排队）
+            return requireExists(courseId);
+        }
+        // 余量不足：锁定该行读取最新余量，按余量部分预占（持有行锁，条件更新不会再失败）
+        int free = courseRepository.lockFreeSeats(courseId)
+                .orElseThrow(() -> new IllegalArgumentException("Course with id " + courseId + " not found"));
+        int granted = Math.min(count, free);
+        if (granted <= 0 || courseRepository.reserveSeats(courseId, granted) != 1) {
+            return 0;
+        }
+        return granted;
+    }
+
+    /**
+     * 释放座位（enrolled 不会减到 0 以下）
+     *
+     * @return 实际释放的座位数
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int releaseSeats(String courseId, int count) {
+        int released = release(courseId, count);
+        if (released > 0) {
+            courseCatalog.seatsChanged(courseId, -released);
+        }
+        return released;
+    }
+
+    /**
+     * 幂等释放：同一 key 只释放一次，重试时返回首次释放的座位数；key 为 null 时等同 releaseSeats(courseId, count)
+     *
+     * @throws IllegalStateException 同一 key 的操作正在执行
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int releaseSeats(String courseId, int count, String key) {
+        return key == null
+                ? releaseSeats(courseId, count)
+                : seatOperations.apply(key, courseId, () -> releaseSeats(courseId, count));
+    }
+
+    /**
+     * 撤销以 key 执行的预占（选课失败后的补偿），归还其全部座位；可重复调用。
+     * 预占尚未到达时记下撤销，之后到达的同 key 预占不再扣减座位
+     *
+     * @return 实际归还的座位数
+     * @throws IllegalStateException 同一 key 的预占正在执行
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int cancelReservation(String courseId, String key) {
+        return seatOperations.cancel(key, courseId, seats -> releaseSeats(courseId, seats));
+    }
+
+    private int release(String courseId, int count) {
+        if (seatLedger.isEnabled()) {
+            return seatLedger.release(courseId, count);
+        }
+        return transactionTemplate.execute(status -> releaseInDatabase(courseId, count));
+    }
+
+    private int releaseInDatabase(String courseId, int count) {
+        if (courseRepository.releaseSeats(courseId, count) == 1) {
+            return count;
+        }
+        if (count == 1) {
+            return requireExists(courseId);
+        }
+        int enrolled = courseRepository.lockEnrolled(courseId)
+                .orElseThrow(() -> new IllegalArgumentException("Course with id " + courseId + " not found"));
+        int released = Math.min(count, enrolled);
+        if (released <= 0 || courseRepository.releaseSeats(courseId, released) != 1) {
+            return 0;
+        }
+        return released;
+    }
+
+    // 条件更新未命中时区分"课程已满 / 已无可释放座位"（返回 0）与课程不存在
+    private int requireExists(String courseId) {
+        if (!courseRepository.existsById(courseId)) {
+            throw new IllegalArgumentException("Course with id " + courseId + " not found");
+        }
+        return 0;
     }
 
     /**
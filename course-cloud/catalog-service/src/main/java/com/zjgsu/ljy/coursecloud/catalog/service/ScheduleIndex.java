@@ -0,0 +1,150 @@
+package com.zjgsu.ljy.coursecloud.catalog.service;
+
+import com.zjgsu.ljy.coursecloud.catalog.model.Course;
+import com.zjgsu.ljy.coursecloud.catalog.model.ScheduleSlot;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 上课时间区间索引：按星期分组，每组课程按开始时间排序，并记录前缀最大结束时间。
+ * 查询与 [start, end) 相交的课程时，两次二分确定候选范围 [lo, hi)：
+ * hi 之后的课程开始得太晚，lo 之前的课程（前缀最大结束时间 ≤ start）全部结束得太早。
+ * 候选课程（学生已选的 k 门）少于范围宽度时按 ID 定位逐门检查，否则扫描该范围，代价为 O(log n + min(k, hi - lo))。
+ * 首尾相接（一门的结束时间等于另一门的开始时间）不算冲突。不可变，随快照一起发布。
+ */
+final class ScheduleIndex {
+
+    private final Map<DayOfWeek, Day> days;
+
+    private ScheduleIndex(Map<DayOfWeek, Day> days) {
+        this.days = days;
+    }
+
+    static ScheduleIndex of(Collection<Course> courses) {
+        Map<DayOfWeek, List<Course>> byDay = new EnumMap<>(DayOfWeek.class);
+        for (Course course : courses) {
+            ScheduleSlot slot = course.getSchedule();
+            if (slot != null && slot.getDayOfWeek() != null && slot.getStart() != null && slot.getEnd() != null) {
+                byDay.computeIfAbsent(slot.getDayOfWeek(), day -> new ArrayList<>()).add(course);
+            }
+        }
+        Map<DayOfWeek, Day> days = new EnumMap<>(DayOfWeek.class);
+        byDay.forEach((day, list) -> days.put(day, Day.of(list)));
+        return new ScheduleIndex(days);
+    }
+
+    /**
+     * candidates 中与 slot 时间相交的课程 ID（不含 excludeId 本身）
+     */
+    List<String> overlapping(ScheduleSlot slot, Set<String> candidates, String excludeId) {
+        Day day = slot != null ? days.get(slot.getDayOfWeek()) : null;
+        if (day == null || candidates.isEmpty()) {
+            return List.of();
+        }
+        int start = slot.getStart().toSecondOfDay();
+        int end = slot.getEnd().toSecondOfDay();
+        int lo = day.firstEndingAfter(start);
+        int hi = day.countStartingBefore(end);
+        if (lo >= hi) {
+            return List.of();
+        }
+        if (candidates.size() < hi - lo) {
+            // 候选较少：逐门定位，结果按开始时间排列，与扫描一致
+            int[] hits = new int[candidates.size()];
+            int count = 0;
+            for (String id : candidates) {
+                Integer position = day.positions.get(id);
+                if (position != null && position >= lo && position < hi && day.ends[position] > start
+                        && !id.equals(excludeId)) {
+                    hits[count++] = position;
+                }
+            }
+            Arrays.sort(hits, 0, count);
+            List<String> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(day.ids[hits[i]]);
+            }
+            return result;
+        }
+        List<String> result = new ArrayList<>();
+        for (int i = lo; i < hi; i++) {
+            if (day.ends[i] > start && candidates.contains(day.ids[i]) && !day.ids[i].equals(excludeId)) {
+                result.add(day.ids[i]);
+            }
+        }
+        return result;
+    }
+
+    private static final class Day {
+
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] maxEnds;  // maxEnds[i] = max(ends[0..i])，单调不减
+        private final String[] ids;
+        private final Map<String, Integer> positions;  // 课程 ID → 下标
+
+        private Day(int[] starts, int[] ends, int[] maxEnds, String[] ids) {
+            this.starts = starts;
+            this.ends = ends;
+            this.maxEnds = maxEnds;
+            this.ids = ids;
+            this.positions = new HashMap<>(ids.length * 2);
+            for (int i = 0; i < ids.length; i++) {
+                positions.put(ids[i], i);
+            }
+        }
+
+        private static Day of(List<Course> courses) {
+            courses.sort(Comparator.comparing(course -> course.getSchedule().getStart()));
+            int n = courses.size();
+            int[] starts = new int[n];
+            int[] ends = new int[n];
+            int[] maxEnds = new int[n];
+            String[] ids = new String[n];
+            for (int i = 0; i < n; i++) {
+                ScheduleSlot slot = courses.get(i).getSchedule();
+                starts[i] = slot.getStart().toSecondOfDay();
+                ends[i] = slot.getEnd().toSecondOfDay();
+                maxEnds[i] = i == 0 ? ends[i] : Math.max(maxEnds[i - 1], ends[i]);
+                ids[i] = courses.get(i).getId();
+            }
+            return new Day(starts, ends, maxEnds, ids);
+        }
+
+        // 开始时间 < end 的课程数（starts 有序）
+        private int countStartingBefore(int end) {
+            int index = Arrays.binarySearch(starts, end);
+            if (index < 0) {
+                return -index - 1;
+            }
+            while (index > 0 && starts[index - 1] == end) {
+                index--;
+            }
+            return index;
+        }
+
+        // 第一个前缀最大结束时间 > start 的位置，之前的课程都不可能与查询区间相交
+        private int firstEndingAfter(int start) {
+            int lo = 0;
+            int hi = maxEnds.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (maxEnds[mid] > start) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.zjgsu.ljy.coursecloud.catalog.service;
+
+import com.zjgsu.ljy.coursecloud.catalog.repository.CourseRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 内存座位账本：每门课程一个原子计数器，CAS 扣减并校验 capacity，不加锁；
+ * 计数器与上次写回值之差由后台任务批量写回 courses.enrolled（write-behind）。
+ *
+ * 计数器在首次访问时从数据库加载，因此重启后自动以数据库为准重建；加载不持有任何锁，也不触发写回。
+ * 写回只在后台任务中执行，在独立事务（REQUIRES_NEW）中，不随调用方事务回滚。
+ * 账本假定由单个 catalog 节点持有座位计数，多副本部署时应保持关闭。
+ */
+@Component
+public class SeatLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatLedger.class);
+
+    private static final String FLUSH_SQL = "UPDATE courses SET enrolled = enrolled + ? WHERE id = ?";
+    private static final int RETIRED = -1;  // 计数器已移出账本，enrolled 不再变化
+
+    private final CourseRepository courseRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int flushBatchSize;
+
+    private final ConcurrentHashMap<String, SeatCounter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<SeatCounter> dirty = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // 已停用计数器移出账本的次数：加载期间有计数器被移出时，读到的 enrolled 可能早于其增量写回，须重新加载
+    private final AtomicLong removals = new AtomicLong();
+    private final long retiredWaitMs;
+
+    public SeatLedger(CourseRepository courseRepository, JdbcTemplate jdbcTemplate,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${catalog.seat-ledger.enabled:false}") boolean enabled,
+                      @Value("${catalog.seat-ledger.flush-batch-size:500}") int flushBatchSize,
+                      @Value("${catalog.seat-ledger.flush-interval-ms:200}") long flushIntervalMs) {
+        this.courseRepository = courseRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.flushBatchSize = flushBatchSize;
+        this.retiredWaitMs = Math.max(1, flushIntervalMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 预占座位，余量不足 count 时按剩余量部分预占
+     *
+     * @return 实际预占的座位数，0 表示课程已满
+     * @throws IllegalArgumentException 课程不存在
+     */
+    public int reserve(String courseId, int count) {
+        while (true) {
+            SeatCounter counter = counterFor(courseId);
+            int current = counter.enrolled.get();
+            if (current == RETIRED) {
+                // evict 已停用该计数器，等待后台写回其增量并移出账本后重新取
+                counter.awaitRemoval(retiredWaitMs);
+                continue;
+            }
+            int granted = Math.min(count, counter.capacity - current);
+            if (granted <= 0) {
+                return 0;
+            }
+            if (counter.enrolled.compareAndSet(current, current + granted)) {
+                markDirty(counter);
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * 释放座位
+     *
+     * @return 实际释放的座位数
+     * @throws IllegalArgumentException 课程不存在
+     */
+    public int release(String courseId, int count) {
+        while (true) {
+            SeatCounter counter = counterFor(courseId);
+            int current = counter.enrolled.get();
+            if (current == RETIRED) {
+                counter.awaitRemoval(retiredWaitMs);
+                continue;
+            }
+            int released = Math.min(count, current);
+            if (released <= 0) {
+                return 0;
+            }
+            if (counter.enrolled.compareAndSet(current, current - released)) {
+                markDirty(counter);
+                return released;
+            }
+        }
+    }
+
+    /**
+     * 课程被修改或删除时丢弃内存计数器，下次访问从数据库重新加载。
+     * 在调用方事务提交后执行（新计数器读到修改后的 capacity）：停用计数器并排队写回；
+     * 后台写回其增量后才从账本移除，期间该课程的预占 / 释放等待移除完成，之后从数据库加载的值已包含这部分增量
+     */
+    public void evict(String courseId) {
+        afterCommit(() -> {
+            SeatCounter counter = counters.get(courseId);
+            if (counter != null && counter.retire()) {
+                markDirty(counter);
+            }
+        });
+    }
+
+    /**
+     * 批量写回累积的座位增量，同一批次在一个独立事务内通过 JDBC batch 执行
+     */
+    @Scheduled(fixedDelayString = "${catalog.seat-ledger.flush-interval-ms:200}")
+    public void flush() {
+        if (!enabled || dirty.isEmpty()) {
+            return;
+        }
+        // 使用 ReentrantLock 而非 synchronized：虚拟线程在持锁执行 JDBC 时不会钉住载体线程
+        flushLock.lock();
+        try {
+            drain();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // ==================== 以下方法须持有 flushLock ====================
+    private void drain() {
+        List<SeatCounter> batch = new ArrayList<>(flushBatchSize);
+        List<Object[]> args = new ArrayList<>(flushBatchSize);
+        SeatCounter counter;
+        while ((counter = dirty.poll()) != null) {
+            counter.queued.set(false);
+            int value = counter.value();
+            int delta = value - counter.flushed;
+            if (delta == 0) {
+                removeIfRetired(counter);
+                continue;
+            }
+            batch.add(counter);
+            args.add(new Object[]{delta, counter.courseId, value});
+            if (args.size() >= flushBatchSize) {
+                writeBatch(batch, args);
+                batch = new ArrayList<>(flushBatchSize);
+                args = new ArrayList<>(flushBatchSize);
+            }
+        }
+        if (!args.isEmpty()) {
+            writeBatch(batch, args);
+        }
+    }
+
+    private void writeBatch(List<SeatCounter> batch, List<Object[]> args) {
+        List<Object[]> params = args.stream().map(arg -> new Object[]{arg[0], arg[1]}).toList();
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, params));
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).flushed = (Integer) args.get(i)[2];
+                removeIfRetired(batch.get(i));
+            }
+            log.debug("座位账本写回 {} 门课程", args.size());
+        } catch (RuntimeException e) {
+            // 写回失败时 flushed 不变，重新排队等待下一轮重试
+            log.error("座位账本写回失败，{} 门课程的增量将重试: {}", args.size(), e.getMessage());
+            batch.forEach(this::markDirty);
+        }
+    }
+
+    // 停用的计数器增量已全部写回：移出账本，唤醒等待的预占 / 释放
+    private void removeIfRetired(SeatCounter counter) {
+        if (counter.retiredAt != RETIRED && counter.flushed == counter.retiredAt) {
+            // 先计数再移除：加载方看到计数器已不在账本时，一定也能看到计数变化
+            removals.incrementAndGet();
+            counters.remove(counter.courseId, counter);
+            counter.removed.countDown();
+        }
+    }
+
+    // ==================== 计数器加载 ====================
+    // 数据库读取在 computeIfAbsent 之外：映射函数内做 I/O 会阻塞落在同一个桶里的其他课程，
+    // 并在调用方事务持有连接时再占一个连接
+    private SeatCounter counterFor(String courseId) {
+        while (true) {
+            SeatCounter counter = counters.get(courseId);
+            if (counter != null) {
+                return counter;
+            }
+            long seen = removals.get();
+            SeatCounter loaded = courseRepository.findById(courseId)
+                    .map(course -> new SeatCounter(courseId, course.getCapacity(), course.getEnrolled()))
+                    .orElseThrow(() -> new IllegalArgumentException("Course with id " + courseId + " not found"));
+            // 读取期间没有计数器被移出时，数据库值已包含所有已停用计数器的增量；否则重新读取
+            SeatCounter installed = counters.compute(courseId, (id, existing) ->
+                    existing != null ? existing : removals.get() == seen ? loaded : null);
+            if (installed != null) {
+                return installed;
+            }
+        }
+    }
+
+    private void markDirty(SeatCounter counter) {
+        if (counter.queued.compareAndSet(false, true)) {
+            dirty.add(counter);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class SeatCounter {
+        private final String courseId;
+        private final int capacity;
+        private final AtomicInteger enrolled;
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private final CountDownLatch removed = new CountDownLatch(1);  // 停用后移出账本
+        private volatile int retiredAt = RETIRED;  // 停用时的 enrolled
+        private int flushed;  // 已写回数据库的 enrolled，只在 flushLock 内读写
+
+        private SeatCounter(String courseId, int capacity, int enrolled) {
+            this.courseId = courseId;
+            this.capacity = capacity;
+            this.enrolled = new AtomicInteger(enrolled);
+            this.flushed = enrolled;
+        }
+
+        /**
+         * 停用计数器，之后 enrolled 不再变化；已停用时返回 false
+         */
+        private boolean retire() {
+            int current;
+            do {
+                current = enrolled.get();
+                if (current == RETIRED) {
+                    return false;
+                }
+            } while (!enrolled.compareAndSet(current, RETIRED));
+            retiredAt = current;
+            return true;
+        }
+
+        private void awaitRemoval(long timeoutMs) {
+            try {
+                removed.await(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for seat counter of " + courseId, e);
+            }
+        }
+
+        /**
+         * 当前应写回的 enrolled；停用进行中（retiredAt 尚未写入）时返回 flushed，由 evict 重新排队
+         */
+        private int value() {
+            int current = enrolled.get();
+            if (current != RETIRED) {
+                return current;
+            }
+            int retired = retiredAt;
+            return retired != RETIRED ? retired : flushed;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.zjgsu.ljy.coursecloud.catalog.service;
+
+import com.zjgsu.ljy.coursecloud.catalog.model.SeatOperation;
+import com.zjgsu.ljy.coursecloud.catalog.repository.SeatOperationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 座位操作幂等记录：调用方为每次预占 / 释放生成 key，超时或熔断后重试同一 key 时返回首次的结果，不再变更座位；
+ * 预占可按 key 撤销（选课失败后的补偿），撤销先于预占到达时留下空记录，迟到的预占不再扣减座位。
+ *
+ * 座位账本关闭时记录写入 seat_operations，与座位变更在同一事务内提交，多个 catalog 实例共享；
+ * 开启时（单个 catalog 节点）记录保存在内存，不访问数据库。记录保留 retention 后清理，调用方的重试须在此之前结束
+ */
+@Component
+public class SeatOperations {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatOperations.class);
+
+    private static final int PENDING = -1;  // 内存记录已占用 key，操作尚未完成
+
+    private final SeatOperationRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean inMemory;
+    private final Duration retention;
+
+    private final ConcurrentHashMap<String, MemoryOperation> memory = new ConcurrentHashMap<>();
+
+    public SeatOperations(SeatOperationRepository repository, PlatformTransactionManager transactionManager,
+                          @Value("${catalog.seat-ledger.enabled:false}") boolean inMemory,
+                          @Value("${catalog.seat-operations.retention:24h}") Duration retention) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.inMemory = inMemory;
+        this.retention = retention;
+    }
+
+    /**
+     * 以 key 幂等地执行座位变更 operation（返回实际变更的座位数）；key 已执行过时返回记录的座位数
+     *
+     * @throws IllegalStateException 同一 key 的操作正在另一个请求中执行
+     */
+    public int apply(String key, String courseId, IntSupplier operation) {
+        return inMemory ? applyInMemory(key, operation) : applyInDatabase(key, courseId, operation);
+    }
+
+    /**
+     * 撤销 key 对应的预占：由 release 归还其座位并清零记录，返回实际归还的座位数；重复撤销返回 0。
+     * key 尚无记录（预占未到达或未执行）时留下空记录并返回 0
+     *
+     * @throws IllegalStateException 同一 key 的预占正在执行
+     */
+    public int cancel(String key, String courseId, IntUnaryOperator release) {
+        return inMemory ? cancelInMemory(key, release) : cancelInDatabase(key, courseId, release);
+    }
+
+    /**
+     * 清理超过保留期的记录
+     */
+    @Scheduled(fixedDelayString = "${catalog.seat-operations.purge-interval-ms:600000}")
+    public void purge() {
+        if (inMemory) {
+            long cutoff = System.currentTimeMillis() - retention.toMillis();
+            memory.values().removeIf(operation -> operation.createdAt < cutoff);
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        Integer purged = transactionTemplate.execute(status -> repository.purge(cutoff));
+        if (purged != null && purged > 0) {
+            log.info("清理座位操作记录 {} 条", purged);
+        }
+    }
+
+    // ==================== seat_operations ====================
+    // 先以主键占用 key 再变更座位：并发的同 key 请求在主键上等待，首个请求提交后以主键冲突结束并读取其结果
+    private int applyInDatabase(String key, String courseId, IntSupplier operation) {
+        try {
+            return transactionTemplate.execute(status -> {
+                repository.claim(key, courseId, LocalDateTime.now());
+                int seats = operation.getAsInt();
+                repository.record(key, seats);
+                return seats;
+            });
+        } catch (DataIntegrityViolationException e) {
+            return repository.findById(key)
+                    .map(SeatOperation::getSeats)
+                    .orElseThrow(() -> inProgress(key));
+        }
+    }
+
+    private int cancelInDatabase(String key, String courseId, IntUnaryOperator release) {
+        try {
+            return transactionTemplate.execute(status -> {
+                Optional<SeatOperation> operation = repository.findById(key);
+                if (operation.isEmpty()) {
+                    repository.claim(key, courseId, LocalDateTime.now());
+                    return 0;
+                }
+                int seats = operation.get().getSeats();
+                if (seats <= 0 || repository.cancel(key, seats) != 1) {
+                    return 0;
+                }
+                return release.applyAsInt(seats);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw inProgress(key);
+        }
+    }
+
+    // ==================== 内存记录（座位账本开启时） ====================
+    private int applyInMemory(String key, IntSupplier operation) {
+        MemoryOperation claimed = new MemoryOperation(PENDING);
+        MemoryOperation existing = memory.putIfAbsent(key, claimed);
+        if (existing != null) {
+            int seats = existing.seats.get();
+            if (seats == PENDING) {
+                throw inProgress(key);
+            }
+            return seats;
+        }
+        int seats;
+        try {
+            seats = operation.getAsInt();
+        } catch (RuntimeException e) {
+            memory.remove(key, claimed);
+            throw e;
+        }
+        claimed.seats.set(seats);
+        return seats;
+    }
+
+    private int cancelInMemory(String key, IntUnaryOperator release) {
+        MemoryOperation existing = memory.putIfAbsent(key, new MemoryOperation(0));
+        if (existing == null) {
+            return 0;
+        }
+        while (true) {
+            int seats = existing.seats.get();
+            if (seats == PENDING) {
+                throw inProgress(key);
+            }
+            if (seats <= 0) {
+                return 0;
+            }
+            if (existing.seats.compareAndSet(seats, 0)) {
+                return release.applyAsInt(seats);
+            }
+        }
+    }
+
+    private static IllegalStateException inProgress(String key) {
+        return new IllegalStateException("Seat operation " + key + " is still in progress");
+    }
+
+    private static final class MemoryOperation {
+        private final AtomicInteger seats;
+        private final long createdAt = System.currentTimeMillis();
+
+        private MemoryOperation(int seats) {
+            this.seats = new AtomicInteger(seats);
+        }
+    }
+}
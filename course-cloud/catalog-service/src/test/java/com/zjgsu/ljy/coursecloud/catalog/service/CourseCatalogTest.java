@@ -0,0 +1,123 @@
+package com.zjgsu.ljy.coursecloud.catalog.service;
+
+import com.zjgsu.ljy.coursecloud.catalog.model.Course;
+import com.zjgsu.ljy.coursecloud.catalog.model.Instructor;
+import com.zjgsu.ljy.coursecloud.catalog.model.ScheduleSlot;
+import com.zjgsu.ljy.coursecloud.catalog.repository.CourseRepository;
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationPublisher;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CourseCatalogTest {
+
+    @Test
+    void replicasWithSameDataShareTag() {
+        CourseCatalog first = catalog(List.of(course("c1", 0), course("c2", 5)));
+        CourseCatalog second = catalog(List.of(course("c2", 5), course("c1", 0)));
+
+        assertThat(first.current().tag()).isNotNull().isEqualTo(second.current().tag());
+    }
+
+    @Test
+    void tagFollowsDataNotPublishCount() {
+        CourseCatalog catalog = catalog(List.of(course("c1", 0), course("c2", 5)));
+        String initial = catalog.current().tag();
+
+        catalog.seatsChanged("c1", 1);
+        String changed = catalog.current().tag();
+        catalog.seatsChanged("c1", -1);
+
+        assertThat(changed).isNotEqualTo(initial);
+        assertThat(catalog.current().tag()).isEqualTo(initial);
+    }
+
+    @Test
+    void incrementalTagMatchesFullReload() {
+        List<Course> rows = new ArrayList<>(List.of(course("c1", 0), course("c2", 5)));
+        CourseCatalog catalog = catalog(rows);
+        catalog.current();
+
+        Course added = course("c3", 2);
+        catalog.saved(added);
+        catalog.deleted("c2");
+        catalog.seatsChanged("c1", 3);
+
+        CourseCatalog reloaded = catalog(List.of(course("c1", 3), course("c3", 2)));
+        assertThat(catalog.current().tag()).isEqualTo(reloaded.current().tag());
+    }
+
+    @Test
+    void onlyCourseEditsAreBroadcast() {
+        CourseRepository repository = mock(CourseRepository.class);
+        when(repository.findAll()).thenReturn(List.of(course("c1", 0)));
+        InvalidationPublisher publisher = mock(InvalidationPublisher.class);
+        CourseCatalog catalog = new CourseCatalog(repository, publisher, true);
+        catalog.current();
+
+        catalog.seatsChanged("c1", 1);
+        catalog.seatsChanged("c1", -1);
+        verify(publisher, never()).publish(any(), any());
+
+        catalog.saved(course("c1", 0));
+        catalog.deleted("c1");
+        verify(publisher, times(2)).publish(eq(CourseCatalog.INVALIDATION_TYPE), eq("c1"));
+    }
+
+    @Test
+    void conflictsFollowScheduleEditsAcrossSeatChanges() {
+        CourseCatalog catalog = catalog(List.of(course("c1", 0), course("c2", 0)));
+        Course c1 = catalog.current().findById("c1").orElseThrow();
+        assertThat(catalog.current().scheduleConflicts(c1, Set.of("c2"))).containsExactly("c2");
+
+        catalog.seatsChanged("c2", 1);
+        assertThat(catalog.current().scheduleConflicts(c1, Set.of("c2"))).containsExactly("c2");
+
+        Course moved = course("c2", 1);
+        moved.setSchedule(new ScheduleSlot(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(10, 0), 30));
+        catalog.saved(moved);
+        assertThat(catalog.current().scheduleConflicts(c1, Set.of("c2"))).isEmpty();
+        assertThat(catalog.current().findById("c2").orElseThrow().getEnrolled()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledSnapshotHasNoTag() {
+        CourseCatalog catalog = new CourseCatalog(mock(CourseRepository.class), mock(InvalidationPublisher.class), false);
+
+        assertThat(catalog.current().isLoaded()).isFalse();
+        assertThat(catalog.current().tag()).isNull();
+    }
+
+    private static CourseCatalog catalog(List<Course> rows) {
+        CourseRepository repository = mock(CourseRepository.class);
+        when(repository.findAll()).thenReturn(rows);
+        return new CourseCatalog(repository, mock(InvalidationPublisher.class), true);
+    }
+
+    private static Course course(String id, int enrolled) {
+        Course course = new Course();
+        course.setId(id);
+        course.setCode("CODE-" + id);
+        course.setTitle("Title " + id);
+        course.setInstructor(new Instructor("T-" + id, "Teacher " + id, id + "@example.com"));
+        course.setSchedule(new ScheduleSlot(DayOfWeek.MONDAY, LocalTime.of(8, 0), LocalTime.of(9, 0), 30));
+        course.setCapacity(10);
+        course.setEnrolled(enrolled);
+        course.setCreatedAt(LocalDateTime.of(2024, 9, 1, 8, 0));
+        return course;
+    }
+}
@@ -0,0 +1,134 @@
+package com.zjgsu.ljy.coursecloud.catalog.service;
+
+import com.zjgsu.ljy.coursecloud.catalog.repository.CourseRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CourseServiceTest {
+
+    private CourseRepository courseRepository;
+    private SeatLedger seatLedger;
+    private CourseCatalog courseCatalog;
+    private PlatformTransactionManager transactionManager;
+    private CourseService courseService;
+
+    @BeforeEach
+    void setUp() {
+        courseRepository = mock(CourseRepository.class);
+        seatLedger = mock(SeatLedger.class);
+        courseCatalog = mock(CourseCatalog.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        courseService = new CourseService(courseRepository, seatLedger,
+                new SeatOperations(null, transactionManager, true, Duration.ofHours(1)), mock(EntityManager.class),
+                courseCatalog, transactionManager);
+    }
+
+    @Test
+    void reserveGrantsWholeRequestWithConditionalUpdate() {
+        when(courseRepository.reserveSeats("c1", 3)).thenReturn(1);
+
+        assertThat(courseService.reserveSeats("c1", 3)).isEqualTo(3);
+        verify(courseRepository, never()).lockFreeSeats(anyString());
+        verify(courseCatalog).seatsChanged("c1", 3);
+    }
+
+    @Test
+    void singleSeatOnFullCourseDoesNotLockTheRow() {
+        when(courseRepository.reserveSeats("c1", 1)).thenReturn(0);
+        when(courseRepository.existsById("c1")).thenReturn(true);
+
+        assertThat(courseService.reserveSeats("c1", 1)).isZero();
+        verify(courseRepository, never()).lockFreeSeats(anyString());
+        verify(courseCatalog, never()).seatsChanged(anyString(), anyInt());
+    }
+
+    @Test
+    void singleSeatOnMissingCourseIsRejected() {
+        when(courseRepository.reserveSeats("missing", 1)).thenReturn(0);
+        when(courseRepository.releaseSeats("missing", 1)).thenReturn(0);
+
+        assertThatThrownBy(() -> courseService.reserveSeats("missing", 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> courseService.releaseSeats("missing", 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(courseRepository, never()).lockFreeSeats(anyString());
+        verify(courseRepository, never()).lockEnrolled(anyString());
+    }
+
+    @Test
+    void batchReservePartiallyGrantsRemainingSeats() {
+        when(courseRepository.reserveSeats("c1", 5)).thenReturn(0);
+        when(courseRepository.lockFreeSeats("c1")).thenReturn(Optional.of(2));
+        when(courseRepository.reserveSeats("c1", 2)).thenReturn(1);
+
+        assertThat(courseService.reserveSeats("c1", 5)).isEqualTo(2);
+        verify(courseCatalog).seatsChanged("c1", 2);
+    }
+
+    @Test
+    void batchReserveOnFullCourseGrantsNothing() {
+        when(courseRepository.reserveSeats("c1", 5)).thenReturn(0);
+        when(courseRepository.lockFreeSeats("c1")).thenReturn(Optional.of(0));
+
+        assertThat(courseService.reserveSeats("c1", 5)).isZero();
+        verify(courseRepository, never()).reserveSeats("c1", 0);
+    }
+
+    @Test
+    void releaseIsBoundedByEnrolled() {
+        when(courseRepository.releaseSeats("c1", 1)).thenReturn(0);
+        when(courseRepository.existsById("c1")).thenReturn(true);
+        assertThat(courseService.releaseSeats("c1", 1)).isZero();
+        verify(courseRepository, never()).lockEnrolled(anyString());
+
+        when(courseRepository.releaseSeats("c1", 4)).thenReturn(0);
+        when(courseRepository.lockEnrolled("c1")).thenReturn(Optional.of(3));
+        when(courseRepository.releaseSeats("c1", 3)).thenReturn(1);
+        assertThat(courseService.releaseSeats("c1", 4)).isEqualTo(3);
+        verify(courseCatalog).seatsChanged("c1", -3);
+    }
+
+    @Test
+    void keyedReserveIsAppliedOnceAndCancelReturnsItsSeats() {
+        when(courseRepository.reserveSeats("c1", 2)).thenReturn(1);
+        when(courseRepository.releaseSeats("c1", 2)).thenReturn(1);
+
+        assertThat(courseService.reserveSeats("c1", 2, "k1")).isEqualTo(2);
+        assertThat(courseService.reserveSeats("c1", 2, "k1")).isEqualTo(2);
+        verify(courseRepository, times(1)).reserveSeats("c1", 2);
+
+        assertThat(courseService.cancelReservation("c1", "k1")).isEqualTo(2);
+        assertThat(courseService.cancelReservation("c1", "k1")).isZero();
+        verify(courseRepository, times(1)).releaseSeats("c1", 2);
+    }
+
+    @Test
+    void ledgerPathOpensNoTransaction() {
+        when(seatLedger.isEnabled()).thenReturn(true);
+        when(seatLedger.reserve("c1", 2)).thenReturn(2);
+        when(seatLedger.release("c1", 1)).thenReturn(1);
+
+        assertThat(courseService.reserveSeats("c1", 2)).isEqualTo(2);
+        assertThat(courseService.releaseSeats("c1", 1)).isEqualTo(1);
+        verify(transactionManager, never()).getTransaction(any());
+        verify(courseRepository, never()).reserveSeats(anyString(), anyInt());
+    }
+}
@@ -0,0 +1,97 @@
+package com.zjgsu.ljy.coursecloud.catalog.service;
+
+import com.zjgsu.ljy.coursecloud.catalog.model.Course;
+import com.zjgsu.ljy.coursecloud.catalog.model.ScheduleSlot;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScheduleIndexTest {
+
+    @Test
+    void touchingSlotsDoNotConflict() {
+        List<Course> courses = List.of(
+                course("a", DayOfWeek.MONDAY, 8, 0, 10, 0),
+                course("b", DayOfWeek.MONDAY, 10, 0, 12, 0),
+                course("c", DayOfWeek.MONDAY, 9, 30, 10, 30),
+                course("d", DayOfWeek.TUESDAY, 8, 0, 10, 0));
+        ScheduleIndex index = ScheduleIndex.of(courses);
+
+        ScheduleSlot slot = slot(DayOfWeek.MONDAY, 10, 0, 11, 0);
+        assertThat(index.overlapping(slot, Set.of("a", "b", "c", "d"), null)).containsExactly("c", "b");
+        assertThat(index.overlapping(slot, Set.of("a", "d"), null)).isEmpty();
+    }
+
+    @Test
+    void excludesTheCourseItself() {
+        ScheduleIndex index = ScheduleIndex.of(List.of(
+                course("a", DayOfWeek.FRIDAY, 8, 0, 10, 0),
+                course("b", DayOfWeek.FRIDAY, 9, 0, 11, 0)));
+
+        assertThat(index.overlapping(slot(DayOfWeek.FRIDAY, 8, 0, 10, 0), Set.of("a", "b"), "a"))
+                .containsExactly("b");
+    }
+
+    @Test
+    void longCourseBeforeWindowIsFound() {
+        // 开始最早的课程持续整天，窗口下界由前缀最大结束时间决定
+        ScheduleIndex index = ScheduleIndex.of(List.of(
+                course("all-day", DayOfWeek.MONDAY, 7, 0, 21, 0),
+                course("early", DayOfWeek.MONDAY, 8, 0, 9, 0),
+                course("late", DayOfWeek.MONDAY, 18, 0, 19, 0)));
+
+        assertThat(index.overlapping(slot(DayOfWeek.MONDAY, 15, 0, 16, 0), Set.of("all-day", "early", "late"), null))
+                .containsExactly("all-day");
+    }
+
+    @Test
+    void candidateLookupAndWindowScanMatchBruteForce() {
+        Random random = new Random(42);
+        List<Course> courses = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int start = 7 * 60 + random.nextInt(12 * 60);
+            int length = 30 + random.nextInt(180);
+            courses.add(course("c" + i, DayOfWeek.of(1 + random.nextInt(5)),
+                    start / 60, start % 60, Math.min(23 * 60, start + length) / 60, Math.min(23 * 60, start + length) % 60));
+        }
+        ScheduleIndex index = ScheduleIndex.of(courses);
+
+        for (int round = 0; round < 500; round++) {
+            // 候选数从少到多，分别走逐门定位与范围扫描两条路径
+            int k = round % 2 == 0 ? 1 + random.nextInt(8) : 500 + random.nextInt(1500);
+            Set<String> held = new HashSet<>();
+            while (held.size() < k) {
+                held.add("c" + random.nextInt(courses.size()));
+            }
+            Course target = courses.get(random.nextInt(courses.size()));
+
+            List<String> expected = courses.stream()
+                    .filter(other -> !other.getId().equals(target.getId()))
+                    .filter(other -> held.contains(other.getId()))
+                    .filter(other -> target.getSchedule().overlaps(other.getSchedule()))
+                    .map(Course::getId)
+                    .toList();
+            assertThat(index.overlapping(target.getSchedule(), held, target.getId()))
+                    .containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    private static Course course(String id, DayOfWeek day, int startHour, int startMinute, int endHour, int endMinute) {
+        Course course = new Course();
+        course.setId(id);
+        course.setSchedule(slot(day, startHour, startMinute, endHour, endMinute));
+        return course;
+    }
+
+    private static ScheduleSlot slot(DayOfWeek day, int startHour, int startMinute, int endHour, int endMinute) {
+        return new ScheduleSlot(day, LocalTime.of(startHour, startMinute), LocalTime.of(endHour, endMinute), 30);
+    }
+}
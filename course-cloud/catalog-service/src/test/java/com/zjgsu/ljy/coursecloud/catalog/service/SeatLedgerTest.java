@@ -0,0 +1,222 @@
+package com.zjgsu.ljy.coursecloud.catalog.service;
+
+import com.zjgsu.ljy.coursecloud.catalog.model.Course;
+import com.zjgsu.ljy.coursecloud.catalog.repository.CourseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SeatLedgerTest {
+
+    private CourseRepository courseRepository;
+    private JdbcTemplate jdbcTemplate;
+    private PlatformTransactionManager transactionManager;
+    private SeatLedger ledger;
+
+    // 每次 batchUpdate 写回的 (delta, courseId)
+    private final List<List<Object[]>> flushed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        courseRepository = mock(CourseRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> args = invocation.getArgument(1);
+            flushed.add(new ArrayList<>(args));
+            return new int[args.size()];
+        });
+        ledger = new SeatLedger(courseRepository, jdbcTemplate, transactionManager, true, 500, 200);
+    }
+
+    @Test
+    void concurrentReservationsNeverExceedCapacity() throws Exception {
+        stubCourse("c1", 100, 0);
+        int threads = 8;
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 50; i++) {
+                    granted.addAndGet(ledger.reserve("c1", 1));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(granted.get()).isEqualTo(100);
+        assertThat(ledger.reserve("c1", 1)).isZero();
+        ledger.flush();
+        assertThat(flushedDelta("c1")).isEqualTo(100);
+    }
+
+    @Test
+    void partialGrantAndReleaseAreBounded() {
+        stubCourse("c1", 10, 8);
+
+        assertThat(ledger.reserve("c1", 5)).isEqualTo(2);
+        assertThat(ledger.release("c1", 20)).isEqualTo(10);
+        assertThat(ledger.release("c1", 1)).isZero();
+    }
+
+    @Test
+    void flushWritesNetDeltaOnceInNewTransaction() {
+        stubCourse("c1", 10, 0);
+        ledger.reserve("c1", 3);
+        ledger.release("c1", 1);
+
+        ledger.flush();
+        ledger.flush();
+
+        assertThat(flushed).hasSize(1);
+        assertThat(flushedDelta("c1")).isEqualTo(2);
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertThat(definition.getValue().getPropagationBehavior())
+                .isEqualTo(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Test
+    void failedFlushIsRetried() {
+        stubCourse("c1", 10, 0);
+        doThrow(new IllegalStateException("db down"))
+                .doAnswer(invocation -> {
+                    List<Object[]> args = invocation.getArgument(1);
+                    flushed.add(new ArrayList<>(args));
+                    return new int[args.size()];
+                })
+                .when(jdbcTemplate).batchUpdate(anyString(), anyList());
+        ledger.reserve("c1", 4);
+
+        ledger.flush();
+        ledger.reserve("c1", 1);
+        ledger.flush();
+
+        assertThat(flushed).hasSize(1);
+        assertThat(flushedDelta("c1")).isEqualTo(5);
+    }
+
+    @Test
+    void evictLeavesWriteBackToFlusherAndReloadsAfterIt() throws Exception {
+        stubCourse("c1", 10, 0);
+        ledger.reserve("c1", 4);
+
+        ledger.evict("c1");
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+
+        // 停用期间的预占等待后台写回并移出账本，之后从已包含这 4 个座位的数据库重新加载
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> pending = executor.submit(() -> ledger.reserve("c1", 10));
+        stubCourse("c1", 10, 4);
+        ledger.flush();
+        assertThat(pending.get(5, TimeUnit.SECONDS)).isEqualTo(6);
+        executor.shutdown();
+
+        InOrder order = inOrder(jdbcTemplate, courseRepository);
+        order.verify(courseRepository).findById("c1");
+        order.verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        order.verify(courseRepository).findById("c1");
+        assertThat(flushed.get(0).get(0)).containsExactly(4, "c1");
+    }
+
+    @Test
+    void evictWithoutPendingDeltaDoesNotWrite() {
+        stubCourse("c1", 10, 0);
+        ledger.reserve("c1", 0);
+
+        ledger.evict("c1");
+        ledger.evict("c1");
+        ledger.flush();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        assertThat(ledger.reserve("c1", 1)).isEqualTo(1);
+        verify(courseRepository, times(2)).findById(eq("c1"));
+    }
+
+    @Test
+    void loadRacingAnEvictionIsRetried() {
+        AtomicInteger loads = new AtomicInteger();
+        when(courseRepository.findById("c1")).thenAnswer(invocation -> {
+            switch (loads.incrementAndGet()) {
+                case 1 -> {
+                    // 读取期间另一个请求加载、预占 4 个座位，随后课程被修改、增量写回并移出账本
+                    ledger.reserve("c1", 4);
+                    ledger.evict("c1");
+                    ledger.flush();
+                    return Optional.of(course("c1", 10, 0));
+                }
+                case 2 -> {
+                    return Optional.of(course("c1", 10, 0));
+                }
+                default -> {
+                    return Optional.of(course("c1", 10, 4));
+                }
+            }
+        });
+
+        // 第一次读到的 enrolled = 0 早于写回，不能装入账本
+        assertThat(ledger.reserve("c1", 10)).isEqualTo(6);
+    }
+
+    @Test
+    void unknownCourseIsRejected() {
+        when(courseRepository.findById("missing")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> ledger.reserve("missing", 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void stubCourse(String id, int capacity, int enrolled) {
+        when(courseRepository.findById(id)).thenReturn(Optional.of(course(id, capacity, enrolled)));
+    }
+
+    private static Course course(String id, int capacity, int enrolled) {
+        Course course = new Course();
+        course.setId(id);
+        course.setCapacity(capacity);
+        course.setEnrolled(enrolled);
+        return course;
+    }
+
+    private int flushedDelta(String courseId) {
+        return flushed.stream()
+                .flatMap(List::stream)
+                .filter(args -> courseId.equals(args[1]))
+                .mapToInt(args -> (Integer) args[0])
+                .sum();
+    }
+}
@@ -0,0 +1,122 @@
+package com.zjgsu.ljy.coursecloud.catalog.service;
+
+import com.zjgsu.ljy.coursecloud.catalog.model.SeatOperation;
+import com.zjgsu.ljy.coursecloud.catalog.repository.SeatOperationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SeatOperationsTest {
+
+    private SeatOperationRepository repository;
+    private SeatOperations database;
+    private SeatOperations memory;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(SeatOperationRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        database = new SeatOperations(repository, transactionManager, false, Duration.ofHours(1));
+        memory = new SeatOperations(null, transactionManager, true, Duration.ofHours(1));
+    }
+
+    @Test
+    void databaseReplayReturnsRecordedSeatsWithoutApplying() {
+        when(repository.claim(anyString(), anyString(), any())).thenThrow(new DataIntegrityViolationException("dup"));
+        when(repository.findById("k1")).thenReturn(Optional.of(operation("k1", 3)));
+        AtomicInteger applied = new AtomicInteger();
+
+        assertThat(database.apply("k1", "c1", () -> applied.addAndGet(3))).isEqualTo(3);
+        assertThat(applied.get()).isZero();
+    }
+
+    @Test
+    void databaseApplyRecordsTheResult() {
+        assertThat(database.apply("k1", "c1", () -> 2)).isEqualTo(2);
+        verify(repository).claim(anyString(), anyString(), any());
+        verify(repository).record("k1", 2);
+    }
+
+    @Test
+    void databaseCancelBeforeReserveLeavesAnEmptyRecord() {
+        when(repository.findById("k1")).thenReturn(Optional.empty());
+
+        assertThat(database.cancel("k1", "c1", seats -> seats)).isZero();
+        verify(repository).claim(anyString(), anyString(), any());
+        verify(repository, never()).cancel(anyString(), anyInt());
+    }
+
+    @Test
+    void databaseCancelReleasesOnlyWhenItWinsTheConditionalUpdate() {
+        when(repository.findById("k1")).thenReturn(Optional.of(operation("k1", 2)));
+        when(repository.cancel("k1", 2)).thenReturn(1).thenReturn(0);
+        AtomicInteger released = new AtomicInteger();
+
+        assertThat(database.cancel("k1", "c1", released::addAndGet)).isEqualTo(2);
+        assertThat(database.cancel("k1", "c1", released::addAndGet)).isZero();
+        assertThat(released.get()).isEqualTo(2);
+    }
+
+    @Test
+    void databaseCancelRacingTheReserveIsRetriedLater() {
+        when(repository.findById("k1")).thenReturn(Optional.empty());
+        when(repository.claim(anyString(), anyString(), any())).thenThrow(new DataIntegrityViolationException("dup"));
+
+        assertThatThrownBy(() -> database.cancel("k1", "c1", seats -> seats))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void memoryApplyRunsOncePerKey() {
+        AtomicInteger applied = new AtomicInteger();
+
+        assertThat(memory.apply("k1", "c1", () -> applied.addAndGet(1))).isEqualTo(1);
+        assertThat(memory.apply("k1", "c1", () -> applied.addAndGet(1))).isEqualTo(1);
+        assertThat(applied.get()).isEqualTo(1);
+    }
+
+    @Test
+    void memoryCancelBeforeReserveBlocksTheLateReserve() {
+        AtomicInteger applied = new AtomicInteger();
+
+        assertThat(memory.cancel("k1", "c1", seats -> seats)).isZero();
+        assertThat(memory.apply("k1", "c1", () -> applied.addAndGet(1))).isZero();
+        assertThat(applied.get()).isZero();
+    }
+
+    @Test
+    void memoryFailedOperationFreesTheKey() {
+        assertThatThrownBy(() -> memory.apply("k1", "c1", () -> {
+            throw new IllegalArgumentException("Course with id c1 not found");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(memory.apply("k1", "c1", () -> 1)).isEqualTo(1);
+        assertThat(memory.cancel("k1", "c1", seats -> seats)).isEqualTo(1);
+        assertThat(memory.cancel("k1", "c1", seats -> seats)).isZero();
+    }
+
+    private static SeatOperation operation(String key, int seats) {
+        SeatOperation operation = new SeatOperation();
+        operation.setOpKey(key);
+        operation.setCourseId("c1");
+        operation.setSeats(seats);
+        return operation;
+    }
+}
@@ -0,0 +1,15 @@
+package com.zjgsu.ljy.coursecloud.common.ratelimit;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 按客户端限流的自动配置：引入本模块即在 Servlet 应用中注册 RateLimitFilter，规则见 rate-limit.*。
+ * 本模块同时带入 Nacos 配置中心客户端，各服务 bootstrap.yml 中的共享配置 common-ratelimit.yaml 由此生效。
+ */
+@AutoConfiguration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Import(RateLimitFilter.class)
+public class RateLimitAutoConfiguration {
+}
@@ -0,0 +1,161 @@
+package com.zjgsu.ljy.coursecloud.common.ratelimit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按客户端限流：请求匹配 rate-limit.routes 中的规则时，从对应令牌桶取一个令牌，取不到直接返回 429 + Retry-After。
+ * <ul>
+ *     <li>排在所有过滤器之前，被拒绝的请求不进入追踪、指标与 Spring MVC，也不读请求体</li>
+ *     <li>规则从 rate-limit.* 绑定；Nacos 共享配置 common-ratelimit.yaml 变更后（EnvironmentChangeEvent）整体替换，
+ *     id 未变的规则保留令牌桶</li>
+ *     <li>后台线程定期清理空闲的令牌桶</li>
+ * </ul>
+ * 只作用于本实例；多副本时总速率为各实例之和。
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RateLimitFilter extends OncePerRequestFilter
+        implements ApplicationListener<EnvironmentChangeEvent>, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private static final String PREFIX = "rate-limit";
+    private static final long SWEEP_PERIOD_SECONDS = 30;
+
+    private record Limits(RateLimitProperties properties, List<RouteLimiter> routes) {
+    }
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService sweeper;
+    private volatile Limits limits;
+
+    public RateLimitFilter(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.limits = load(null);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_PERIOD_SECONDS, SWEEP_PERIOD_SECONDS, TimeUnit.SECONDS);
+        Gauge.builder("http.rate_limit.buckets", this, RateLimitFilter::bucketCount)
+                .description("各限流规则当前保留的令牌桶数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Limits current = limits;
+        if (current.properties().enabled() && !current.routes().isEmpty()) {
+            PathContainer path = PathContainer.parsePath(request.getRequestURI());
+            String method = request.getMethod();
+            for (RouteLimiter route : current.routes()) {
+                if (route.matches(method, path)) {
+                    long waitNanos = route.acquire(request, path, current.properties().trustForwardedFor(),
+                            System.nanoTime());
+                    if (waitNanos > 0) {
+                        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds(waitNanos)));
+                        return;
+                    }
+                    break;
+                }
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * rate-limit.* 变更（Nacos 配置推送等）后重新绑定规则；新配置无效时保留原规则
+     */
+    @Override
+    public void onApplicationEvent(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().noneMatch(key -> key.startsWith(PREFIX))) {
+            return;
+        }
+        try {
+            limits = load(limits);
+            log.info("限流规则已更新: {}", limits.routes().stream().map(RouteLimiter::id).toList());
+        } catch (RuntimeException e) {
+            log.warn("限流配置无效，继续使用原规则: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        sweeper.shutdownNow();
+    }
+
+    public int bucketCount() {
+        int count = 0;
+        for (RouteLimiter route : limits.routes()) {
+            count += route.size();
+        }
+        return count;
+    }
+
+    /**
+     * 绑定 rate-limit.* 并构建规则；previous 为当前规则（首次加载为 null），id 相同的规则沿用其令牌桶
+     */
+    private Limits load(Limits previous) {
+        RateLimitProperties properties = Binder.get(environment).bindOrCreate(PREFIX, RateLimitProperties.class);
+        Map<String, RouteLimiter> existing = new HashMap<>();
+        if (previous != null) {
+            for (RouteLimiter route : previous.routes()) {
+                existing.putIfAbsent(route.id(), route);
+            }
+        }
+        List<RouteLimiter> routes = new ArrayList<>(properties.routes().size());
+        for (RateLimitProperties.Route route : properties.routes()) {
+            String id = route.id() != null ? route.id() : route.pattern();
+            // 同一 id 只沿用一次，重复的 id 各自新建桶，避免两条规则共用一组桶
+            routes.add(new RouteLimiter(route, properties.maxKeys(), meterRegistry, existing.remove(id)));
+        }
+        return new Limits(properties, List.copyOf(routes));
+    }
+
+    private void sweep() {
+        Limits current = limits;
+        long cutoff = System.nanoTime() - current.properties().idleTtl().toNanos();
+        int evicted = 0;
+        for (RouteLimiter route : current.routes()) {
+            evicted += route.sweep(cutoff);
+        }
+        if (evicted > 0) {
+            log.debug("清理空闲令牌桶 {} 个", evicted);
+        }
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
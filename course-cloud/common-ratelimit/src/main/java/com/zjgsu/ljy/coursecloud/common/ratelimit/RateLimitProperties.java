@@ -0,0 +1,45 @@
+package com.zjgsu.ljy.coursecloud.common.ratelimit;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * rate-limit.* 配置（application.yml 默认值，Nacos 共享配置 common-ratelimit.yaml 可覆盖并动态刷新）
+ *
+ * @param enabled           总开关
+ * @param idleTtl           令牌桶空闲多久（已回满）后被清理
+ * @param maxKeys           单条规则最多保留的令牌桶数，超出后新客户端按 IP 计数（IP 桶同样以此为上限）
+ * @param trustForwardedFor 按 IP 限流时取 X-Forwarded-For 的第一个地址（仅在网关后部署时开启）
+ * @param routes            限流规则，按顺序匹配，第一条命中的生效；未命中的请求不限流
+ */
+public record RateLimitProperties(@DefaultValue("true") boolean enabled,
+                                  @DefaultValue("5m") Duration idleTtl,
+                                  @DefaultValue("100000") int maxKeys,
+                                  @DefaultValue("false") boolean trustForwardedFor,
+                                  @DefaultValue List<Route> routes) {
+
+    /**
+     * 限流键：按客户端 IP、按学号（路径变量 / 查询参数 studentId，缺失时退回 IP；不采信 X-Student-Id 请求头）、或整条路由共用一个桶
+     */
+    public enum Key {
+        IP, STUDENT, ROUTE
+    }
+
+    /**
+     * @param id              规则名，用作指标标签
+     * @param pattern         路径模式（PathPattern 语法，如 /api/courses/{id}）
+     * @param methods         限定的 HTTP 方法，为空时匹配所有方法
+     * @param key             限流键
+     * @param capacity        桶容量（允许的突发请求数）
+     * @param refillPerSecond 每秒补充的令牌数（持续速率）
+     */
+    public record Route(String id,
+                        String pattern,
+                        @DefaultValue List<String> methods,
+                        @DefaultValue("ip") Key key,
+                        int capacity,
+                        double refillPerSecond) {
+    }
+}
@@ -0,0 +1,185 @@
+package com.zjgsu.ljy.coursecloud.common.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 一条限流规则及其令牌桶。
+ * <ul>
+ *     <li>令牌桶用 GCRA 表示：每个桶只有一个 AtomicLong（理论到达时间 tat），取令牌是一次 CAS，不加锁</li>
+ *     <li>桶按客户端键存放在 ConcurrentHashMap 中，命中时只做一次 get</li>
+ *     <li>被拒绝时不修改桶状态，只读一次 tat 并做几次整数运算</li>
+ *     <li>桶数达到 max-keys 后新客户端按 IP 记入溢出表（同样以 max-keys 为上限，再满才共用一个溢出桶），
+ *     一个客户端用大量伪造学号占满桶表只会限住它自己的 IP；空闲的桶由 sweep 清理</li>
+ * </ul>
+ * 不可变配置 + 可变桶：配置变更时规则整体重建，id 与限流键都未变的规则沿用原来的桶（容量、速率按新配置计算），
+ * 已耗尽令牌的客户端不会因为改了别的规则而重新获得整桶突发。
+ */
+final class RouteLimiter {
+
+    private static final PathPatternParser PARSER = new PathPatternParser();
+    private static final String STUDENT_VARIABLE = "studentId";
+    private static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+    private final String id;
+    private final PathPattern pattern;
+    private final Set<String> methods;
+    private final RateLimitProperties.Key key;
+    private final boolean studentInPath;
+    private final long intervalNanos;  // 补充一个令牌的时间
+    private final long burstNanos;     // 容量对应的时间：tat 最多领先当前时间这么多
+    private final int maxKeys;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets;
+    private final ConcurrentHashMap<String, AtomicLong> overflow;  // buckets 满后按 IP 计数
+    private final AtomicLong shared;  // ROUTE 键，或 overflow 也满后的最后一级
+    private final Counter rejections;
+
+    RouteLimiter(RateLimitProperties.Route route, int maxKeys, MeterRegistry meterRegistry) {
+        this(route, maxKeys, meterRegistry, null);
+    }
+
+    /**
+     * @param previous 同 id 的原规则（配置变更前），限流键相同时沿用它的桶；为 null 时新建
+     */
+    RouteLimiter(RateLimitProperties.Route route, int maxKeys, MeterRegistry meterRegistry, RouteLimiter previous) {
+        if (route.pattern() == null || route.pattern().isBlank()) {
+            throw new IllegalArgumentException("rate-limit route pattern is required");
+        }
+        if (route.capacity() < 1 || route.refillPerSecond() <= 0) {
+            throw new IllegalArgumentException("rate-limit route " + route.pattern()
+                    + " needs capacity >= 1 and refill-per-second > 0");
+        }
+        this.id = route.id() != null ? route.id() : route.pattern();
+        this.pattern = PARSER.parse(route.pattern());
+        this.methods = route.methods().stream()
+                .map(method -> method.toUpperCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.key = route.key();
+        this.studentInPath = route.pattern().contains("{" + STUDENT_VARIABLE + "}");
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / route.refillPerSecond()));
+        this.burstNanos = intervalNanos * route.capacity();
+        this.maxKeys = maxKeys;
+        if (previous != null && previous.id.equals(id) && previous.key == key) {
+            this.buckets = previous.buckets;
+            this.overflow = previous.overflow;
+            this.shared = previous.shared;
+        } else {
+            this.buckets = new ConcurrentHashMap<>();
+            this.overflow = new ConcurrentHashMap<>();
+            this.shared = new AtomicLong(Long.MIN_VALUE);
+        }
+        this.rejections = Counter.builder("http.rate_limit.rejections")
+                .tag("route", id)
+                .description("被限流拒绝的请求数")
+                .register(meterRegistry);
+    }
+
+    String id() {
+        return id;
+    }
+
+    boolean matches(String method, PathContainer path) {
+        return (methods.isEmpty() || methods.contains(method)) && pattern.matches(path);
+    }
+
+    /**
+     * 取一个令牌；成功返回 0，被拒绝时返回还需等待的纳秒数
+     */
+    long acquire(HttpServletRequest request, PathContainer path, boolean trustForwardedFor, long now) {
+        AtomicLong bucket = key == RateLimitProperties.Key.ROUTE
+                ? shared
+                : bucket(request, path, trustForwardedFor, now);
+        for (;;) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            long excess = next - now - burstNanos;
+            if (excess > 0) {
+                rejections.increment();
+                return excess;
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 清理 tat 早于 cutoff 的桶（已回满并空闲了一段时间，与新建的桶等价）。
+     * 与 acquire 并发时，刚取到旧桶的请求可能记在被移除的桶上，只影响一次计数
+     */
+    int sweep(long cutoff) {
+        int before = size();
+        buckets.values().removeIf(bucket -> bucket.get() < cutoff);
+        overflow.values().removeIf(bucket -> bucket.get() < cutoff);
+        return before - size();
+    }
+
+    int size() {
+        return buckets.size() + overflow.size();
+    }
+
+    private AtomicLong bucket(HttpServletRequest request, PathContainer path, boolean trustForwardedFor, long now) {
+        String ip = ip(request, trustForwardedFor);
+        String studentId = key == RateLimitProperties.Key.STUDENT ? studentId(request, path) : null;
+        AtomicLong bucket = find(buckets, studentId != null ? studentId : ip, now);
+        if (bucket == null) {
+            bucket = find(overflow, ip, now);
+        }
+        return bucket != null ? bucket : shared;
+    }
+
+    /**
+     * 已有的桶直接返回；表未满时新建；表已满返回 null
+     */
+    private AtomicLong find(ConcurrentHashMap<String, AtomicLong> table, String client, long now) {
+        AtomicLong bucket = table.get(client);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (table.size() >= maxKeys) {
+            return null;
+        }
+        return table.computeIfAbsent(client, k -> new AtomicLong(now));
+    }
+
+    /**
+     * 学号只取自路径变量或 studentId 查询参数（即被访问的资源）；不读 X-Student-Id 请求头：
+     * 客户端可以随意填写请求头，每次换一个值就能拿到一个满的新桶
+     */
+    private String studentId(HttpServletRequest request, PathContainer path) {
+        String studentId = null;
+        if (studentInPath) {
+            PathPattern.PathMatchInfo info = pattern.matchAndExtract(path);
+            Map<String, String> variables = info != null ? info.getUriVariables() : Map.of();
+            studentId = variables.get(STUDENT_VARIABLE);
+        }
+        if (studentId == null) {
+            studentId = request.getParameter(STUDENT_VARIABLE);
+        }
+        return studentId != null && !studentId.isEmpty() ? studentId : null;
+    }
+
+    private static String ip(HttpServletRequest request, boolean trustForwardedFor) {
+        if (trustForwardedFor) {
+            String forwardedFor = request.getHeader(FORWARDED_FOR_HEADER);
+            if (forwardedFor != null && !forwardedFor.isEmpty()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma >= 0 ? forwardedFor.substring(0, comma) : forwardedFor).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,94 @@
+package com.zjgsu.ljy.coursecloud.common.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        route(0, "courses", "/api/courses/**", 2);
+        route(1, "students", "/api/students/**", 2);
+        filter = new RateLimitFilter(environment, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.destroy();
+    }
+
+    @Test
+    void rejectsWithRetryAfterOnceBucketIsEmpty() throws Exception {
+        assertThat(status("/api/courses/1")).isEqualTo(200);
+        assertThat(status("/api/courses/2")).isEqualTo(200);
+
+        MockHttpServletResponse rejected = call("/api/courses/3");
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("100");
+
+        assertThat(status("/api/students/1")).isEqualTo(200);
+        assertThat(status("/api/other")).isEqualTo(200);
+    }
+
+    @Test
+    void reloadKeepsBucketsOfUnchangedRoutes() throws Exception {
+        status("/api/courses/1");
+        status("/api/courses/2");
+        status("/api/students/1");
+        status("/api/students/2");
+
+        // students 改名为 students-v2 并调整容量，courses 只调整容量：id 未变的沿用令牌桶
+        route(0, "courses", "/api/courses/**", 3);
+        route(1, "students-v2", "/api/students/**", 2);
+        filter.onApplicationEvent(new EnvironmentChangeEvent(Set.of("rate-limit.routes[0].capacity")));
+
+        assertThat(status("/api/courses/3")).isEqualTo(200);
+        assertThat(status("/api/courses/4")).isEqualTo(429);
+        assertThat(status("/api/students/3")).isEqualTo(200);
+        assertThat(filter.bucketCount()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidReloadKeepsCurrentRules() throws Exception {
+        status("/api/courses/1");
+        status("/api/courses/2");
+
+        environment.setProperty("rate-limit.routes[0].capacity", "0");
+        filter.onApplicationEvent(new EnvironmentChangeEvent(Set.of("rate-limit.routes[0].capacity")));
+
+        assertThat(status("/api/courses/3")).isEqualTo(429);
+    }
+
+    private void route(int index, String id, String pattern, int capacity) {
+        String prefix = "rate-limit.routes[" + index + "].";
+        environment.setProperty(prefix + "id", id);
+        environment.setProperty(prefix + "pattern", pattern);
+        environment.setProperty(prefix + "capacity", Integer.toString(capacity));
+        environment.setProperty(prefix + "refill-per-second", "0.01");
+    }
+
+    private int status(String uri) throws Exception {
+        return call(uri).getStatus();
+    }
+
+    private MockHttpServletResponse call(String uri) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
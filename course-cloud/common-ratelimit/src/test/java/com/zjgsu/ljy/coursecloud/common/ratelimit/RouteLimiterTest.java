@@ -0,0 +1,212 @@
+package com.zjgsu.ljy.coursecloud.common.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.PathContainer;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteLimiterTest {
+
+    // 容量 3、每秒 10 个：每 100ms 补充一个令牌
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long T0 = TimeUnit.SECONDS.toNanos(1000);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void burstUpToCapacityThenRejectsUntilNextRefill() {
+        RouteLimiter limiter = limiter(RateLimitProperties.Key.IP, 100);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(acquire(limiter, "10.0.0.1", T0)).isZero();
+        }
+        assertThat(acquire(limiter, "10.0.0.1", T0)).isEqualTo(INTERVAL);
+        assertThat(acquire(limiter, "10.0.0.1", T0 + INTERVAL / 2)).isEqualTo(INTERVAL / 2);
+
+        assertThat(acquire(limiter, "10.0.0.1", T0 + INTERVAL)).isZero();
+        assertThat(acquire(limiter, "10.0.0.1", T0 + INTERVAL)).isEqualTo(INTERVAL);
+        assertThat(meterRegistry.counter("http.rate_limit.rejections", "route", "r").count()).isEqualTo(3);
+    }
+
+    @Test
+    void rejectionsDoNotConsumeTokens() {
+        RouteLimiter limiter = limiter(RateLimitProperties.Key.IP, 100);
+        for (int i = 0; i < 3; i++) {
+            acquire(limiter, "10.0.0.1", T0);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertThat(acquire(limiter, "10.0.0.1", T0 + i)).isPositive();
+        }
+
+        // 被拒绝的请求不推迟补充：一个间隔后恰好放行一个
+        assertThat(acquire(limiter, "10.0.0.1", T0 + INTERVAL)).isZero();
+        assertThat(acquire(limiter, "10.0.0.1", T0 + INTERVAL)).isPositive();
+    }
+
+    @Test
+    void sustainedRateAndRefillAfterIdle() {
+        RouteLimiter limiter = limiter(RateLimitProperties.Key.IP, 100);
+        long now = T0;
+        for (int i = 0; i < 100; i++) {
+            assertThat(acquire(limiter, "10.0.0.1", now)).isZero();
+            now += INTERVAL;
+        }
+
+        // 空闲远超容量对应的时间后只回满到容量，不累积
+        now += TimeUnit.SECONDS.toNanos(60);
+        for (int i = 0; i < 3; i++) {
+            assertThat(acquire(limiter, "10.0.0.1", now)).isZero();
+        }
+        assertThat(acquire(limiter, "10.0.0.1", now)).isPositive();
+    }
+
+    @Test
+    void bucketsFollowTheConfiguredKey() {
+        RouteLimiter byIp = limiter(RateLimitProperties.Key.IP, 100);
+        exhaust(byIp, "10.0.0.1");
+        assertThat(acquire(byIp, "10.0.0.1", T0)).isPositive();
+        assertThat(acquire(byIp, "10.0.0.2", T0)).isZero();
+
+        RouteLimiter byRoute = limiter(RateLimitProperties.Key.ROUTE, 100);
+        exhaust(byRoute, "10.0.0.1");
+        assertThat(acquire(byRoute, "10.0.0.2", T0)).isPositive();
+        assertThat(byRoute.size()).isZero();
+
+        // 学号取自路径变量，同一 IP 的不同学生各有一个桶
+        RouteLimiter byStudent = new RouteLimiter(route("/api/enrollments/student/{studentId}",
+                RateLimitProperties.Key.STUDENT), 100, meterRegistry);
+        for (int i = 0; i < 3; i++) {
+            assertThat(acquireStudent(byStudent, "/api/enrollments/student/s1", null, null)).isZero();
+        }
+        assertThat(acquireStudent(byStudent, "/api/enrollments/student/s1", null, null)).isPositive();
+        assertThat(acquireStudent(byStudent, "/api/enrollments/student/s2", null, null)).isZero();
+        assertThat(byStudent.size()).isEqualTo(2);
+    }
+
+    @Test
+    void studentHeaderCannotBuyFreshBuckets() {
+        RouteLimiter byPath = new RouteLimiter(route("/api/enrollments/student/{studentId}",
+                RateLimitProperties.Key.STUDENT), 100, meterRegistry);
+        for (int i = 0; i < 3; i++) {
+            acquireStudent(byPath, "/api/enrollments/student/s1", null, "x" + i);
+        }
+        // 请求头不参与：换一个 X-Student-Id 仍计在路径中的学号上
+        assertThat(acquireStudent(byPath, "/api/enrollments/student/s1", null, "fresh")).isPositive();
+
+        RouteLimiter byQuery = new RouteLimiter(route("/api/enrollments/waitlist/position",
+                RateLimitProperties.Key.STUDENT), 100, meterRegistry);
+        for (int i = 0; i < 3; i++) {
+            assertThat(acquireStudent(byQuery, "/api/enrollments/waitlist/position", "s1", "x" + i)).isZero();
+        }
+        assertThat(acquireStudent(byQuery, "/api/enrollments/waitlist/position", "s1", "fresh")).isPositive();
+
+        // 只有请求头时退回 IP
+        for (int i = 0; i < 3; i++) {
+            assertThat(acquireStudent(byQuery, "/api/enrollments/waitlist/position", null, "h" + i)).isZero();
+        }
+        assertThat(acquireStudent(byQuery, "/api/enrollments/waitlist/position", null, "h3")).isPositive();
+    }
+
+    @Test
+    void studentsBeyondMaxKeysAreCountedPerIp() {
+        RouteLimiter limiter = new RouteLimiter(route("/api/enrollments/waitlist/position",
+                RateLimitProperties.Key.STUDENT), 2, meterRegistry);
+        // 一个客户端用伪造学号占满桶表，之后的伪造学号都记在它自己的 IP 上
+        for (int i = 0; i < 2; i++) {
+            assertThat(acquireStudent(limiter, "/api/enrollments/waitlist/position", "junk" + i, null)).isZero();
+        }
+        for (int i = 0; i < 3; i++) {
+            assertThat(acquireStudent(limiter, "/api/enrollments/waitlist/position", "junk-more" + i, null)).isZero();
+        }
+        assertThat(acquireStudent(limiter, "/api/enrollments/waitlist/position", "junk-more3", null)).isPositive();
+
+        // 其他 IP 上的正常学生不受影响（桶表已满，按它自己的 IP 计数）
+        MockHttpServletRequest other = new MockHttpServletRequest("GET", "/api/enrollments/waitlist/position");
+        other.setParameter("studentId", "s1");
+        other.setRemoteAddr("10.0.0.9");
+        assertThat(limiter.acquire(other, PathContainer.parsePath(other.getRequestURI()), false, T0)).isZero();
+        assertThat(limiter.size()).isEqualTo(4);
+    }
+
+    @Test
+    void clientsBeyondBothTablesShareLastBucket() {
+        RouteLimiter limiter = limiter(RateLimitProperties.Key.IP, 1);
+        assertThat(acquire(limiter, "10.0.0.1", T0)).isZero();
+        assertThat(acquire(limiter, "10.0.0.2", T0)).isZero();
+
+        exhaust(limiter, "10.0.0.3");
+        assertThat(acquire(limiter, "10.0.0.4", T0)).isPositive();
+        assertThat(acquire(limiter, "10.0.0.1", T0)).isZero();
+        assertThat(acquire(limiter, "10.0.0.2", T0)).isZero();
+        assertThat(limiter.size()).isEqualTo(2);
+    }
+
+    @Test
+    void sweepEvictsOnlyIdleBuckets() {
+        RouteLimiter limiter = limiter(RateLimitProperties.Key.IP, 100);
+        acquire(limiter, "10.0.0.1", T0);
+        acquire(limiter, "10.0.0.2", T0 + TimeUnit.SECONDS.toNanos(10));
+
+        assertThat(limiter.sweep(T0 + TimeUnit.SECONDS.toNanos(5))).isEqualTo(1);
+        assertThat(limiter.size()).isEqualTo(1);
+
+        // 被清理的客户端重新获得整桶，与清理前已回满的状态一致
+        for (int i = 0; i < 3; i++) {
+            assertThat(acquire(limiter, "10.0.0.1", T0 + TimeUnit.SECONDS.toNanos(10))).isZero();
+        }
+    }
+
+    @Test
+    void rebuiltRouteKeepsBucketsOnlyForSameIdAndKey() {
+        RouteLimiter original = limiter(RateLimitProperties.Key.IP, 100);
+        exhaust(original, "10.0.0.1");
+
+        RouteLimiter rebuilt = new RouteLimiter(new RateLimitProperties.Route("r", "/api/**", List.of(),
+                RateLimitProperties.Key.IP, 5, 10), 100, meterRegistry, original);
+        // 容量从 3 调到 5：沿用已消耗的 3 个，只剩 2 个
+        assertThat(acquire(rebuilt, "10.0.0.1", T0)).isZero();
+        assertThat(acquire(rebuilt, "10.0.0.1", T0)).isZero();
+        assertThat(acquire(rebuilt, "10.0.0.1", T0)).isPositive();
+
+        RouteLimiter rekeyed = new RouteLimiter(route("/api/**", RateLimitProperties.Key.ROUTE), 100,
+                meterRegistry, original);
+        assertThat(acquire(rekeyed, "10.0.0.1", T0)).isZero();
+    }
+
+    private RouteLimiter limiter(RateLimitProperties.Key key, int maxKeys) {
+        return new RouteLimiter(route("/api/**", key), maxKeys, meterRegistry);
+    }
+
+    private static RateLimitProperties.Route route(String pattern, RateLimitProperties.Key key) {
+        return new RateLimitProperties.Route("r", pattern, List.of(), key, 3, 10);
+    }
+
+    private static void exhaust(RouteLimiter limiter, String client) {
+        while (acquire(limiter, client, T0) == 0) {
+            // 取光令牌
+        }
+    }
+
+    private static long acquire(RouteLimiter limiter, String client, long now) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/courses");
+        request.setRemoteAddr(client);
+        return limiter.acquire(request, PathContainer.parsePath(request.getRequestURI()), false, now);
+    }
+
+    private static long acquireStudent(RouteLimiter limiter, String uri, String query, String header) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr("10.0.0.1");
+        if (query != null) {
+            request.setParameter("studentId", query);
+        }
+        if (header != null) {
+            request.addHeader("X-Student-Id", header);
+        }
+        return limiter.acquire(request, PathContainer.parsePath(uri), false, T0);
+    }
+}
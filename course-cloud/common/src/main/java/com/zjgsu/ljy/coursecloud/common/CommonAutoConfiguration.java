@@ -0,0 +1,23 @@
+package com.zjgsu.ljy.coursecloud.common;
+
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationController;
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationPublisher;
+import com.zjgsu.ljy.coursecloud.common.tracing.RepositoryObservationPostProcessor;
+import com.zjgsu.ljy.coursecloud.common.tracing.SpanFileExporter;
+import com.zjgsu.ljy.coursecloud.common.web.InstanceIdentity;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 三个服务共用组件的自动配置：引入本模块即生效，服务无需扫描 com.zjgsu.ljy.coursecloud.common 包。
+ * <ul>
+ *     <li>追踪：仓库方法 observation、span 本地导出（设置 tracing.export.file 时）</li>
+ *     <li>实例标识：响应包装（ServiceResponse / PageResponse）中的端口与主机名</li>
+ *     <li>跨实例缓存失效：InvalidationPublisher；存在 InvalidationListener 时注册接收接口</li>
+ * </ul>
+ */
+@AutoConfiguration
+@Import({RepositoryObservationPostProcessor.class, SpanFileExporter.class, InstanceIdentity.class,
+        InvalidationPublisher.class, InvalidationController.class})
+public class CommonAutoConfiguration {
+}
@@ -0,0 +1,81 @@
+package com.zjgsu.ljy.coursecloud.common.invalidation;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 接收其他实例的缓存失效通知（服务间内部接口，不应经网关对外暴露）；
+ * 只在服务中存在 InvalidationListener 时注册，只发送不接收的服务（user-service）不暴露该接口。
+ *
+ * 请求须携带 X-Invalidation-Secret 请求头且与 invalidation.secret 一致，否则返回 403、不读取请求体；
+ * 未配置 invalidation.secret 时拒绝所有通知。
+ */
+@RestController
+@ConditionalOnBean(InvalidationListener.class)
+public class InvalidationController {
+
+    public static final String SECRET_HEADER = "X-Invalidation-Secret";
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationController.class);
+
+    private static final TypeReference<List<InvalidationMessage>> MESSAGES = new TypeReference<>() {
+    };
+
+    private final Map<String, InvalidationListener> listeners;
+    private final ObjectMapper objectMapper;
+    private final byte[] secret;
+
+    public InvalidationController(List<InvalidationListener> listeners, ObjectMapper objectMapper,
+                                  @Value("${invalidation.secret:}") String secret) {
+        this.listeners = listeners.stream()
+                .collect(Collectors.toMap(InvalidationListener::type, Function.identity()));
+        this.objectMapper = objectMapper;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        if (secret.isEmpty()) {
+            log.warn("未配置 invalidation.secret（环境变量 INVALIDATION_SECRET），将拒绝所有失效通知");
+        }
+    }
+
+    @PostMapping("/internal/invalidations")
+    public ResponseEntity<Void> invalidate(@RequestHeader(name = SECRET_HEADER, required = false) String presented,
+                                           InputStream body) throws IOException {
+        if (!authorized(presented)) {
+            log.warn("拒绝未携带有效密钥的失效通知");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        for (InvalidationMessage message : objectMapper.readValue(body, MESSAGES)) {
+            InvalidationListener listener = listeners.get(message.type());
+            if (listener == null) {
+                log.debug("忽略未知类型的失效通知: {}", message.type());
+                continue;
+            }
+            log.debug("收到失效通知 type: {}, keys: {}", message.type(), message.keys().size());
+            listener.invalidate(message.keys());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    // 定长比较，响应时间不随匹配前缀长度变化
+    private boolean authorized(String presented) {
+        return secret.length > 0 && presented != null
+                && MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,16 @@
+package com.zjgsu.ljy.coursecloud.common.invalidation;
+
+import java.util.Collection;
+
+/**
+ * 本地缓存实现该接口以接收其他实例发来的失效通知
+ */
+public interface InvalidationListener {
+
+    /**
+     * 处理的缓存类型，与 InvalidationMessage.type 对应
+     */
+    String type();
+
+    void invalidate(Collection<String> keys);
+}
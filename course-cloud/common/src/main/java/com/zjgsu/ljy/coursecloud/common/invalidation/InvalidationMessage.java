@@ -0,0 +1,9 @@
+package com.zjgsu.ljy.coursecloud.common.invalidation;
+
+import java.util.List;
+
+/**
+ * 缓存失效通知：type 为缓存类型（如 course、student），keys 为需要失效的键
+ */
+public record InvalidationMessage(String type, List<String> keys) {
+}
@@ -0,0 +1,215 @@
+package com.zjgsu.ljy.coursecloud.common.invalidation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 跨实例缓存失效广播：本实例写入提交后，把变更的键推送给 invalidation.targets 中各服务的所有实例。
+ * <ul>
+ *     <li>实例列表取自服务发现（Nacos），逐个直接 HTTP POST /internal/invalidations，跳过自身</li>
+ *     <li>后台线程在 invalidation.batch-window-ms 内合并同一批键，一个批次每个实例只发一次请求</li>
+ *     <li>尽力送达：发送失败只记录指标与日志，接收方的定期重载 / TTL 兜底</li>
+ *     <li>请求头 X-Invalidation-Secret 携带 invalidation.secret，接收方校验后才处理；未配置密钥时不发送</li>
+ * </ul>
+ */
+public class InvalidationPublisher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationPublisher.class);
+
+    private record PendingKey(String type, String key) {
+    }
+
+    private final DiscoveryClient discoveryClient;
+    private final ObjectProvider<Registration> registration;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final List<String> targets;
+    private final long batchWindowMs;
+    private final Duration timeout;
+    private final String secret;
+    private final int localPort;
+
+    private final BlockingQueue<PendingKey> queue;
+    private final HttpClient httpClient;
+    private final Counter dropped;
+    private final Thread worker;
+
+    public InvalidationPublisher(DiscoveryClient discoveryClient, ObjectProvider<Registration> registration,
+                                 ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                 @Value("${invalidation.enabled:true}") boolean enabled,
+                                 @Value("${invalidation.targets:${spring.application.name}}") List<String> targets,
+                                 @Value("${invalidation.batch-window-ms:20}") long batchWindowMs,
+                                 @Value("${invalidation.timeout:1s}") Duration timeout,
+                                 @Value("${invalidation.queue-capacity:100000}") int queueCapacity,
+                                 @Value("${invalidation.secret:}") String secret,
+                                 @Value("${server.port}") int localPort) {
+        this.discoveryClient = discoveryClient;
+        this.registration = registration;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        // 没有默认密钥：未配置时接收方一律拒绝，发送只会产生 403
+        this.enabled = enabled && !secret.isEmpty();
+        this.targets = targets;
+        this.batchWindowMs = batchWindowMs;
+        this.timeout = timeout;
+        this.secret = secret;
+        this.localPort = localPort;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.dropped = Counter.builder("invalidation.dropped").register(meterRegistry);
+        this.worker = new Thread(this::drain, "invalidation-publisher");
+        this.worker.setDaemon(true);
+        if (enabled && secret.isEmpty()) {
+            log.warn("未配置 invalidation.secret（环境变量 INVALIDATION_SECRET），本实例不发送失效通知");
+        }
+        if (this.enabled) {
+            this.worker.start();
+        }
+    }
+
+    /**
+     * 通知其他实例使 type 缓存中的 key 失效；处于事务中时在提交后发送，回滚则不发送
+     */
+    public void publish(String type, String key) {
+        if (!enabled) {
+            return;
+        }
+        PendingKey pending = new PendingKey(type, key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(pending);
+                }
+            });
+        } else {
+            enqueue(pending);
+        }
+    }
+
+    private void enqueue(PendingKey pending) {
+        if (!queue.offer(pending)) {
+            dropped.increment();
+        }
+    }
+
+    private void drain() {
+        List<PendingKey> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                Thread.sleep(batchWindowMs);  // 合并窗口内的其他写入
+                queue.drainTo(batch);
+                send(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(List<PendingKey> batch) {
+        Map<String, Set<String>> keysByType = new LinkedHashMap<>();
+        for (PendingKey pending : batch) {
+            keysByType.computeIfAbsent(pending.type(), type -> new LinkedHashSet<>()).add(pending.key());
+        }
+        List<InvalidationMessage> messages = new ArrayList<>(keysByType.size());
+        keysByType.forEach((type, keys) -> messages.add(new InvalidationMessage(type, List.copyOf(keys))));
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(messages);
+        } catch (JsonProcessingException e) {
+            log.error("失效通知序列化失败: {}", e.getMessage());
+            return;
+        }
+        for (String target : targets) {
+            for (ServiceInstance instance : instances(target)) {
+                if (!isSelf(instance)) {
+                    post(target, instance, body);
+                }
+            }
+        }
+    }
+
+    private List<ServiceInstance> instances(String target) {
+        try {
+            return discoveryClient.getInstances(target);
+        } catch (RuntimeException e) {
+            log.warn("获取 {} 实例列表失败，本批失效通知未发送: {}", target, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void post(String target, ServiceInstance instance, byte[] body) {
+        URI uri = URI.create("http://" + instance.getHost() + ":" + instance.getPort() + "/internal/invalidations");
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header(InvalidationController.SECRET_HEADER, secret)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    boolean success = error == null && response.statusCode() < 300;
+                    if (!success) {
+                        log.warn("失效通知发送失败 {} -> {}: {}", target, uri.getAuthority(),
+                                error != null ? error.getMessage() : "HTTP " + response.statusCode());
+                    }
+                    Counter.builder("invalidation.sent")
+                            .tag("target", target)
+                            .tag("outcome", success ? "success" : "failure")
+                            .register(meterRegistry)
+                            .increment();
+                });
+    }
+
+    // 服务发现结果包含自身；未注册（如静态服务发现）时按本机地址 + 端口判断
+    private boolean isSelf(ServiceInstance instance) {
+        Registration self = registration.getIfAvailable();
+        if (self != null) {
+            return self.getHost().equals(instance.getHost()) && self.getPort() == instance.getPort();
+        }
+        if (instance.getPort() != localPort) {
+            return false;
+        }
+        try {
+            InetAddress address = InetAddress.getByName(instance.getHost());
+            return address.isLoopbackAddress() || address.equals(InetAddress.getLocalHost());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        worker.interrupt();
+    }
+}
@@ -0,0 +1,54 @@
+package com.zjgsu.ljy.coursecloud.common.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按 logger 前缀对高频日志采样：匹配的 logger 每 rate 条 INFO / DEBUG 只输出 1 条，WARN 及以上全部输出。
+ *
+ * 在创建日志事件之前判定，被丢弃的日志不格式化、不分配事件对象。
+ * 配置形如 "com.example.FooController=100,com.example.service=10"（logging.sampling.loggers）。
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private String[] prefixes = new String[0];
+    private int[] rates = new int[0];
+    private AtomicLongArray counters = new AtomicLongArray(0);
+
+    public void setLoggers(String loggers) {
+        String[] entries = loggers == null || loggers.isBlank() ? new String[0] : loggers.split(",");
+        prefixes = new String[entries.length];
+        rates = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            String entry = entries[i].trim();
+            int separator = entry.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected logger=rate but got: " + entry);
+            }
+            prefixes[i] = entry.substring(0, separator).trim();
+            rates[i] = Math.max(1, Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        counters = new AtomicLongArray(entries.length);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // isXxxEnabled() 调用（format 为空）、WARN 及以上、级别本就未开启的日志不参与采样
+        if (format == null || level.levelInt >= Level.WARN_INT
+                || level.levelInt < logger.getEffectiveLevel().levelInt) {
+            return FilterReply.NEUTRAL;
+        }
+        String name = logger.getName();
+        for (int i = 0; i < prefixes.length; i++) {
+            if (name.startsWith(prefixes[i])) {
+                return counters.getAndIncrement(i) % rates[i] == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+}
@@ -0,0 +1,121 @@
+package com.zjgsu.ljy.coursecloud.common.tracing;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 追踪数据本地导出：每个结束的 span 写一行 JSON（NDJSON）到 tracing.export.file，
+ * 供离线按 traceId 还原单次请求的调用链（见 benchmarks 中的 TraceReport）。
+ *
+ * 请求线程只复制 span 入队，序列化与写文件由后台线程完成；队列满时丢弃并计数，不阻塞业务。
+ */
+@ConditionalOnProperty(prefix = "tracing.export", name = "file")
+public class SpanFileExporter extends SpanHandler implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(SpanFileExporter.class);
+
+    private final BlockingQueue<MutableSpan> queue;
+    private final BufferedWriter writer;
+    private final ObjectMapper objectMapper;
+    private final Thread worker;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public SpanFileExporter(@Value("${tracing.export.file}") Path file,
+                            @Value("${tracing.export.queue-capacity:10000}") int queueCapacity,
+                            ObjectMapper objectMapper) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.objectMapper = objectMapper;
+        this.worker = new Thread(this::drain, "span-exporter");
+        this.worker.setDaemon(true);
+        this.worker.start();
+        log.info("追踪数据导出到: {}", file.toAbsolutePath());
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause != Cause.ABANDONED && !queue.offer(new MutableSpan(span))) {
+            dropped.incrementAndGet();
+        }
+        return true;
+    }
+
+    private void drain() {
+        List<MutableSpan> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                write(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 停止时写出剩余数据
+        queue.drainTo(batch);
+        write(batch);
+    }
+
+    private void write(List<MutableSpan> batch) {
+        try {
+            for (MutableSpan span : batch) {
+                writer.write(objectMapper.writeValueAsString(toLine(span)));
+                writer.newLine();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("写出追踪数据失败: {}", e.getMessage());
+        }
+        batch.clear();
+    }
+
+    private static Map<String, Object> toLine(MutableSpan span) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("traceId", span.traceId());
+        line.put("id", span.id());
+        line.put("parentId", span.parentId());
+        line.put("name", span.name());
+        line.put("kind", span.kind() != null ? span.kind().name() : null);
+        line.put("service", span.localServiceName());
+        line.put("start", span.startTimestamp());  // 微秒（epoch）
+        line.put("duration", span.finishTimestamp() - span.startTimestamp());  // 微秒
+        line.put("error", span.error() != null ? span.error().toString() : span.tag("error"));
+        line.put("tags", span.tags());
+        return line;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        worker.interrupt();
+        worker.join(5000);
+        writer.close();
+        if (dropped.get() > 0) {
+            log.warn("追踪导出队列已满，共丢弃 {} 个 span", dropped.get());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.zjgsu.ljy.coursecloud.common.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.net.InetAddress;
+
+/**
+ * 当前实例标识（端口 + 主机名），启动时解析一次，供所有响应复用；
+ * 请求处理中不再读取环境变量或进行可能阻塞的主机名解析
+ */
+public class InstanceIdentity {
+
+    private static final Logger log = LoggerFactory.getLogger(InstanceIdentity.class);
+
+    private final String port;
+    private final String hostname;
+
+    public InstanceIdentity(@Value("${server.port}") String port) {
+        this.port = port;
+        this.hostname = resolveHostname(port);
+    }
+
+    public String port() {
+        return port;
+    }
+
+    public String hostname() {
+        return hostname;
+    }
+
+    private static String resolveHostname(String port) {
+        // 优先使用环境变量 HOSTNAME (Docker 容器中最可靠)
+        String hostname = System.getenv("HOSTNAME");
+        if (hostname != null && !hostname.isEmpty()) {
+            return hostname;
+        }
+
+        // 备用方案：使用 InetAddress
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            log.warn("Failed to get hostname: {}", e.getMessage());
+        }
+
+        // 最后的 fallback
+        return "unknown-" + port;
+    }
+}
@@ -0,0 +1,20 @@
+package com.zjgsu.ljy.coursecloud.common.web;
+
+import java.util.List;
+
+/**
+ * 键集分页响应，nextCursor 为下一页的 after 参数，为 null 表示已到末尾
+ */
+public record PageResponse<T>(
+        String port,
+        String hostname,
+        String status,
+        List<T> data,
+        int count,
+        String nextCursor
+) {
+
+    public static <T> PageResponse<T> of(InstanceIdentity identity, List<T> data, String nextCursor) {
+        return new PageResponse<>(identity.port(), identity.hostname(), "SUCCESS", data, data.size(), nextCursor);
+    }
+}
@@ -0,0 +1,41 @@
+package com.zjgsu.ljy.coursecloud.common.web;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 统一响应结构：{port, hostname, status, message, data, count, missing}，为空的字段不输出
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ServiceResponse<T>(
+        String port,
+        String hostname,
+        String status,
+        String message,
+        T data,
+        Integer count,
+        List<String> missing
+) {
+
+    public static <T> ServiceResponse<T> success(InstanceIdentity identity, T data) {
+        return new ServiceResponse<>(identity.port(), identity.hostname(), "SUCCESS", null, data, null, null);
+    }
+
+    public static <T> ServiceResponse<List<T>> list(InstanceIdentity identity, List<T> data) {
+        return new ServiceResponse<>(identity.port(), identity.hostname(), "SUCCESS", null, data, data.size(), null);
+    }
+
+    /**
+     * 批量查询：data 以业务键为键，missing 为未找到的键
+     */
+    public static <T> ServiceResponse<Map<String, T>> batch(InstanceIdentity identity, Map<String, T> data,
+                                                            List<String> missing) {
+        return new ServiceResponse<>(identity.port(), identity.hostname(), "SUCCESS", null, data, data.size(), missing);
+    }
+
+    public static <T> ServiceResponse<T> error(InstanceIdentity identity, String message) {
+        return new ServiceResponse<>(identity.port(), identity.hostname(), "ERROR", message, null, null, null);
+    }
+}
@@ -0,0 +1,72 @@
+package com.zjgsu.ljy.coursecloud.common.invalidation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvalidationControllerTest {
+
+    private static final String BODY = "[{\"type\":\"course\",\"keys\":[\"c1\",\"c2\"]},{\"type\":\"other\",\"keys\":[\"x\"]}]";
+
+    private final List<Collection<String>> received = new ArrayList<>();
+    private InvalidationListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new InvalidationListener() {
+            @Override
+            public String type() {
+                return "course";
+            }
+
+            @Override
+            public void invalidate(Collection<String> keys) {
+                received.add(keys);
+            }
+        };
+    }
+
+    @Test
+    void matchingSecretDispatchesToListener() throws Exception {
+        InvalidationController controller = controller("s3cret");
+
+        assertThat(controller.invalidate("s3cret", body()).getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(received).containsExactly(List.of("c1", "c2"));
+    }
+
+    @Test
+    void missingOrWrongSecretIsForbidden() throws Exception {
+        InvalidationController controller = controller("s3cret");
+
+        assertThat(controller.invalidate(null, body()).getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(controller.invalidate("s3cre", body()).getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(controller.invalidate("s3cret ", body()).getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void unconfiguredSecretRejectsEverything() throws Exception {
+        InvalidationController controller = controller("");
+
+        assertThat(controller.invalidate("", body()).getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(received).isEmpty();
+    }
+
+    private InvalidationController controller(String secret) {
+        return new InvalidationController(List.of(listener), new ObjectMapper(), secret);
+    }
+
+    private static InputStream body() {
+        return new ByteArrayInputStream(BODY.getBytes(StandardCharsets.UTF_8));
+    }
+}
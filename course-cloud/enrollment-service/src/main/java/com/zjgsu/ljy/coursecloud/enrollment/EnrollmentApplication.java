@@ -1,14 +1,28 @@
 package com.zjgsu.ljy.coursecloud.enrollment;
 
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ThreadPoolExecutor;
+
 @SpringBootApplication
 @EnableDiscoveryClient
+@EnableScheduling
 public class EnrollmentApplication {
 
     public static void main(String[] args) {
@@ -17,7 +31,47 @@ public class EnrollmentApplication {
 
     @Bean
     @LoadBalanced
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(ObservationRegistry observationRegistry,
+                                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                     @Value("${enrollment.client.connect-timeout:1s}") Duration connectTimeout,
+                                     @Value("${enrollment.client.read-timeout:2s}") Duration readTimeout) {
+        if (virtualThreads) {
+            // JDK HttpClient 基于锁而非 synchronized 实现，阻塞时不会钉住载体线程
+            HttpClient httpClient = HttpClient.newBuilder().connectTimeout(connectTimeout).build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+            factory.setReadTimeout(readTimeout);
+            return observed(new RestTemplate(factory), observationRegistry);
+        }
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(connectTimeout);
+        factory.setReadTimeout(readTimeout);
+        return observed(new RestTemplate(factory), observationRegistry);
+    }
+
+    // 与 WebClient 一致：生成客户端 span 并传播 traceId
+    private static RestTemplate observed(RestTemplate restTemplate, ObservationRegistry observationRegistry) {
+        restTemplate.setObservationRegistry(observationRegistry);
+        return restTemplate;
+    }
+
+    // 选课并发校验线程池：调用方线程兜底执行，避免队列堆积；虚拟线程模式下每个任务一个虚拟线程。
+    // 任务携带提交线程的追踪上下文（traceId / MDC），数据库校验仍归属当前请求的 trace
+    @Bean
+    public AsyncTaskExecutor enrollmentExecutor(@Value("${enrollment.fan-out.pool-size:64}") int poolSize,
+                                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("enroll-fanout-");
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(poolSize * 4);
+        executor.setThreadNamePrefix("enroll-fanout-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        return executor;
     }
 }
@@ -0,0 +1,260 @@
+package com.zjgsu.ljy.coursecloud.enrollment.admission;
+
+import com.zjgsu.ljy.coursecloud.enrollment.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 选课准入控制：限制同时进入选课流程的请求数，超出部分排队等待，队列满或等待超时返回 429。
+ * <ul>
+ *     <li>全局预算 max-concurrent 与单门课程预算 per-course-max-concurrent，热门课程不会占满全局预算</li>
+ *     <li>等待队列有界（max-queue），按到达顺序放行；队首课程预算已满时跳过它放行后面其他课程的请求</li>
+ *     <li>每门课程一个 FIFO 队列，另有一个按到达顺序排列的"可放行队首"堆（课程预算未满的各课程队首）；
+ *     释放时只查看堆顶并唤醒被放行的那一个等待者，代价 O(log 课程数)，与排队总人数无关</li>
+ *     <li>等待超过 max-wait 放弃；Retry-After 按排队人数与平均处理时间估算</li>
+ * </ul>
+ * 下游与数据库的并发被限制在预算内，过载时多余请求快速失败，有效吞吐保持平稳而不是随排队雪崩。
+ * 只作用于本实例；多副本时总预算为各实例之和。
+ */
+@Component
+public class AdmissionGate {
+
+    private static final long MAX_RETRY_AFTER_SECONDS = 60;
+    private static final double HOLD_TIME_WEIGHT = 0.1;  // 平均处理时间的指数加权系数
+
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final int perCourseMaxConcurrent;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+
+    // 使用 ReentrantLock 而非 synchronized：虚拟线程在等待时不会钉住载体线程
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ArrayDeque<Waiter>> waitersByCourse = new HashMap<>();
+    // 课程预算未满的各课程队首，按到达顺序；超时放弃的等待者留在队列中，出队时跳过
+    private final PriorityQueue<Waiter> ready = new PriorityQueue<>(Comparator.comparingLong(waiter -> waiter.sequence));
+    private final Map<String, Integer> inFlightByCourse = new HashMap<>();
+    private int inFlight;
+    private int waiting;  // 排队中（未放行、未放弃）的请求数
+    private long nextSequence;
+    private double averageHoldNanos;
+
+    private final Timer admittedWait;
+    private final Timer rejectedWait;
+    private final Counter queueFull;
+    private final Counter deadlineExceeded;
+
+    public AdmissionGate(MeterRegistry meterRegistry,
+                         @Value("${enrollment.admission.enabled:true}") boolean enabled,
+                         @Value("${enrollment.admission.max-concurrent:64}") int maxConcurrent,
+                         @Value("${enrollment.admission.per-course-max-concurrent:16}") int perCourseMaxConcurrent,
+                         @Value("${enrollment.admission.max-queue:1000}") int maxQueue,
+                         @Value("${enrollment.admission.max-wait:2s}") Duration maxWait) {
+        this.enabled = enabled;
+        this.maxConcurrent = maxConcurrent;
+        this.perCourseMaxConcurrent = perCourseMaxConcurrent;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.averageHoldNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        this.admittedWait = Timer.builder("enrollment.admission.wait")
+                .tag("outcome", "admitted")
+                .register(meterRegistry);
+        this.rejectedWait = Timer.builder("enrollment.admission.wait")
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+        this.queueFull = Counter.builder("enrollment.admission.rejections")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.deadlineExceeded = Counter.builder("enrollment.admission.rejections")
+                .tag("reason", "deadline")
+                .register(meterRegistry);
+        Gauge.builder("enrollment.admission.queue", this, AdmissionGate::queueDepth)
+                .description("等待准入的请求数")
+                .register(meterRegistry);
+        Gauge.builder("enrollment.admission.in_flight", this, AdmissionGate::inFlight)
+                .description("已准入、正在处理的请求数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 取得准入许可，预算已满时排队等待；调用方处理完成后关闭许可（try-with-resources）
+     *
+     * @throws AdmissionRejectedException 等待队列已满或等待超时
+     */
+    public Permit acquire(String courseId) {
+        if (!enabled) {
+            return new Permit(null);
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            // 释放时已按顺序放行所有可放行的等待者，仍在等待的都受预算限制，新请求有预算时直接进入不算插队
+            if (hasBudget(courseId)) {
+                enter(courseId);
+                admittedWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return new Permit(courseId);
+            }
+            if (waiting >= maxQueue) {
+                queueFull.increment();
+                rejectedWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw new AdmissionRejectedException("Admission queue is full", retryAfterSeconds());
+            }
+            Waiter waiter = new Waiter(courseId, nextSequence++, lock.newCondition());
+            ArrayDeque<Waiter> queue = waitersByCourse.computeIfAbsent(courseId, id -> new ArrayDeque<>());
+            queue.addLast(waiter);
+            waiting++;
+            if (queue.size() == 1 && courseHasBudget(courseId)) {
+                // 只缺全局预算：成为可放行队首
+                ready.add(waiter);
+            }
+            long remaining = maxWaitNanos;
+            try {
+                while (!waiter.admitted && remaining > 0) {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!waiter.admitted) {
+                waiter.cancelled = true;
+                waiting--;
+                deadlineExceeded.increment();
+                rejectedWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw new AdmissionRejectedException("Admission wait deadline exceeded", retryAfterSeconds());
+            }
+            admittedWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return new Permit(courseId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queueDepth() {
+        return waiting;
+    }
+
+    public int inFlight() {
+        return inFlight;
+    }
+
+    // ==================== 以下方法须持有 lock ====================
+    private boolean hasBudget(String courseId) {
+        return inFlight < maxConcurrent && courseHasBudget(courseId);
+    }
+
+    private boolean courseHasBudget(String courseId) {
+        return inFlightByCourse.getOrDefault(courseId, 0) < perCourseMaxConcurrent;
+    }
+
+    private void enter(String courseId) {
+        inFlight++;
+        inFlightByCourse.merge(courseId, 1, Integer::sum);
+    }
+
+    private void leave(String courseId, long heldNanos) {
+        inFlight--;
+        inFlightByCourse.computeIfPresent(courseId, (id, count) -> count > 1 ? count - 1 : null);
+        averageHoldNanos += HOLD_TIME_WEIGHT * (heldNanos - averageHoldNanos);
+        if (inFlightByCourse.getOrDefault(courseId, 0) == perCourseMaxConcurrent - 1) {
+            // 课程预算由满转为未满，其队首重新可放行
+            offerHead(courseId);
+        }
+        // 按到达顺序放行可放行队首，直到全局预算用尽
+        while (inFlight < maxConcurrent && !ready.isEmpty()) {
+            Waiter waiter = ready.poll();
+            if (waiter.cancelled) {
+                // 已放弃的队首：由同一课程的下一位接替
+                waitersByCourse.get(waiter.courseId).pollFirst();
+                offerHead(waiter.courseId);
+                continue;
+            }
+            waitersByCourse.get(waiter.courseId).pollFirst();
+            waiting--;
+            enter(waiter.courseId);
+            waiter.admitted = true;
+            waiter.condition.signal();
+            if (courseHasBudget(waiter.courseId)) {
+                offerHead(waiter.courseId);
+            }
+        }
+    }
+
+    // 课程队列去掉已放弃的队首后，若仍有等待者则把队首加入可放行堆；队列为空时移除
+    private void offerHead(String courseId) {
+        ArrayDeque<Waiter> queue = waitersByCourse.get(courseId);
+        if (queue == null) {
+            return;
+        }
+        while (!queue.isEmpty() && queue.peekFirst().cancelled) {
+            queue.pollFirst();
+        }
+        if (queue.isEmpty()) {
+            waitersByCourse.remove(courseId);
+        } else {
+            ready.add(queue.peekFirst());
+        }
+    }
+
+    // 排在前面的请求按全局预算并行处理完所需的时间
+    private long retryAfterSeconds() {
+        double seconds = (waiting + 1) * averageHoldNanos / maxConcurrent / 1e9;
+        return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, (long) Math.ceil(seconds)));
+    }
+
+    private static final class Waiter {
+        private final String courseId;
+        private final long sequence;  // 到达顺序
+        private final Condition condition;
+        private boolean admitted;
+        private boolean cancelled;  // 等待超时放弃，出队时跳过
+
+        private Waiter(String courseId, long sequence, Condition condition) {
+            this.courseId = courseId;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * 准入许可，关闭时归还预算并放行等待者；重复关闭无效
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final String courseId;
+        private final long admittedAt = System.nanoTime();
+        private boolean released;
+
+        private Permit(String courseId) {
+            this.courseId = courseId;
+            this.released = !enabled;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            lock.lock();
+            try {
+                leave(courseId, System.nanoTime() - admittedAt);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.zjgsu.ljy.coursecloud.enrollment.client;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量查询响应：data 以业务键为键，missing 为未找到的键
+ */
+public record BatchLookupResponse<T>(
+        String port,
+        String hostname,
+        String status,
+        Map<String, T> data,
+        List<String> missing
+) {
+}
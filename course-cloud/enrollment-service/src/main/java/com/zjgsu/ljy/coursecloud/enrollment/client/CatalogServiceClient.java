@@ -0,0 +1,133 @@
+package com.zjgsu.ljy.coursecloud.enrollment.client;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * catalog-service 类型化客户端：响应直接解码为 record，响应式与阻塞调用方均可使用
+ */
+@Component
+public class CatalogServiceClient {
+
+    private static final ParameterizedTypeReference<ServiceResponse<CourseInfo>> COURSE_RESPONSE =
+            new ParameterizedTypeReference<>() {};
+    private static final ParameterizedTypeReference<ServiceResponse<List<String>>> CONFLICTS_RESPONSE =
+            new ParameterizedTypeReference<>() {};
+
+    private final WebClient webClient;
+    private final DownstreamGuard guard;
+
+    public CatalogServiceClient(@LoadBalanced WebClient.Builder builder,
+                                @Value("${enrollment.client.catalog-service-url:http://catalog-service}") String baseUrl,
+                                @Value("${enrollment.client.catalog-timeout:2s}") Duration timeout,
+                                CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                             DownstreamMetrics downstreamMetrics) {
+        this.webClient = builder.clone()
+                .baseUrl(baseUrl)
+                .filter(downstreamMetrics.forService("catalog-service"))
+                .build();
+        this.guard = new DownstreamGuard("catalog-service", timeout, circuitBreakerRegistry, bulkheadRegistry);
+    }
+
+    /**
+     * 查询课程，不存在时返回空 Mono
+     */
+    public Mono<ServiceResponse<CourseInfo>> findCourse(String courseId) {
+        return guard.protect(webClient.get()
+                .uri("/api/courses/{id}", courseId)
+                .exchangeToMono(response -> {
+                    if (response.statusCode().value() == HttpStatus.NOT_FOUND.value()) {
+                        return response.releaseBody().then(Mono.empty());
+                    }
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(COURSE_RESPONSE);
+                    }
+                    return response.createError();
+                }));
+    }
+
+    public Optional<ServiceResponse<CourseInfo>> findCourseBlocking(String courseId) {
+        return findCourse(courseId).blockOptional();
+    }
+
+    /**
+     * heldCourseIds 中与课程 courseId 上课时间冲突的课程；课程不存在时以 IllegalArgumentException 结束
+     */
+    public Mono<List<String>> findScheduleConflicts(String courseId, Collection<String> heldCourseIds) {
+        return guard.protect(webClient.get()
+                .uri("/api/courses/{id}/conflicts?held={held}", courseId, String.join(",", heldCourseIds))
+                .exchangeToMono(response -> {
+                    if (response.statusCode().value() == HttpStatus.NOT_FOUND.value()) {
+                        return response.releaseBody()
+                                .then(Mono.error(new IllegalArgumentException("Course not found: " + courseId)));
+                    }
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(CONFLICTS_RESPONSE).map(ServiceResponse::data);
+                    }
+                    return response.createError();
+                }));
+    }
+
+    /**
+     * 原子预占座位，并由 catalog-service 在同一次调用中检查与已选课程（heldCourseIds）的上课时间冲突；
+     * 冲突时不预占，seats 为 0 且 conflicts 非空；课程已满时 seats 为 0，课程不存在时以 IllegalArgumentException 结束。
+     * key 为本次预占的幂等 key：超时或熔断后结果未知时，以同一 key 调用 cancelReservation 撤销
+     */
+    public Mono<SeatResponse> reserveSeats(String courseId, int count, Collection<String> heldCourseIds, String key) {
+        WebClient.RequestBodySpec request = heldCourseIds.isEmpty()
+                ? webClient.post().uri("/api/courses/{id}/seats/reserve?count={count}&key={key}", courseId, count, key)
+                : webClient.post().uri("/api/courses/{id}/seats/reserve?count={count}&held={held}&key={key}",
+                        courseId, count, String.join(",", heldCourseIds), key);
+        return guard.protect(request.exchangeToMono(response -> seatResponse(courseId, response)));
+    }
+
+    public SeatResponse reserveSeatsBlocking(String courseId, int count, String key) {
+        return reserveSeats(courseId, count, List.of(), key).block();
+    }
+
+    /**
+     * 释放座位，同一 key 只释放一次；无座位可释放时 seats 为 0，课程不存在时以 IllegalArgumentException 结束。
+     * 不经过熔断器，由 SeatReleases 失败重试
+     */
+    public Mono<SeatResponse> releaseSeats(String courseId, int count, String key) {
+        return guard.timeoutOnly(webClient.post()
+                .uri("/api/courses/{id}/seats/release?count={count}&key={key}", courseId, count, key)
+                .exchangeToMono(response -> seatResponse(courseId, response)));
+    }
+
+    /**
+     * 撤销以 key 执行的预占，seats 为实际归还的座位数；预占未执行时 catalog-service 记下撤销，迟到的预占不再生效。
+     * 不经过熔断器，由 SeatReleases 失败重试
+     */
+    public Mono<SeatResponse> cancelReservation(String courseId, String key) {
+        return guard.timeoutOnly(webClient.post()
+                .uri("/api/courses/{id}/seats/cancel?key={key}", courseId, key)
+                .exchangeToMono(response -> seatResponse(courseId, response)));
+    }
+
+    private static Mono<SeatResponse> seatResponse(String courseId, ClientResponse response) {
+        int status = response.statusCode().value();
+        if (status == HttpStatus.NOT_FOUND.value()) {
+            return response.releaseBody()
+                    .then(Mono.error(new IllegalArgumentException("Course not found: " + courseId)));
+        }
+        // 409 表示满员 / 时间冲突 / 无座位可释放，响应体中 seats 为 0
+        if (response.statusCode().is2xxSuccessful() || status == HttpStatus.CONFLICT.value()) {
+            return response.bodyToMono(SeatResponse.class);
+        }
+        return response.createError();
+    }
+}
@@ -0,0 +1,13 @@
+package com.zjgsu.ljy.coursecloud.enrollment.client;
+
+public record CourseInfo(
+        String id,
+        String code,
+        String title,
+        String dayOfWeek,
+        String start,
+        String end,
+        int capacity,
+        int enrolled
+) {
+}
@@ -0,0 +1,52 @@
+package com.zjgsu.ljy.coursecloud.enrollment.client;
+
+import com.zjgsu.ljy.coursecloud.enrollment.exception.ServiceUnavailableException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * 单个下游服务的调用保护：超时 → 熔断 → 舱壁（并发上限）。
+ * 熔断打开或舱壁已满时立即以 ServiceUnavailableException（503）失败，不再占用连接和线程。
+ */
+public class DownstreamGuard {
+
+    private final String serviceName;
+    private final Duration timeout;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+
+    public DownstreamGuard(String serviceName, Duration timeout,
+                           CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry) {
+        this.serviceName = serviceName;
+        this.timeout = timeout;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(serviceName);
+        this.bulkhead = bulkheadRegistry.bulkhead(serviceName);
+    }
+
+    public <T> Mono<T> protect(Mono<T> call) {
+        return call.timeout(timeout)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .onErrorMap(CallNotPermittedException.class, e -> new ServiceUnavailableException(
+                        serviceName + " is unavailable (circuit breaker open)", e))
+                .onErrorMap(BulkheadFullException.class, e -> new ServiceUnavailableException(
+                        serviceName + " is saturated (bulkhead full)", e));
+    }
+
+    /**
+     * 只加超时，不经过熔断器与舱壁：用于归还座位等必须送达的补偿调用，熔断打开时也要发出，
+     * 失败由调用方重试；这类调用也不计入熔断器的失败率
+     */
+    public <T> Mono<T> timeoutOnly(Mono<T> call) {
+        return call.timeout(timeout);
+    }
+}
@@ -0,0 +1,64 @@
+package com.zjgsu.ljy.coursecloud.enrollment.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 下游调用耗时（enrollment.downstream.requests），按服务与实例（负载均衡解析后的 host:port）区分。
+ *
+ * 过滤器在客户端构造时追加，位于 @LoadBalanced 过滤器之后，因此看到的是已解析的实例地址；
+ * 计时截止到收到响应头，status 为 HTTP 状态码，连接失败为 IO_ERROR，被超时 / 熔断取消为 CANCELLED。
+ * 实例地址同时写入 WebClient 的客户端 observation（追踪 span 的 instance 标签），用于定位慢实例。
+ */
+@Component
+public class DownstreamMetrics {
+
+    private final MeterRegistry registry;
+
+    public DownstreamMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public ExchangeFilterFunction forService(String serviceName) {
+        return (request, next) -> Mono.deferContextual(context -> {
+            Observation observation = context.getOrDefault(ObservationThreadLocalAccessor.KEY, null);
+            if (observation != null) {
+                observation.highCardinalityKeyValue("instance", instance(request.url()));
+            }
+            Timer.Sample sample = Timer.start(registry);
+            AtomicBoolean recorded = new AtomicBoolean();
+            return next.exchange(request)
+                    .doOnSuccess(response -> record(recorded, sample, serviceName, request,
+                            String.valueOf(response.statusCode().value())))
+                    .doOnError(e -> record(recorded, sample, serviceName, request, "IO_ERROR"))
+                    .doOnCancel(() -> record(recorded, sample, serviceName, request, "CANCELLED"));
+        });
+    }
+
+    private void record(AtomicBoolean recorded, Timer.Sample sample, String serviceName,
+                        ClientRequest request, String status) {
+        // 响应后的取消信号不再重复计时
+        if (!recorded.compareAndSet(false, true)) {
+            return;
+        }
+        sample.stop(Timer.builder("enrollment.downstream.requests")
+                .tag("service", serviceName)
+                .tag("instance", instance(request.url()))
+                .tag("method", request.method().name())
+                .tag("status", status)
+                .register(registry));
+    }
+
+    private static String instance(URI url) {
+        return url.getHost() + ":" + url.getPort();
+    }
+}
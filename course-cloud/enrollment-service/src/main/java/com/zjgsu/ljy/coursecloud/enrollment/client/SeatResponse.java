@@ -0,0 +1,18 @@
+package com.zjgsu.ljy.coursecloud.enrollment.client;
+
+import java.util.List;
+
+/**
+ * 座位预占 / 释放响应，seats 为实际预占或释放的座位数（满员时为 0）；
+ * 与已选课程上课时间冲突而未预占时，conflicts 为冲突的课程 ID
+ */
+public record SeatResponse(
+        String port,
+        String hostname,
+        String courseId,
+        int seats,
+        String status,
+        String message,
+        List<String> conflicts
+) {
+}
@@ -0,0 +1,13 @@
+package com.zjgsu.ljy.coursecloud.enrollment.client;
+
+/**
+ * user-service / catalog-service 统一响应结构：{port, hostname, status, message, data}
+ */
+public record ServiceResponse<T>(
+        String port,
+        String hostname,
+        String status,
+        String message,
+        T data
+) {
+}
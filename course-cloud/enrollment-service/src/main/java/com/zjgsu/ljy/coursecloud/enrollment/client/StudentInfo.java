@@ -0,0 +1,10 @@
+package com.zjgsu.ljy.coursecloud.enrollment.client;
+
+public record StudentInfo(
+        String id,
+        String studentId,
+        String name,
+        String major,
+        Integer grade
+) {
+}
@@ -0,0 +1,80 @@
+package com.zjgsu.ljy.coursecloud.enrollment.client;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * user-service 类型化客户端：响应直接解码为 record，响应式与阻塞调用方均可使用
+ */
+@Component
+public class UserServiceClient {
+
+    private static final ParameterizedTypeReference<ServiceResponse<StudentInfo>> STUDENT_RESPONSE =
+            new ParameterizedTypeReference<>() {};
+    private static final ParameterizedTypeReference<BatchLookupResponse<StudentInfo>> STUDENT_BATCH_RESPONSE =
+            new ParameterizedTypeReference<>() {};
+
+    private final WebClient webClient;
+    private final DownstreamGuard guard;
+
+    public UserServiceClient(@LoadBalanced WebClient.Builder builder,
+                             @Value("${enrollment.client.user-service-url:http://user-service}") String baseUrl,
+                             @Value("${enrollment.client.user-timeout:2s}") Duration timeout,
+                             CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                             DownstreamMetrics downstreamMetrics) {
+        this.webClient = builder.clone()
+                .baseUrl(baseUrl)
+                .filter(downstreamMetrics.forService("user-service"))
+                .build();
+        this.guard = new DownstreamGuard("user-service", timeout, circuitBreakerRegistry, bulkheadRegistry);
+    }
+
+    /**
+     * 按学号查询学生，不存在时返回空 Mono
+     */
+    public Mono<ServiceResponse<StudentInfo>> findByStudentId(String studentId) {
+        return guard.protect(webClient.get()
+                .uri("/api/students/studentId/{studentId}", studentId)
+                .exchangeToMono(response -> {
+                    if (response.statusCode().value() == HttpStatus.NOT_FOUND.value()) {
+                        return response.releaseBody().then(Mono.empty());
+                    }
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(STUDENT_RESPONSE);
+                    }
+                    return response.createError();
+                }));
+    }
+
+    public Optional<ServiceResponse<StudentInfo>> findByStudentIdBlocking(String studentId) {
+        return findByStudentId(studentId).blockOptional();
+    }
+
+    /**
+     * 按学号批量查询，返回未找到的学号
+     */
+    public Mono<List<String>> findMissingStudentIds(Collection<String> studentIds) {
+        return guard.protect(webClient.post()
+                .uri("/api/students/batch")
+                .bodyValue(studentIds)
+                .retrieve()
+                .bodyToMono(STUDENT_BATCH_RESPONSE)
+                .map(response -> response.missing() != null ? response.missing() : List.<String>of()));
+    }
+
+    public List<String> findMissingStudentIdsBlocking(Collection<String> studentIds) {
+        return findMissingStudentIds(studentIds).block();
+    }
+}
@@ -0,0 +1,44 @@
+package com.zjgsu.ljy.coursecloud.enrollment.client;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+@Configuration
+public class WebClientConfig {
+
+    // ⭐ 负载均衡 WebClient：通过 Nacos 服务名调用，共享一个带 keep-alive 的连接池；
+    // 每次调用生成客户端 span 并向下游传播 traceId
+    @Bean
+    @LoadBalanced
+    public WebClient.Builder loadBalancedWebClientBuilder(
+            ObservationRegistry observationRegistry,
+            @Value("${enrollment.client.max-connections:500}") int maxConnections,
+            @Value("${enrollment.client.max-idle-time:30s}") Duration maxIdleTime,
+            @Value("${enrollment.client.pending-acquire-timeout:2s}") Duration pendingAcquireTimeout,
+            @Value("${enrollment.client.connect-timeout:1s}") Duration connectTimeout,
+            @Value("${enrollment.client.read-timeout:2s}") Duration readTimeout) {
+        ConnectionProvider provider = ConnectionProvider.builder("course-cloud")
+                .maxConnections(maxConnections)
+                .maxIdleTime(maxIdleTime)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .evictInBackground(maxIdleTime)
+                .build();
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(readTimeout);
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .observationRegistry(observationRegistry);
+    }
+}
@@ -1,16 +1,34 @@
 package com.zjgsu.ljy.coursecloud.enrollment.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ljy.coursecloud.common.web.InstanceIdentity;
+import com.zjgsu.ljy.coursecloud.enrollment.admission.AdmissionGate;
+import com.zjgsu.ljy.coursecloud.enrollment.exception.AdmissionRejectedException;
+import com.zjgsu.ljy.coursecloud.enrollment.exception.WaitlistedException;
+import com.zjgsu.ljy.coursecloud.enrollment.model.BatchEnrollmentResult;
+import com.zjgsu.ljy.coursecloud.enrollment.model.BatchEnrollmentStatus;
+import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentKey;
 import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentRecord;
+import com.zjgsu.ljy.coursecloud.enrollment.model.WithdrawResult;
 import com.zjgsu.ljy.coursecloud.enrollment.service.EnrollmentService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -22,59 +40,110 @@ import java.util.Map;
 public class EnrollmentController {
 
     private final EnrollmentService enrollmentService;
+    private final ObjectMapper objectMapper;
+    private final InstanceIdentity identity;
+    private final AdmissionGate admissionGate;
 
     @Autowired
     private RestTemplate restTemplate;
 
-    @Value("${server.port}")
-    private String currentPort;
-
-    public EnrollmentController(EnrollmentService enrollmentService) {
+    public EnrollmentController(EnrollmentService enrollmentService, ObjectMapper objectMapper,
+                                InstanceIdentity identity, AdmissionGate admissionGate) {
         this.enrollmentService = enrollmentService;
+        this.objectMapper = objectMapper;
+        this.identity = identity;
+        this.admissionGate = admissionGate;
     }
 
-    // ==================== 辅助方法：获取主机名 ====================
-    private String getHostname() {
-        // 优先使用环境变量 HOSTNAME (Docker 容器中最可靠)
-        String hostname = System.getenv("HOSTNAME");
-        if (hostname != null && !hostname.isEmpty()) {
-            return hostname;
+    // ==================== Enrollment Endpoints ====================
+    // 课程已满（或已有候补学生）时加入候补队列，返回 202 与排队位置；
+    // 超出准入预算且排队超时时返回 429 与 Retry-After
+    @PostMapping
+    public ResponseEntity<?> enroll(@Valid @RequestBody EnrollmentRequest request) {
+        try (AdmissionGate.Permit permit = admissionGate.acquire(request.courseId())) {
+            EnrollmentRecord record = enrollmentService.enroll(request.courseId(), request.studentId());
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(EnrollmentResponse.from(record));
+        } catch (WaitlistedException e) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(new WaitlistResponse(e.getCourseId(), e.getStudentId(), e.getPosition()));
+        } catch (AdmissionRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
         }
+    }
 
-        // 备用方案：使用 InetAddress
+    @PostMapping("/batch")
+    public BatchEnrollmentResponse enrollBatch(@Valid @RequestBody BatchEnrollmentRequest request) {
+        List<EnrollmentKey> pairs = request.items()
+                .stream()
+                .map(item -> new EnrollmentKey(item.courseId(), item.studentId()))
+                .toList();
+        List<BatchEnrollmentResult> results = enrollmentService.enrollBatch(pairs);
+        int enrolled = (int) results.stream()
+                .filter(result -> result.status() == BatchEnrollmentStatus.ENROLLED)
+                .count();
+        return new BatchEnrollmentResponse(results.size(), enrolled, results);
+    }
+
+    // 退课：有候补学生时座位直接转给队首学生，返回递补的选课记录
+    @DeleteMapping("/{id}")
+    public ResponseEntity<WithdrawResponse> withdraw(@PathVariable String id) {
         try {
-            return InetAddress.getLocalHost().getHostName();
-        } catch (Exception e) {
-            // 忽略异常
+            WithdrawResult result = enrollmentService.withdraw(id);
+            return ResponseEntity.ok(WithdrawResponse.from(result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
+    }
 
-        // 最后的 fallback
-        return "unknown-" + currentPort;
+    // ==================== Waitlist Endpoints ====================
+    @PostMapping("/waitlist")
+    public ResponseEntity<WaitlistResponse> joinWaitlist(@Valid @RequestBody EnrollmentRequest request) {
+        try {
+            int position = enrollmentService.joinWaitlist(request.courseId(), request.studentId());
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(new WaitlistResponse(request.courseId(), request.studentId(), position));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
 
-    // ==================== Enrollment Endpoints ====================
-    @PostMapping
-    public ResponseEntity<EnrollmentResponse> enroll(@Valid @RequestBody EnrollmentRequest request) {
-        EnrollmentRecord record = enrollmentService.enroll(request.courseId(), request.studentId());
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(new EnrollmentResponse(
-                        record.getId(),
-                        record.getCourseId(),
-                        record.getStudentId(),
-                        record.getEnrolledAt().toString()
-                ));
+    @DeleteMapping("/waitlist")
+    public ResponseEntity<Void> leaveWaitlist(@RequestParam String courseId, @RequestParam String studentId) {
+        return enrollmentService.leaveWaitlist(courseId, studentId)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/waitlist/position")
+    public ResponseEntity<WaitlistResponse> waitlistPosition(@RequestParam String courseId,
+                                                             @RequestParam String studentId) {
+        int position = enrollmentService.waitlistPosition(courseId, studentId);
+        return position > 0
+                ? ResponseEntity.ok(new WaitlistResponse(courseId, studentId, position))
+                : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/waitlist/course/{courseId}")
+    public List<String> listWaitlist(@PathVariable String courseId) {
+        return enrollmentService.listWaitlist(courseId);
+    }
+
+    // 学生已选课程中与 courseId 上课时间冲突的课程（只检查，不选课）
+    @GetMapping("/conflicts")
+    public ScheduleConflictResponse conflicts(@RequestParam String studentId, @RequestParam String courseId) {
+        return new ScheduleConflictResponse(studentId, courseId, enrollmentService.conflicts(studentId, courseId));
     }
 
     @GetMapping("/course/{courseId}")
     public List<EnrollmentResponse> listByCourse(@PathVariable String courseId) {
         return enrollmentService.listByCourse(courseId)
                 .stream()
-                .map(record -> new EnrollmentResponse(
-                        record.getId(),
-                        record.getCourseId(),
-                        record.getStudentId(),
-                        record.getEnrolledAt().toString()
-                ))
+                .map(EnrollmentResponse::from)
                 .toList();
     }
 
@@ -82,26 +151,58 @@ public class EnrollmentController {
     public List<EnrollmentResponse> listByStudent(@PathVariable String studentId) {
         return enrollmentService.listByStudent(studentId)
                 .stream()
-                .map(record -> new EnrollmentResponse(
-                        record.getId(),
-                        record.getCourseId(),
-                        record.getStudentId(),
-                        record.getEnrolledAt().toString()
-                ))
+                .map(EnrollmentResponse::from)
                 .toList();
     }
 
+    // 只返回 ID，由内存选课索引直接应答
+    @GetMapping("/student/{studentId}/courses")
+    public List<String> listCourseIdsByStudent(@PathVariable String studentId) {
+        return enrollmentService.studentCourses(studentId);
+    }
+
+    @GetMapping("/course/{courseId}/students")
+    public List<String> listStudentIdsByCourse(@PathVariable String courseId) {
+        return enrollmentService.courseStudents(courseId);
+    }
+
     @GetMapping
     public List<EnrollmentResponse> listAll() {
         return enrollmentService.listAll()
                 .stream()
-                .map(record -> new EnrollmentResponse(
-                        record.getId(),
-                        record.getCourseId(),
-                        record.getStudentId(),
-                        record.getEnrolledAt().toString()
-                ))
+                .map(EnrollmentResponse::from)
+                .toList();
+    }
+
+    @GetMapping("/page")
+    public EnrollmentPageResponse listPage(@RequestParam(required = false) String after,
+                                           @RequestParam(defaultValue = "50") @Min(1) @Max(500) int limit) {
+        List<EnrollmentResponse> records = enrollmentService.listPage(after, limit)
+                .stream()
+                .map(EnrollmentResponse::from)
                 .toList();
+        // 不足一页说明已到末尾
+        String nextCursor = records.size() == limit ? records.get(records.size() - 1).id() : null;
+        return new EnrollmentPageResponse(records, nextCursor);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        // NDJSON：每行一个 JSON 对象，边读边写，内存占用恒定
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.setRootValueSeparator(null);
+            enrollmentService.forEachEnrollment(record -> {
+                try {
+                    generator.writeObject(EnrollmentResponse.from(record));
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
 //    // ==================== 测试接口（负载均衡验证）====================
@@ -143,8 +244,8 @@ public class EnrollmentController {
     public Map<String, Object> test() {
         Map<String, Object> response = new HashMap<>();
         response.put("service", "enrollment-service");
-        response.put("port", currentPort);
-        response.put("hostname", getHostname());
+        response.put("port", identity.port());
+        response.put("hostname", identity.hostname());
 
         // ★ 添加容器IP
         try {
@@ -186,8 +287,8 @@ public class EnrollmentController {
         Map<String, Object> healthResponse = new HashMap<>();
         healthResponse.put("status", "UP");
         healthResponse.put("service", "enrollment-service");
-        healthResponse.put("port", currentPort);
-        healthResponse.put("hostname", getHostname());
+        healthResponse.put("port", identity.port());
+        healthResponse.put("hostname", identity.hostname());
         healthResponse.put("timestamp", System.currentTimeMillis());
         return healthResponse;
     }
@@ -198,10 +299,58 @@ public class EnrollmentController {
             @NotBlank String studentId
     ) {}
 
+    public record BatchEnrollmentRequest(
+            @NotEmpty @Size(max = 20000) List<@Valid EnrollmentRequest> items
+    ) {}
+
+    public record BatchEnrollmentResponse(
+            int total,
+            int enrolled,
+            List<BatchEnrollmentResult> results
+    ) {}
+
     public record EnrollmentResponse(
             String id,
             String courseId,
             String studentId,
             String enrolledAt
+    ) {
+        public static EnrollmentResponse from(EnrollmentRecord record) {
+            return new EnrollmentResponse(
+                    record.getId(),
+                    record.getCourseId(),
+                    record.getStudentId(),
+                    record.getEnrolledAt().toString()
+            );
+        }
+    }
+
+    public record ScheduleConflictResponse(
+            String studentId,
+            String courseId,
+            List<String> conflicts
+    ) {}
+
+    public record WithdrawResponse(
+            EnrollmentResponse withdrawn,
+            EnrollmentResponse promoted
+    ) {
+        public static WithdrawResponse from(WithdrawResult result) {
+            return new WithdrawResponse(
+                    EnrollmentResponse.from(result.withdrawn()),
+                    result.promoted() != null ? EnrollmentResponse.from(result.promoted()) : null
+            );
+        }
+    }
+
+    public record WaitlistResponse(
+            String courseId,
+            String studentId,
+            int position
+    ) {}
+
+    public record EnrollmentPageResponse(
+            List<EnrollmentResponse> data,
+            String nextCursor
     ) {}
 }
@@ -0,0 +1,22 @@
+package com.zjgsu.ljy.coursecloud.enrollment.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 准入控制拒绝：并发预算已满且等待队列已满或等待超时，客户端应在 retryAfterSeconds 秒后重试
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,7 +1,15 @@
 package com.zjgsu.ljy.coursecloud.enrollment.exception;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
 public class ServiceUnavailableException extends RuntimeException {
     public ServiceUnavailableException(String message) {
         super(message);
     }
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -0,0 +1,30 @@
+package com.zjgsu.ljy.coursecloud.enrollment.exception;
+
+/**
+ * 课程已满，学生已加入候补队列（不是失败：由后台递补按排队顺序入课）
+ */
+public class WaitlistedException extends RuntimeException {
+
+    private final String courseId;
+    private final String studentId;
+    private final int position;
+
+    public WaitlistedException(String courseId, String studentId, int position) {
+        super("Course capacity reached, waitlisted at position " + position);
+        this.courseId = courseId;
+        this.studentId = studentId;
+        this.position = position;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+}
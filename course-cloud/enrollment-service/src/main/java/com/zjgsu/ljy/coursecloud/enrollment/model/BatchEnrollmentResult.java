@@ -0,0 +1,9 @@
+package com.zjgsu.ljy.coursecloud.enrollment.model;
+
+public record BatchEnrollmentResult(
+        String courseId,
+        String studentId,
+        BatchEnrollmentStatus status,
+        String enrollmentId
+) {
+}
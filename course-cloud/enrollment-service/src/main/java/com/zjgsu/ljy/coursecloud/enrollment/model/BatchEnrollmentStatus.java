@@ -0,0 +1,12 @@
+package com.zjgsu.ljy.coursecloud.enrollment.model;
+
+public enum BatchEnrollmentStatus {
+    ENROLLED,
+    DUPLICATE_IN_REQUEST,
+    ALREADY_ENROLLED,
+    STUDENT_NOT_FOUND,
+    COURSE_NOT_FOUND,
+    COURSE_FULL,
+    SCHEDULE_CONFLICT,
+    FAILED
+}
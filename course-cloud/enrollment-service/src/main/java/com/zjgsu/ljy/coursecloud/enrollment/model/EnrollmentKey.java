@@ -0,0 +1,7 @@
+package com.zjgsu.ljy.coursecloud.enrollment.model;
+
+public record EnrollmentKey(
+        String courseId,
+        String studentId
+) {
+}
@@ -0,0 +1,85 @@
+package com.zjgsu.ljy.coursecloud.enrollment.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+
+import java.time.LocalDateTime;
+
+/**
+ * 候补队列条目：自增主键即全局排队顺序，同一课程内按 id 升序出队
+ */
+@Entity
+@Table(name = "waitlist", indexes = {
+    @Index(name = "idx_waitlist_course_order", columnList = "course_id, id")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_waitlist_course_student", columnNames = {"course_id", "student_id"})
+})
+public class WaitlistEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotBlank(message = "Course ID is required")
+    @Column(name = "course_id", nullable = false, length = 36)
+    private String courseId;
+
+    @NotBlank(message = "Student ID is required")
+    @Column(name = "student_id", nullable = false, length = 36)
+    private String studentId;
+
+    @Column(name = "joined_at", nullable = false, updatable = false)
+    private LocalDateTime joinedAt;
+
+    public WaitlistEntry() {
+        // JPA requires no-arg constructor
+    }
+
+    public WaitlistEntry(String courseId, String studentId) {
+        this.courseId = courseId;
+        this.studentId = studentId;
+    }
+
+    public WaitlistEntry(Long id, String courseId, String studentId) {
+        this.id = id;
+        this.courseId = courseId;
+        this.studentId = studentId;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.joinedAt = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(String courseId) {
+        this.courseId = courseId;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    public LocalDateTime getJoinedAt() {
+        return joinedAt;
+    }
+
+    public void setJoinedAt(LocalDateTime joinedAt) {
+        this.joinedAt = joinedAt;
+    }
+}
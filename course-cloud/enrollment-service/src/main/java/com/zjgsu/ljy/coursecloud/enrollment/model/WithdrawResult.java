@@ -0,0 +1,10 @@
+package com.zjgsu.ljy.coursecloud.enrollment.model;
+
+/**
+ * 退课结果：promoted 为递补入课的候补学生的选课记录，无人递补（座位归还 catalog-service）时为 null
+ */
+public record WithdrawResult(
+        EnrollmentRecord withdrawn,
+        EnrollmentRecord promoted
+) {
+}
@@ -2,12 +2,20 @@ package com.zjgsu.ljy.coursecloud.enrollment.repository;
 
 
 import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface EnrollmentRepository extends JpaRepository<EnrollmentRecord, String> {
@@ -19,6 +27,38 @@ public interface EnrollmentRepository extends JpaRepository<EnrollmentRecord, St
     @Query("SELECT e FROM EnrollmentRecord e WHERE e.studentId = :studentId")
     List<EnrollmentRecord> findByStudentId(@Param("studentId") String studentId);
 
+    // 学生已选的课程 ID：选课时同时用于重复选课检查与上课时间冲突检查
+    @Query("SELECT e.courseId FROM EnrollmentRecord e WHERE e.studentId = :studentId")
+    List<String> findCourseIdsByStudentId(@Param("studentId") String studentId);
+
+    @Query("SELECT e.studentId FROM EnrollmentRecord e WHERE e.courseId = :courseId")
+    List<String> findStudentIdsByCourseId(@Param("courseId") String courseId);
+
     @Query("SELECT CASE WHEN COUNT(e) > 0 THEN true ELSE false END FROM EnrollmentRecord e WHERE e.courseId = :courseId AND e.studentId = :studentId")
     boolean existsByCourseIdAndStudentId(@Param("courseId") String courseId, @Param("studentId") String studentId);
+
+    // 批量选课：一次查询取回候选学生 × 候选课程范围内的已有选课 (courseId, studentId)
+    @Query("SELECT e.courseId, e.studentId FROM EnrollmentRecord e WHERE e.studentId IN :studentIds AND e.courseId IN :courseIds")
+    List<Object[]> findPairs(@Param("studentIds") Collection<String> studentIds, @Param("courseIds") Collection<String> courseIds);
+
+    // 退课：条件删除，并发重复退课时只有一个请求返回 1
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM EnrollmentRecord e WHERE e.id = :id")
+    int deleteByIdIfPresent(@Param("id") String id);
+
+    // 键集分页：按主键排序，从游标之后取 limit 条
+    @Query("SELECT e FROM EnrollmentRecord e ORDER BY e.id")
+    List<EnrollmentRecord> findFirstPage(Limit limit);
+
+    @Query("SELECT e FROM EnrollmentRecord e WHERE e.id > :after ORDER BY e.id")
+    List<EnrollmentRecord> findPageAfter(@Param("after") String after, Limit limit);
+
+    // 流式读取：配合 MySQL useCursorFetch=true 使用服务端游标，按 fetchSize 分批拉取
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e FROM EnrollmentRecord e")
+    Stream<EnrollmentRecord> streamAll();
 }
@@ -0,0 +1,40 @@
+package com.zjgsu.ljy.coursecloud.enrollment.repository;
+
+import com.zjgsu.ljy.coursecloud.enrollment.model.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    // 按 (course_id, id) 索引顺序读取，启动时重建内存队列
+    @Query("SELECT w FROM WaitlistEntry w ORDER BY w.courseId, w.id")
+    List<WaitlistEntry> findAllInOrder();
+
+    @Query("SELECT w FROM WaitlistEntry w WHERE w.courseId = :courseId ORDER BY w.id")
+    List<WaitlistEntry> findByCourseIdInOrder(@Param("courseId") String courseId);
+
+    boolean existsByCourseIdAndStudentId(String courseId, String studentId);
+
+    // 条件删除：多个实例同时递补同一条目时只有一个返回 1
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM WaitlistEntry w WHERE w.id = :id")
+    int deleteByIdIfPresent(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM WaitlistEntry w WHERE w.courseId = :courseId AND w.studentId = :studentId")
+    int deleteByCourseIdAndStudentId(@Param("courseId") String courseId, @Param("studentId") String studentId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM WaitlistEntry w WHERE w.courseId = :courseId")
+    int deleteByCourseId(@Param("courseId") String courseId);
+}
@@ -0,0 +1,502 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationListener;
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationPublisher;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 选课关系内存索引：学生 → 已选课程、课程 → 已选学生，重复选课检查与"我的课程"查询不访问数据库。
+ * <ul>
+ *     <li>学号与课程 ID 各映射为稠密整数句柄，ID 字符串每个只保存一份</li>
+ *     <li>两个方向都是按句柄排序的 int[]，每条选课关系只占两个 int（100 万条约十几 MB）</li>
+ *     <li>启动时（对外提供服务前）从数据库全量加载，本实例的选课 / 退课在事务提交后更新</li>
+ *     <li>跨实例：写入后通过 InvalidationPublisher 通知其他副本，收到通知的副本从数据库重新读取这些学生</li>
+ *     <li>定期全量重载（enrollment.index.refresh-interval-ms），兜底纠正丢失通知等造成的偏差；
+ *     加载在锁外构建新索引后整体替换，加载期间被修改（本实例写入或收到通知）的学生在替换后从数据库重新读取</li>
+ * </ul>
+ * 关闭（enrollment.index.enabled=false）或加载失败时 isLoaded() 为 false，调用方回退到数据库。
+ * 唯一约束 uk_course_student 仍是重复选课的最终保障。
+ */
+@Component
+public class EnrollmentIndex implements InvalidationListener, SmartInitializingSingleton {
+
+    public static final String INVALIDATION_TYPE = "enrollment";
+
+    private static final Logger log = LoggerFactory.getLogger(EnrollmentIndex.class);
+
+    private static final String LOAD_SQL = "SELECT student_id, course_id FROM enrollments";
+    private static final String STUDENTS_SQL =
+            "SELECT student_id, course_id FROM enrollments WHERE student_id IN (:studentIds)";
+    private static final int LOAD_FETCH_SIZE = 1000;
+    private static final int QUERY_CHUNK_SIZE = 1000;  // IN 列表分片，避免超出驱动参数上限
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InvalidationPublisher invalidationPublisher;
+    private final boolean enabled;
+    // 读多写少；读锁之间不互斥
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // 全量加载互斥（启动加载与定期重载），不阻塞读写
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    private State state = new State();  // 须持有读锁 / 写锁访问
+    private Set<String> touched;  // 加载进行中时被修改的学号，不在加载时为 null；须持有写锁访问
+
+    private volatile boolean loaded;
+
+    public EnrollmentIndex(JdbcTemplate jdbcTemplate, InvalidationPublisher invalidationPublisher,
+                           MeterRegistry meterRegistry,
+                           @Value("${enrollment.index.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.invalidationPublisher = invalidationPublisher;
+        this.enabled = enabled;
+        Gauge.builder("enrollment.index.size", this, EnrollmentIndex::size)
+                .description("选课索引中的选课关系数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 所有单例创建完成后、Web 服务器启动前全量加载
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    /**
+     * 从数据库全量重建索引：锁外加载，写锁内替换；加载期间被修改的学生在替换后重新读取。
+     * 失败时保留旧索引（首次加载失败时 isLoaded() 为 false），等待下一轮
+     */
+    @Scheduled(fixedDelayString = "${enrollment.index.refresh-interval-ms:600000}",
+            initialDelayString = "${enrollment.index.refresh-interval-ms:600000}")
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        loadLock.lock();
+        try {
+            long start = System.nanoTime();
+            lock.writeLock().lock();
+            try {
+                touched = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            State fresh = new State();
+            Set<String> modified;
+            try {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(LOAD_SQL);
+                    statement.setFetchSize(LOAD_FETCH_SIZE);
+                    return statement;
+                }, (RowCallbackHandler) rs -> fresh.link(rs.getString(1), rs.getString(2)));
+            } catch (RuntimeException e) {
+                log.warn("选课索引加载失败{}: {}", loaded ? "，保留当前索引" : "，回退到数据库查询", e.getMessage());
+                lock.writeLock().lock();
+                try {
+                    touched = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                state = fresh;
+                modified = touched;
+                touched = null;
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            // 加载读到的可能是这些学生被修改前的数据
+            refresh(modified);
+            log.info("选课索引加载完成: {} 条选课, {} 名学生, {} 门课程, 加载期间修改 {} 名学生, 耗时 {}ms",
+                    fresh.size, fresh.students.size(), fresh.courses.size(), modified.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean contains(String studentId, String courseId) {
+        lock.readLock().lock();
+        try {
+            return state.contains(studentId, courseId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 学生已选的课程 ID
+     */
+    public List<String> coursesOf(String studentId) {
+        lock.readLock().lock();
+        try {
+            return state.coursesOf(studentId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 选了该课程的学号
+     */
+    public List<String> studentsOf(String courseId) {
+        lock.readLock().lock();
+        try {
+            return state.studentsOf(courseId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return state.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 选课写入后调用，事务提交后加入索引并通知其他实例
+     */
+    public void added(String studentId, String courseId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    state.link(studentId, courseId);
+                }
+                touch(studentId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+        invalidationPublisher.publish(INVALIDATION_TYPE, studentId);
+    }
+
+    /**
+     * 退课删除后调用，事务提交后移出索引并通知其他实例
+     */
+    public void removed(String studentId, String courseId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    state.unlink(studentId, courseId);
+                }
+                touch(studentId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+        invalidationPublisher.publish(INVALIDATION_TYPE, studentId);
+    }
+
+    @Override
+    public String type() {
+        return INVALIDATION_TYPE;
+    }
+
+    /**
+     * 其他实例修改了这些学生的选课：从数据库重新读取并替换（不再向外广播）。
+     * 加载进行中时记下这些学生，替换后再读取一次，不会因加载读到旧数据而丢失通知
+     */
+    @Override
+    public void invalidate(Collection<String> studentIds) {
+        if (!enabled || studentIds.isEmpty()) {
+            return;
+        }
+        if (!loaded) {
+            lock.writeLock().lock();
+            try {
+                if (touched != null) {
+                    touched.addAll(studentIds);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!loaded) {
+                return;
+            }
+        }
+        refresh(studentIds);
+    }
+
+    /**
+     * 从数据库重新读取这些学生的选课并替换，IN 列表按 QUERY_CHUNK_SIZE 分片
+     */
+    private void refresh(Collection<String> studentIds) {
+        if (studentIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = List.copyOf(studentIds);
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        Map<String, List<String>> current = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += QUERY_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(i, Math.min(i + QUERY_CHUNK_SIZE, ids.size()));
+            namedJdbcTemplate.query(STUDENTS_SQL, Map.of("studentIds", chunk), rs -> {
+                current.computeIfAbsent(rs.getString(1), id -> new ArrayList<>()).add(rs.getString(2));
+            });
+        }
+        lock.writeLock().lock();
+        try {
+            for (String studentId : ids) {
+                for (String courseId : state.coursesOf(studentId)) {
+                    state.unlink(studentId, courseId);
+                }
+                for (String courseId : current.getOrDefault(studentId, List.of())) {
+                    state.link(studentId, courseId);
+                }
+                touch(studentId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 加载进行中时记下被修改的学生；须持有写锁
+    private void touch(String studentId) {
+        if (touched != null) {
+            touched.add(studentId);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 一份完整的索引数据，加载时整体替换；调用方须持有读锁 / 写锁（加载中的新实例只由加载线程访问）
+     */
+    private static final class State {
+
+        private final Handles students = new Handles();
+        private final Handles courses = new Handles();
+        private final Links coursesByStudent = new Links();
+        private final Links studentsByCourse = new Links();
+        private long size;
+
+        boolean contains(String studentId, String courseId) {
+            int student = students.find(studentId);
+            int course = courses.find(courseId);
+            return student >= 0 && course >= 0 && coursesByStudent.contains(student, course);
+        }
+
+        List<String> coursesOf(String studentId) {
+            return resolve(coursesByStudent, students.find(studentId), courses);
+        }
+
+        List<String> studentsOf(String courseId) {
+            return resolve(studentsByCourse, courses.find(courseId), students);
+        }
+
+        void link(String studentId, String courseId) {
+            int student = students.intern(studentId);
+            int course = courses.intern(courseId);
+            if (coursesByStudent.add(student, course)) {
+                studentsByCourse.add(course, student);
+                size++;
+            }
+        }
+
+        void unlink(String studentId, String courseId) {
+            int student = students.find(studentId);
+            int course = courses.find(courseId);
+            if (student >= 0 && course >= 0 && coursesByStudent.remove(student, course)) {
+                studentsByCourse.remove(course, student);
+                size--;
+            }
+        }
+
+        private static List<String> resolve(Links links, int from, Handles targets) {
+            if (from < 0) {
+                return List.of();
+            }
+            int[] handles = links.get(from);
+            List<String> ids = new ArrayList<>(handles.length);
+            for (int handle : handles) {
+                ids.add(targets.id(handle));
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * 字符串 ID ↔ 稠密整数句柄。开放寻址表的槽位只存句柄 + 1（0 为空槽），不装箱；句柄不回收
+     */
+    private static final class Handles {
+
+        private String[] ids = new String[1024];
+        private int[] slots = new int[2048];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        String id(int handle) {
+            return ids[handle];
+        }
+
+        /**
+         * 句柄，不存在时返回 -1
+         */
+        int find(String id) {
+            int mask = slots.length - 1;
+            for (int slot = spread(id.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+                int handle = slots[slot] - 1;
+                if (handle < 0 || ids[handle].equals(id)) {
+                    return handle;
+                }
+            }
+        }
+
+        int intern(String id) {
+            int handle = find(id);
+            if (handle >= 0) {
+                return handle;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            handle = size++;
+            ids[handle] = id;
+            if (size * 2 > slots.length) {
+                rehash(slots.length * 2);
+            } else {
+                place(handle);
+            }
+            return handle;
+        }
+
+        private void rehash(int capacity) {
+            slots = new int[capacity];
+            for (int handle = 0; handle < size; handle++) {
+                place(handle);
+            }
+        }
+
+        private void place(int handle) {
+            int mask = slots.length - 1;
+            int slot = spread(ids[handle].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = handle + 1;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * 句柄 → 有序句柄集合。每个集合是一个按需扩容的 int[]，有效长度记录在 sizes 中
+     */
+    private static final class Links {
+
+        private static final int[] EMPTY = new int[0];
+
+        private int[][] values = new int[1024][];
+        private int[] sizes = new int[1024];
+
+        int[] get(int from) {
+            if (from >= values.length || values[from] == null) {
+                return EMPTY;
+            }
+            return Arrays.copyOf(values[from], sizes[from]);
+        }
+
+        boolean contains(int from, int to) {
+            return from < values.length && values[from] != null
+                    && Arrays.binarySearch(values[from], 0, sizes[from], to) >= 0;
+        }
+
+        boolean add(int from, int to) {
+            if (from >= values.length) {
+                int capacity = Math.max(values.length * 2, from + 1);
+                values = Arrays.copyOf(values, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+            }
+            int[] set = values[from];
+            int size = sizes[from];
+            if (set == null) {
+                values[from] = new int[]{to};
+                sizes[from] = 1;
+                return true;
+            }
+            int index = Arrays.binarySearch(set, 0, size, to);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+            if (size == set.length) {
+                set = Arrays.copyOf(set, size + Math.max(1, size >> 1));
+                values[from] = set;
+            }
+            System.arraycopy(set, index, set, index + 1, size - index);
+            set[index] = to;
+            sizes[from] = size + 1;
+            return true;
+        }
+
+        boolean remove(int from, int to) {
+            if (!contains(from, to)) {
+                return false;
+            }
+            int[] set = values[from];
+            int size = sizes[from];
+            int index = Arrays.binarySearch(set, 0, size, to);
+            System.arraycopy(set, index + 1, set, index, size - index - 1);
+            sizes[from] = size - 1;
+            return true;
+        }
+    }
+}
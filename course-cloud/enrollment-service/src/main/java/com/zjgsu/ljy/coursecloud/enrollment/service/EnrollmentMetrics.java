@@ -0,0 +1,95 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 选课热路径指标（Prometheus 名称以 enrollment_ 开头）：
+ * <ul>
+ *     <li>enrollment.enroll：单条选课总耗时，outcome=enrolled|rejected</li>
+ *     <li>enrollment.enroll.phase：各阶段耗时，phase=duplicate_check|student_verify|seat_reserve|insert</li>
+ *     <li>enrollment.batch：批量选课总耗时</li>
+ *     <li>enrollment.rejections：按原因统计的拒绝次数，mode=single|batch</li>
+ *     <li>enrollment.withdrawals：退课次数，seat=promoted（座位转给候补学生）|released（归还 catalog-service）</li>
+ *     <li>enrollment.waitlist.admissions：候补入课次数，via=withdraw（退课直接转让）|admitter（后台递补）</li>
+ * </ul>
+ * 直方图桶由 management.metrics.distribution.percentiles-histogram.enrollment 开启。
+ */
+@Component
+public class EnrollmentMetrics {
+
+    public static final String DUPLICATE_CHECK = "duplicate_check";
+    public static final String STUDENT_VERIFY = "student_verify";
+    public static final String SEAT_RESERVE = "seat_reserve";
+    public static final String INSERT = "insert";
+
+    private final MeterRegistry registry;
+
+    public EnrollmentMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * 阶段结束时（无论成功失败）记录耗时，返回原 future 以便链式使用
+     */
+    public <T> CompletableFuture<T> recordPhase(String phase, Timer.Sample sample, CompletableFuture<T> future) {
+        future.whenComplete((result, error) -> recordPhase(phase, sample, error == null));
+        return future;
+    }
+
+    public void recordPhase(String phase, Timer.Sample sample, boolean success) {
+        sample.stop(Timer.builder("enrollment.enroll.phase")
+                .tag("phase", phase)
+                .tag("outcome", success ? "success" : "failure")
+                .register(registry));
+    }
+
+    public void recordEnrolled(Timer.Sample sample) {
+        sample.stop(Timer.builder("enrollment.enroll")
+                .tag("outcome", "enrolled")
+                .register(registry));
+    }
+
+    public void recordRejected(Timer.Sample sample, String reason) {
+        sample.stop(Timer.builder("enrollment.enroll")
+                .tag("outcome", "rejected")
+                .register(registry));
+        recordRejections(reason, "single", 1);
+    }
+
+    public void recordBatch(Timer.Sample sample) {
+        sample.stop(Timer.builder("enrollment.batch").register(registry));
+    }
+
+    public void recordWithdrawal(boolean promoted) {
+        Counter.builder("enrollment.withdrawals")
+                .tag("seat", promoted ? "promoted" : "released")
+                .register(registry)
+                .increment();
+    }
+
+    public void recordWaitlistAdmission(String via) {
+        Counter.builder("enrollment.waitlist.admissions")
+                .tag("via", via)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordRejections(String reason, String mode, long count) {
+        if (count > 0) {
+            Counter.builder("enrollment.rejections")
+                    .tag("reason", reason)
+                    .tag("mode", mode)
+                    .register(registry)
+                    .increment(count);
+        }
+    }
+}
@@ -1,16 +1,51 @@
 package com.zjgsu.ljy.coursecloud.enrollment.service;
 
+import com.zjgsu.ljy.coursecloud.enrollment.client.CatalogServiceClient;
+import com.zjgsu.ljy.coursecloud.enrollment.client.UserServiceClient;
+import com.zjgsu.ljy.coursecloud.enrollment.exception.ServiceUnavailableException;
+import com.zjgsu.ljy.coursecloud.enrollment.exception.WaitlistedException;
+import com.zjgsu.ljy.coursecloud.enrollment.model.BatchEnrollmentResult;
+import com.zjgsu.ljy.coursecloud.enrollment.model.BatchEnrollmentStatus;
+import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentKey;
 import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentRecord;
+import com.zjgsu.ljy.coursecloud.enrollment.model.WaitlistEntry;
+import com.zjgsu.ljy.coursecloud.enrollment.model.WithdrawResult;
 import com.zjgsu.ljy.coursecloud.enrollment.repository.EnrollmentRepository;
+import jakarta.persistence.EntityManager;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
@@ -18,87 +53,773 @@ public class EnrollmentService {
 
     private static final Logger log = LoggerFactory.getLogger(EnrollmentService.class);
 
-    private final RestTemplate restTemplate;
+    private final UserServiceClient userServiceClient;
+    private final CatalogServiceClient catalogServiceClient;
     private final EnrollmentRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final StudentLookupCache studentLookupCache;
+    private final Executor enrollmentExecutor;
+    private final EntityManager entityManager;
+    private final EnrollmentMetrics enrollmentMetrics;
+    private final EnrollmentIndex enrollmentIndex;
+    private final Waitlist waitlist;
+    private final TransactionTemplate transactionTemplate;
+    private final StudentLocks studentLocks;
+    private final SeatReleases seatReleases;
 
-    private static final String USER_SERVICE_URL = "http://user-service";  // Nacos 服务名
-    private static final String CATALOG_SERVICE_URL = "http://catalog-service";  // Nacos 服务名
+    private static final String INSERT_SQL =
+            "INSERT INTO enrollments (id, course_id, student_id, enrolled_at) VALUES (?, ?, ?, ?)";
+    private static final int QUERY_CHUNK_SIZE = 1000;  // IN 列表分片，避免超出驱动参数上限
+    private static final int LOOKUP_CHUNK_SIZE = 5000;  // 每次批量查询 user-service 的学号数
+    private static final String ALREADY_ENROLLED = "Student is already enrolled in this course";
+    private static final String COURSE_FULL = "Course capacity reached";
+    private static final String SCHEDULE_CONFLICT = "Schedule conflicts with enrolled course(s): ";
+    private static final int CONFLICT_CHECK_CONCURRENCY = 32;  // 批量选课并发的冲突检查请求数
 
-    public EnrollmentService(RestTemplate restTemplate, EnrollmentRepository repository) {
-        this.restTemplate = restTemplate;
+    public EnrollmentService(UserServiceClient userServiceClient, CatalogServiceClient catalogServiceClient,
+                             EnrollmentRepository repository, JdbcTemplate jdbcTemplate,
+                             StudentLookupCache studentLookupCache, Executor enrollmentExecutor,
+                             EntityManager entityManager, EnrollmentMetrics enrollmentMetrics,
+                             EnrollmentIndex enrollmentIndex, Waitlist waitlist,
+                             TransactionTemplate transactionTemplate, StudentLocks studentLocks,
+                             SeatReleases seatReleases) {
+        this.userServiceClient = userServiceClient;
+        this.catalogServiceClient = catalogServiceClient;
         this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.studentLookupCache = studentLookupCache;
+        this.enrollmentExecutor = enrollmentExecutor;
+        this.entityManager = entityManager;
+        this.enrollmentMetrics = enrollmentMetrics;
+        this.enrollmentIndex = enrollmentIndex;
+        this.waitlist = waitlist;
+        this.transactionTemplate = transactionTemplate;
+        this.studentLocks = studentLocks;
+        this.seatReleases = seatReleases;
     }
 
+    /**
+     * 单条选课。远程校验期间不持有数据库连接（NOT_SUPPORTED），只在写入选课记录时开启短事务；
+     * 否则每个请求在等待下游时占住一个连接，已选课程查询 / 加入候补再取第二个连接，连接池可能耗尽死锁
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public EnrollmentRecord enroll(String courseId, String studentId) {
-        log.info("开始选课: studentId={}, courseId={}", studentId, courseId);
+        Timer.Sample sample = enrollmentMetrics.start();
+        // 同一学生的选课串行执行，已选课程查询与冲突检查看到的是该学生之前全部选课的结果
+        ReentrantLock studentLock = studentLocks.of(studentId);
+        studentLock.lock();
+        try {
+            EnrollmentRecord saved = doEnroll(courseId, studentId);
+            enrollmentMetrics.recordEnrolled(sample);
+            return saved;
+        } catch (RuntimeException e) {
+            enrollmentMetrics.recordRejected(sample, rejectionReason(e));
+            throw e;
+        } finally {
+            studentLock.unlock();
+        }
+    }
 
-        // Check if already enrolled
-        if (repository.existsByCourseIdAndStudentId(courseId, studentId)) {
-            log.warn("学生已选该课程: studentId={}, courseId={}", studentId, courseId);
-            throw new IllegalStateException("Student is already enrolled in this course");
+    private EnrollmentRecord doEnroll(String courseId, String studentId) {
+        log.debug("开始选课: studentId={}, courseId={}", studentId, courseId);
+
+        // 课程已有候补学生时不插队：直接排到队尾，空出的座位按排队顺序递补
+        if (waitlist.isEnabled() && waitlist.hasWaiting(courseId)) {
+            throw new WaitlistedException(courseId, studentId, joinWaitlist(courseId, studentId));
+        }
+
+        // ⭐ 学生校验与"已选课程查询 → 座位预占"两路并发，耗时取决于较慢的一路；任一路拒绝立即失败
+        // 已选课程一次查询，同时用于重复选课检查与上课时间冲突检查；选课索引已加载时在当前线程读内存完成
+        CompletableFuture<List<String>> heldCourses = enrollmentMetrics.recordPhase(EnrollmentMetrics.DUPLICATE_CHECK,
+                enrollmentMetrics.start(), enrollmentIndex.isLoaded()
+                        ? CompletableFuture.completedFuture(studentId).thenApply(id -> heldCourses(id, courseId))
+                        : CompletableFuture.supplyAsync(() -> heldCourses(studentId, courseId), enrollmentExecutor));
+        // 远程调用基于非阻塞 WebClient，等待期间不占用线程；contextCapture 使回调线程上的日志与 span 仍归属当前 trace
+        CompletableFuture<Void> studentCheck = enrollmentMetrics.recordPhase(EnrollmentMetrics.STUDENT_VERIFY,
+                enrollmentMetrics.start(), verifyStudent(studentId).contextCapture().toFuture());
+        // 通过 catalog-service 原子预占座位（条件更新，替代"先读后判"的容量检查），
+        // 已选课程随请求一起发送，时间冲突检查在同一次调用中完成，不增加往返
+        String seatKey = seatKey(studentId, courseId);
+        CompletableFuture<Integer> seatReservation = heldCourses.thenCompose(held ->
+                enrollmentMetrics.recordPhase(EnrollmentMetrics.SEAT_RESERVE, enrollmentMetrics.start(),
+                        reserveSeats(courseId, 1, held, seatKey).contextCapture().toFuture()));
+        CompletableFuture<Void> seatCheck = seatReservation.thenAccept(granted -> {
+            if (granted == 0) {
+                throw new IllegalStateException(COURSE_FULL);
+            }
+        });
+
+        try {
+            awaitAll(studentCheck, seatCheck);
+        } catch (RuntimeException e) {
+            // 其他校验失败时撤销已预占（或稍后预占成功）的座位；预占超时 / 熔断时结果未知，同样按 key 撤销
+            seatReservation.whenComplete((granted, error) -> {
+                if (error != null ? outcomeUnknown(error) : granted > 0) {
+                    cancelReservation(courseId, seatKey);
+                }
+            });
+            if (COURSE_FULL.equals(e.getMessage()) && waitlist.isEnabled()) {
+                throw joinWhenFull(courseId, studentId);
+            }
+            throw e;
         }
 
-        // 1. ⭐ 通过服务名调用 user-service
+        // Create enrollment record
+        EnrollmentRecord saved;
+        Timer.Sample insertSample = enrollmentMetrics.start();
         try {
-            String userUrl = USER_SERVICE_URL + "/api/students/studentId/" + studentId;
-            log.info("调用 user-service 验证学生: {}", userUrl);
+            saved = transactionTemplate.execute(status -> {
+                EnrollmentRecord record = repository.saveAndFlush(new EnrollmentRecord(courseId, studentId));
+                enrollmentIndex.added(studentId, courseId);
+                return record;
+            });
+            enrollmentMetrics.recordPhase(EnrollmentMetrics.INSERT, insertSample, true);
+        } catch (DataIntegrityViolationException e) {
+            // 并发重复选课被唯一约束拦截，归还已预占的座位
+            enrollmentMetrics.recordPhase(EnrollmentMetrics.INSERT, insertSample, false);
+            log.warn("重复选课被唯一约束拦截: studentId={}, courseId={}", studentId, courseId);
+            cancelReservation(courseId, seatKey);
+            throw new IllegalStateException(ALREADY_ENROLLED);
+        } catch (RuntimeException e) {
+            enrollmentMetrics.recordPhase(EnrollmentMetrics.INSERT, insertSample, false);
+            cancelReservation(courseId, seatKey);
+            throw e;
+        }
+
+        log.info("选课成功: studentId={}, courseId={}, enrollmentId={}", studentId, courseId, saved.getId());
+
+        return saved;
+    }
+
+    /**
+     * 学生已选课程；已选 courseId 时以 IllegalStateException 结束
+     */
+    private List<String> heldCourses(String studentId, String courseId) {
+        List<String> held = studentCourses(studentId);
+        if (held.contains(courseId)) {
+            log.warn("学生已选该课程: studentId={}, courseId={}", studentId, courseId);
+            throw new IllegalStateException(ALREADY_ENROLLED);
+        }
+        return held;
+    }
 
-            Map<String, Object> studentResponse = restTemplate.getForObject(userUrl, Map.class);
-            log.info("学生验证成功，响应来自端口: {}", studentResponse.get("port"));  // ✅ 日志显示负载均衡
+    /**
+     * 批量选课：去重 → 批量校验学生 → 一次集合查询排除已选 → 逐条检查上课时间冲突 → 按课程一次性预占座位 → JDBC batch 插入
+     *
+     * 远程调用（学生校验、冲突检查、座位预占）期间不持有学生锁与数据库连接；只在最后复查已选并批量插入时
+     * 持有入选学生的锁，与这些学生的单条选课互斥。复查发现已在此期间选上的记录标记为 ALREADY_ENROLLED，
+     * 多预占的座位在插入后归还。冲突检查在锁外进行，与同一学生并发的单条选课之间不保证互斥
+     *
+     * @return 与请求顺序一致的逐条结果
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BatchEnrollmentResult> enrollBatch(List<EnrollmentKey> pairs) {
+        log.info("开始批量选课: {} 条", pairs.size());
+        Timer.Sample sample = enrollmentMetrics.start();
 
-        } catch (HttpClientErrorException.NotFound e) {
-            log.error("学生不存在: {}", studentId);
-            throw new IllegalArgumentException("Student not found: " + studentId);
-        } catch (Exception e) {
-            log.error("验证学生时出错: {}", e.getMessage(), e);
-            throw new RuntimeException("Error verifying student with user-service: " + e.getMessage());
+        BatchEnrollmentStatus[] statuses = new BatchEnrollmentStatus[pairs.size()];
+        String[] enrollmentIds = new String[pairs.size()];
+
+        // 1. 去重，保留首次出现的位置
+        Map<EnrollmentKey, Integer> firstIndex = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            if (firstIndex.putIfAbsent(pairs.get(i), i) != null) {
+                statuses[i] = BatchEnrollmentStatus.DUPLICATE_IN_REQUEST;
+            }
+        }
+        Set<String> studentIds = new LinkedHashSet<>();
+        Set<String> courseIds = new LinkedHashSet<>();
+        for (EnrollmentKey pair : firstIndex.keySet()) {
+            studentIds.add(pair.studentId());
+            courseIds.add(pair.courseId());
+        }
+
+        // 2. 批量校验学生
+        Set<String> missingStudents = findMissingStudents(studentIds);
+
+        // 3. 一次集合查询排除已选课程（插入前在锁内复查）
+        Set<EnrollmentKey> existing = findExistingPairs(studentIds, courseIds);
+
+        Map<String, List<Integer>> pendingByCourse = new LinkedHashMap<>();
+        for (Map.Entry<EnrollmentKey, Integer> entry : firstIndex.entrySet()) {
+            EnrollmentKey pair = entry.getKey();
+            int index = entry.getValue();
+            if (missingStudents.contains(pair.studentId())) {
+                statuses[index] = BatchEnrollmentStatus.STUDENT_NOT_FOUND;
+            } else if (existing.contains(pair)) {
+                statuses[index] = BatchEnrollmentStatus.ALREADY_ENROLLED;
+            } else {
+                pendingByCourse.computeIfAbsent(pair.courseId(), id -> new ArrayList<>()).add(index);
+            }
         }
 
-        // 2. ⭐ 通过服务名调用 catalog-service
+        // 4. 逐条检查上课时间冲突（已选课程含本批次先入选的课程），每门课程一次预占请求，按请求顺序分配座位
+        Map<String, String> seatKeyByCourse = new LinkedHashMap<>();
+        Map<String, List<Integer>> grantedByCourse = new LinkedHashMap<>();
+        Map<String, List<String>> heldByStudent = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : pendingByCourse.entrySet()) {
+            String courseId = entry.getKey();
+            // 课程已有候补学生时不插队（与单条选课一致），按课程已满处理，学生可另行加入候补队列
+            if (waitlist.isEnabled() && waitlist.hasWaiting(courseId)) {
+                entry.getValue().forEach(index -> statuses[index] = BatchEnrollmentStatus.COURSE_FULL);
+                continue;
+            }
+            List<Integer> indexes;
+            int granted;
+            String seatKey = seatKey("batch", courseId);
+            try {
+                indexes = withoutConflicts(courseId, entry.getValue(), pairs, heldByStudent, statuses);
+                if (indexes.isEmpty()) {
+                    continue;
+                }
+                granted = reserveSeats(courseId, indexes.size(), List.of(), seatKey).block();
+            } catch (IllegalArgumentException e) {
+                entry.getValue().forEach(index -> statuses[index] = BatchEnrollmentStatus.COURSE_NOT_FOUND);
+                continue;
+            } catch (RuntimeException e) {
+                if (outcomeUnknown(e)) {
+                    cancelReservation(courseId, seatKey);
+                }
+                entry.getValue().forEach(index -> statuses[index] = BatchEnrollmentStatus.FAILED);
+                continue;
+            }
+            if (granted > 0) {
+                seatKeyByCourse.put(courseId, seatKey);
+                grantedByCourse.put(courseId, indexes.subList(0, Math.min(granted, indexes.size())));
+            }
+            for (int k = 0; k < indexes.size(); k++) {
+                int index = indexes.get(k);
+                if (k < granted) {
+                    heldByStudent.get(pairs.get(index).studentId()).add(courseId);
+                } else {
+                    statuses[index] = BatchEnrollmentStatus.COURSE_FULL;
+                }
+            }
+        }
+
+        // 5. 持有入选学生的锁复查已选，JDBC batch 插入（同一事务，冲突时整批回滚）
+        List<Object[]> rows = new ArrayList<>();
+        Map<String, Integer> surplusByCourse = new LinkedHashMap<>();
+        Set<String> grantedStudents = new LinkedHashSet<>();
+        grantedByCourse.values().forEach(indexes -> indexes.forEach(index ->
+                grantedStudents.add(pairs.get(index).studentId())));
+        List<ReentrantLock> locks = studentLocks.lockAll(grantedStudents);
         try {
-            String courseUrl = CATALOG_SERVICE_URL + "/api/courses/" + courseId;
-            log.info("调用 catalog-service 验证课程: {}", courseUrl);
+            Set<EnrollmentKey> enrolledMeanwhile = grantedStudents.isEmpty()
+                    ? Set.of()
+                    : findExistingPairs(grantedStudents, grantedByCourse.keySet());
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            grantedByCourse.forEach((courseId, indexes) -> {
+                for (int index : indexes) {
+                    EnrollmentKey pair = pairs.get(index);
+                    if (enrolledMeanwhile.contains(pair)) {
+                        statuses[index] = BatchEnrollmentStatus.ALREADY_ENROLLED;
+                        surplusByCourse.merge(courseId, 1, Integer::sum);
+                        continue;
+                    }
+                    String id = UUID.randomUUID().toString();
+                    rows.add(new Object[]{id, courseId, pair.studentId(), now});
+                    statuses[index] = BatchEnrollmentStatus.ENROLLED;
+                    enrollmentIds[index] = id;
+                }
+            });
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                for (Object[] row : rows) {
+                    enrollmentIndex.added((String) row[2], (String) row[1]);
+                }
+            });
+        } catch (RuntimeException e) {
+            // 整批回滚，按 key 撤销全部预占
+            seatKeyByCourse.forEach(this::cancelReservation);
+            enrollmentMetrics.recordBatch(sample);
+            if (e instanceof DataAccessException) {
+                // 与并发的单条选课冲突（唯一约束）
+                log.warn("批量插入失败，归还已预占座位: {}", e.getMessage());
+                enrollmentMetrics.recordRejections("batch_conflict", "batch", pairs.size());
+                throw new IllegalStateException("Batch enrollment conflicted with concurrent enrollments, please retry");
+            }
+            throw e;
+        } finally {
+            studentLocks.unlockAll(locks);
+        }
+        // 复查时已选上的记录不再需要座位
+        surplusByCourse.forEach((courseId, count) ->
+                releaseSeats(courseId, count, seatKeyByCourse.get(courseId) + ":surplus"));
+
+        List<BatchEnrollmentResult> results = new ArrayList<>(pairs.size());
+        Map<BatchEnrollmentStatus, Long> rejections = new EnumMap<>(BatchEnrollmentStatus.class);
+        for (int i = 0; i < pairs.size(); i++) {
+            EnrollmentKey pair = pairs.get(i);
+            results.add(new BatchEnrollmentResult(pair.courseId(), pair.studentId(), statuses[i], enrollmentIds[i]));
+            if (statuses[i] != BatchEnrollmentStatus.ENROLLED) {
+                rejections.merge(statuses[i], 1L, Long::sum);
+            }
+        }
+        rejections.forEach((status, count) ->
+                enrollmentMetrics.recordRejections(status.name().toLowerCase(), "batch", count));
+        enrollmentMetrics.recordBatch(sample);
+        log.info("批量选课完成: 请求 {} 条, 成功 {} 条", pairs.size(), rows.size());
+        return results;
+    }
+
+    // ==================== 退课与候补 ====================
 
-            Map<String, Object> courseResponse = restTemplate.getForObject(courseUrl, Map.class);
+    /**
+     * 退课：条件删除选课记录；课程有候补学生时座位直接转给队首学生（catalog-service 的已选人数不变，
+     * 座位不会被其他请求抢走），否则在 catalog-service 原子释放座位。
+     * 退课删除与递补写入各自提交，递补失败时条目留在队首并改为释放座位
+     *
+     * @throws IllegalArgumentException 选课记录不存在（或已被并发退课删除）
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public WithdrawResult withdraw(String enrollmentId) {
+        EnrollmentRecord record = repository.findById(enrollmentId)
+                .orElseThrow(() -> new IllegalArgumentException("Enrollment not found: " + enrollmentId));
+        if (repository.deleteByIdIfPresent(enrollmentId) == 0) {
+            throw new IllegalArgumentException("Enrollment not found: " + enrollmentId);
+        }
+        String courseId = record.getCourseId();
+        enrollmentIndex.removed(record.getStudentId(), courseId);
+        log.info("退课成功: studentId={}, courseId={}, enrollmentId={}", record.getStudentId(), courseId, enrollmentId);
 
-            if (courseResponse == null) {
-                log.error("课程不存在: {}", courseId);
-                throw new IllegalArgumentException("Course not found: " + courseId);
+        EnrollmentRecord promoted = promoteNext(courseId);
+        if (promoted == null) {
+            // 以选课记录 ID 为 key：同一条记录的座位只释放一次
+            releaseSeats(courseId, 1, "withdraw:" + enrollmentId);
+        } else {
+            enrollmentMetrics.recordWaitlistAdmission("withdraw");
+        }
+        enrollmentMetrics.recordWithdrawal(promoted != null);
+        return new WithdrawResult(record, promoted);
+    }
+
+    /**
+     * 座位已在手：按排队顺序为第一个可入课的候补学生写入选课记录，移除已选该课程或上课时间冲突的条目
+     */
+    private EnrollmentRecord promoteNext(String courseId) {
+        WaitlistEntry head;
+        while ((head = waitlist.peek(courseId)) != null) {
+            String studentId = head.getStudentId();
+            ReentrantLock studentLock = studentLocks.of(studentId);
+            studentLock.lock();
+            try {
+                List<String> held = studentCourses(studentId);
+                if (held.contains(courseId)) {
+                    waitlist.drop(head);
+                    continue;
+                }
+                List<String> conflicts = catalogServiceClient.findScheduleConflicts(courseId, held).block();
+                if (conflicts != null && !conflicts.isEmpty()) {
+                    log.info("候补学生上课时间冲突，移出队列: studentId={}, courseId={}, conflicts={}",
+                            studentId, courseId, conflicts);
+                    waitlist.drop(head);
+                    enrollmentMetrics.recordRejections("schedule_conflict", "waitlist", 1);
+                    continue;
+                }
+                EnrollmentRecord saved = admit(head);
+                if (saved != null) {
+                    log.info("候补递补成功: studentId={}, courseId={}, enrollmentId={}",
+                            studentId, courseId, saved.getId());
+                    return saved;
+                }
+            } catch (RuntimeException e) {
+                log.error("候补递补失败，条目留在队首并归还座位: studentId={}, courseId={}, error={}",
+                        studentId, courseId, e.getMessage());
+                return null;
+            } finally {
+                studentLock.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 后台递补：课程有空位时按排队顺序逐个为队首学生预占座位并入课，直到课程满员（进入退避）或队列为空。
+     * 下游不可用时异常结束，条目留在队首等待下一轮
+     *
+     * @return 入课人数
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int admitWaitlisted(String courseId) {
+        int admitted = 0;
+        WaitlistEntry head;
+        while ((head = waitlist.peek(courseId)) != null) {
+            String studentId = head.getStudentId();
+            ReentrantLock studentLock = studentLocks.of(studentId);
+            studentLock.lock();
+            try {
+                List<String> held = studentCourses(studentId);
+                if (held.contains(courseId)) {
+                    waitlist.drop(head);
+                    continue;
+                }
+                int granted;
+                String seatKey = seatKey(studentId, courseId);
+                try {
+                    granted = reserveSeats(courseId, 1, held, seatKey).block();
+                } catch (IllegalStateException e) {
+                    log.info("候补学生上课时间冲突，移出队列: studentId={}, courseId={}", studentId, courseId);
+                    waitlist.drop(head);
+                    enrollmentMetrics.recordRejections("schedule_conflict", "waitlist", 1);
+                    continue;
+                } catch (IllegalArgumentException e) {
+                    log.warn("课程不存在，清空候补队列: courseId={}", courseId);
+                    waitlist.clear(courseId);
+                    return admitted;
+                } catch (RuntimeException e) {
+                    // 超时 / 熔断：预占结果未知，按 key 撤销
+                    cancelReservation(courseId, seatKey);
+                    throw e;
+                }
+                if (granted == 0) {
+                    waitlist.backoff(courseId);
+                    return admitted;
+                }
+                EnrollmentRecord saved;
+                try {
+                    saved = admit(head);
+                } catch (RuntimeException e) {
+                    cancelReservation(courseId, seatKey);
+                    throw e;
+                }
+                if (saved == null) {
+                    // 条目已被其他实例递补或学生已退出，座位留给下一位
+                    cancelReservation(courseId, seatKey);
+                    continue;
+                }
+                admitted++;
+                enrollmentMetrics.recordWaitlistAdmission("admitter");
+                log.info("候补入课: studentId={}, courseId={}, enrollmentId={}", studentId, courseId, saved.getId());
+            } finally {
+                studentLock.unlock();
             }
+        }
+        return admitted;
+    }
+
+    /**
+     * 候补条目出队与选课记录写入在同一事务内完成；条目已被其他实例递补时返回 null，
+     * 学生已选该课程时移除条目并返回 null
+     */
+    private EnrollmentRecord admit(WaitlistEntry entry) {
+        String courseId = entry.getCourseId();
+        String studentId = entry.getStudentId();
+        try {
+            return waitlist.claim(entry, () -> {
+                EnrollmentRecord saved = repository.saveAndFlush(new EnrollmentRecord(courseId, studentId));
+                enrollmentIndex.added(studentId, courseId);
+                return saved;
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.warn("候补学生已选该课程: studentId={}, courseId={}", studentId, courseId);
+            waitlist.drop(entry);
+            return null;
+        }
+    }
+
+    /**
+     * 加入课程候补队列；已选该课程或与已选课程上课时间冲突时以 IllegalStateException 结束
+     *
+     * @return 排队位置（从 1 开始）
+     */
+    public int joinWaitlist(String courseId, String studentId) {
+        List<String> held = studentCourses(studentId);
+        if (held.contains(courseId)) {
+            throw new IllegalStateException(ALREADY_ENROLLED);
+        }
+        verifyStudent(studentId).block();
+        // 同时校验课程存在
+        List<String> conflicts = catalogServiceClient.findScheduleConflicts(courseId, held).block();
+        if (conflicts != null && !conflicts.isEmpty()) {
+            throw new IllegalStateException(SCHEDULE_CONFLICT + String.join(", ", conflicts));
+        }
+        int position = waitlist.join(courseId, studentId);
+        log.info("加入候补: studentId={}, courseId={}, position={}", studentId, courseId, position);
+        return position;
+    }
 
-            log.info("课程验证成功，响应来自端口: {}", courseResponse.get("port"));  // ✅ 日志显示负载均衡
+    /**
+     * 选课时课程已满：学生加入候补队列（座位预占已确认无时间冲突），以 WaitlistedException 告知排队位置
+     */
+    private WaitlistedException joinWhenFull(String courseId, String studentId) {
+        verifyStudent(studentId).block();
+        int position = waitlist.join(courseId, studentId);
+        log.info("课程已满，加入候补: studentId={}, courseId={}, position={}", studentId, courseId, position);
+        return new WaitlistedException(courseId, studentId, position);
+    }
 
-            // 处理嵌套的 data 结构
-            Object dataObj = courseResponse.get("data");
-            Map<String, Object> courseData = dataObj instanceof Map ? (Map<String, Object>) dataObj : courseResponse;
+    /**
+     * 退出课程候补队列
+     *
+     * @return 学生是否在队列中
+     */
+    public boolean leaveWaitlist(String courseId, String studentId) {
+        return waitlist.leave(courseId, studentId);
+    }
 
-            Integer capacity = (Integer) courseData.get("capacity");
-            Integer enrolled = (Integer) courseData.get("enrolled");
+    /**
+     * 排队位置（从 1 开始），不在队列中时返回 0
+     */
+    public int waitlistPosition(String courseId, String studentId) {
+        return waitlist.position(courseId, studentId);
+    }
 
-            log.debug("课程容量检查: capacity={}, enrolled={}", capacity, enrolled);
+    /**
+     * 课程候补队列中的学号，按排队顺序
+     */
+    public List<String> listWaitlist(String courseId) {
+        return waitlist.list(courseId);
+    }
 
-            if (enrolled != null && capacity != null && enrolled >= capacity) {
-                log.warn("课程已满: courseId={}, capacity={}, enrolled={}", courseId, capacity, enrolled);
-                throw new IllegalStateException("Course capacity reached");
+    /**
+     * 拒绝原因，与批量选课的 BatchEnrollmentStatus 使用同一组取值（小写）
+     */
+    private static String rejectionReason(RuntimeException e) {
+        if (e instanceof WaitlistedException) {
+            return "waitlisted";
+        }
+        if (e instanceof ServiceUnavailableException) {
+            return "downstream_unavailable";
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException) {
+                return "downstream_timeout";
+            }
+        }
+        String message = e.getMessage() != null ? e.getMessage() : "";
+        if (e instanceof IllegalStateException) {
+            if (message.equals(ALREADY_ENROLLED)) {
+                return "already_enrolled";
+            }
+            if (message.equals(COURSE_FULL)) {
+                return "course_full";
+            }
+            if (message.startsWith(SCHEDULE_CONFLICT)) {
+                return "schedule_conflict";
+            }
+        }
+        if (e instanceof IllegalArgumentException) {
+            if (message.startsWith("Student not found")) {
+                return "student_not_found";
+            }
+            if (message.startsWith("Course not found")) {
+                return "course_not_found";
             }
+        }
+        return "failed";
+    }
 
-        } catch (HttpClientErrorException.NotFound e) {
-            log.error("课程不存在: {}", courseId);
-            throw new IllegalArgumentException("Course not found: " + courseId);
-        } catch (IllegalStateException | IllegalArgumentException e) {
+    /**
+     * 等待所有任务完成；任一任务失败时立即抛出其原始异常，不等待其余任务
+     */
+    private static void awaitAll(CompletableFuture<?>... futures) {
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures);
+        for (CompletableFuture<?> future : futures) {
+            future.whenComplete((result, error) -> {
+                if (error != null) {
+                    all.completeExceptionally(error);
+                }
+            });
+        }
+        try {
+            all.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
             throw e;
-        } catch (Exception e) {
-            log.error("验证课程时出错: {}", e.getMessage(), e);
-            throw new RuntimeException("Error verifying course with catalog-service: " + e.getMessage());
         }
+    }
 
-        // 3. Create enrollment record
-        EnrollmentRecord record = new EnrollmentRecord(courseId, studentId);
-        EnrollmentRecord saved = repository.save(record);
+    /**
+     * 校验学生（本地缓存命中时不发起远程调用），学生不存在时以 IllegalArgumentException 结束
+     */
+    private Mono<Void> verifyStudent(String studentId) {
+        if (studentLookupCache.isKnown(studentId)) {
+            return Mono.empty();
+        }
+        log.debug("调用 user-service 验证学生: studentId={}", studentId);
+        return userServiceClient.findByStudentId(studentId)
+                .switchIfEmpty(Mono.error(() -> {
+                    log.error("学生不存在: {}", studentId);
+                    return new IllegalArgumentException("Student not found: " + studentId);
+                }))
+                .doOnNext(response -> {
+                    log.debug("学生验证成功，响应来自端口: {}", response.port());  // ✅ 日志显示负载均衡
+                    studentLookupCache.markKnown(studentId);
+                })
+                .onErrorMap(e -> !(e instanceof IllegalArgumentException || e instanceof ServiceUnavailableException), e -> {
+                    log.error("验证学生时出错: {}", e.getMessage(), e);
+                    return new RuntimeException("Error verifying student with user-service: " + e.getMessage(), e);
+                })
+                .then();
+    }
 
-        log.info("选课成功: studentId={}, courseId={}, enrollmentId={}", studentId, courseId, saved.getId());
+    private Set<String> findMissingStudents(Collection<String> studentIds) {
+        Set<String> missing = new HashSet<>();
+        List<String> ids = studentIds.stream()
+                .filter(studentId -> !studentLookupCache.isKnown(studentId))
+                .toList();
+        for (int i = 0; i < ids.size(); i += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(i, Math.min(i + LOOKUP_CHUNK_SIZE, ids.size()));
+            try {
+                Set<String> chunkMissing = new HashSet<>(userServiceClient.findMissingStudentIdsBlocking(chunk));
+                for (String studentId : chunk) {
+                    if (!chunkMissing.contains(studentId)) {
+                        studentLookupCache.markKnown(studentId);
+                    }
+                }
+                missing.addAll(chunkMissing);
+            } catch (ServiceUnavailableException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("批量验证学生时出错: {}", e.getMessage(), e);
+                throw new RuntimeException("Error verifying students with user-service: " + e.getMessage());
+            }
+        }
+        return missing;
+    }
 
-        return saved;
+    private Set<EnrollmentKey> findExistingPairs(Collection<String> studentIds, Collection<String> courseIds) {
+        Set<EnrollmentKey> existing = new HashSet<>();
+        if (enrollmentIndex.isLoaded()) {
+            Set<String> candidates = new HashSet<>(courseIds);
+            for (String studentId : studentIds) {
+                for (String courseId : enrollmentIndex.coursesOf(studentId)) {
+                    if (candidates.contains(courseId)) {
+                        existing.add(new EnrollmentKey(courseId, studentId));
+                    }
+                }
+            }
+            return existing;
+        }
+        List<String> students = new ArrayList<>(studentIds);
+        List<String> courses = new ArrayList<>(courseIds);
+        for (int i = 0; i < students.size(); i += QUERY_CHUNK_SIZE) {
+            List<String> studentChunk = students.subList(i, Math.min(i + QUERY_CHUNK_SIZE, students.size()));
+            for (int j = 0; j < courses.size(); j += QUERY_CHUNK_SIZE) {
+                List<String> courseChunk = courses.subList(j, Math.min(j + QUERY_CHUNK_SIZE, courses.size()));
+                for (Object[] row : repository.findPairs(studentChunk, courseChunk)) {
+                    existing.add(new EnrollmentKey((String) row[0], (String) row[1]));
+                }
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * 批量选课：indexes 中与学生已选课程（heldByStudent，按需从选课索引加载）上课时间冲突的记录标记为
+     * SCHEDULE_CONFLICT，返回其余记录（保持顺序）。没有已选课程的学生不发起请求，其余学生的检查并发执行；
+     * 课程不存在时以 IllegalArgumentException 结束
+     */
+    private List<Integer> withoutConflicts(String courseId, List<Integer> indexes, List<EnrollmentKey> pairs,
+                                           Map<String, List<String>> heldByStudent,
+                                           BatchEnrollmentStatus[] statuses) {
+        List<Integer> toCheck = new ArrayList<>();
+        for (int index : indexes) {
+            List<String> held = heldByStudent.computeIfAbsent(pairs.get(index).studentId(),
+                    studentId -> new ArrayList<>(studentCourses(studentId)));
+            if (!held.isEmpty()) {
+                toCheck.add(index);
+            }
+        }
+        if (toCheck.isEmpty()) {
+            return indexes;
+        }
+        Set<Integer> conflicting = new HashSet<>(Flux.fromIterable(toCheck)
+                .flatMap(index -> catalogServiceClient.findScheduleConflicts(courseId,
+                                        List.copyOf(heldByStudent.get(pairs.get(index).studentId())))
+                                .filter(conflicts -> !conflicts.isEmpty())
+                                .map(conflicts -> index),
+                        CONFLICT_CHECK_CONCURRENCY)
+                .collectList()
+                .block());
+        if (conflicting.isEmpty()) {
+            return indexes;
+        }
+        log.info("批量选课上课时间冲突: courseId={}, {} 条", courseId, conflicting.size());
+        List<Integer> remaining = new ArrayList<>(indexes.size() - conflicting.size());
+        for (int index : indexes) {
+            if (conflicting.contains(index)) {
+                statuses[index] = BatchEnrollmentStatus.SCHEDULE_CONFLICT;
+            } else {
+                remaining.add(index);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * 学生已选课程中与课程 courseId 上课时间冲突的课程 ID（不预占座位）
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<String> conflicts(String studentId, String courseId) {
+        List<String> held = studentCourses(studentId);
+        return catalogServiceClient.findScheduleConflicts(courseId, held).block();
+    }
+
+    /**
+     * 以幂等 key 原子预占座位，结果为实际预占的座位数（0 表示课程已满）；课程不存在时以 IllegalArgumentException 结束，
+     * 与已选课程 heldCourseIds 上课时间冲突时以 IllegalStateException 结束。其他异常（超时、熔断等）表示结果未知，
+     * 调用方须以同一 key 撤销
+     */
+    private Mono<Integer> reserveSeats(String courseId, int count, List<String> heldCourseIds, String key) {
+        log.debug("调用 catalog-service 预占座位: courseId={}, count={}, key={}", courseId, count, key);
+        return catalogServiceClient.reserveSeats(courseId, count, heldCourseIds, key)
+                .map(response -> {
+                    if (response.conflicts() != null && !response.conflicts().isEmpty()) {
+                        log.warn("上课时间冲突: courseId={}, conflicts={}", courseId, response.conflicts());
+                        throw new IllegalStateException(SCHEDULE_CONFLICT + String.join(", ", response.conflicts()));
+                    }
+                    if (response.seats() == 0) {
+                        log.warn("课程已满: courseId={}", courseId);
+                    } else {
+                        log.debug("座位预占成功，响应来自端口: {}", response.port());  // ✅ 日志显示负载均衡
+                    }
+                    return response.seats();
+                })
+                // 空响应体无法确认预占了多少座位，按下游不可用处理，不能当作全部预占成功
+                .switchIfEmpty(Mono.error(() -> {
+                    log.error("预占座位响应为空: courseId={}", courseId);
+                    return new ServiceUnavailableException("Empty seat reservation response from catalog-service");
+                }))
+                .doOnError(IllegalArgumentException.class, e -> log.error("课程不存在: {}", courseId))
+                .onErrorMap(e -> !(e instanceof IllegalArgumentException || e instanceof IllegalStateException
+                        || e instanceof ServiceUnavailableException), e -> {
+                    log.error("预占座位时出错: {}", e.getMessage(), e);
+                    return new RuntimeException("Error reserving seat with catalog-service: " + e.getMessage(), e);
+                });
+    }
+
+    /**
+     * 每次预占一个新 key（学号 / 批次 + 课程 + 随机后缀）：同一学生退课后重新选课不会命中之前的幂等记录
+     */
+    private static String seatKey(String owner, String courseId) {
+        return owner + ":" + courseId + ":" + UUID.randomUUID();
+    }
+
+    /**
+     * 预占以异常结束时，除课程不存在 / 时间冲突 / 已选该课程等业务结果外，catalog-service 可能已经预占成功
+     */
+    private static boolean outcomeUnknown(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return !(cause instanceof IllegalArgumentException || cause instanceof IllegalStateException);
+    }
+
+    // 归还异步执行并由 SeatReleases 失败重试，不覆盖原始异常；同时唤醒该课程的后台递补
+    private void cancelReservation(String courseId, String seatKey) {
+        waitlist.wake(courseId);
+        seatReleases.cancel(courseId, seatKey);
+    }
+
+    private void releaseSeats(String courseId, int count, String key) {
+        waitlist.wake(courseId);
+        seatReleases.release(courseId, count, key);
     }
 
     @Transactional(readOnly = true)
@@ -113,9 +834,53 @@ public class EnrollmentService {
         return repository.findByStudentId(studentId);
     }
 
+    /**
+     * 学生已选的课程 ID（选课索引已加载时不访问数据库）
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<String> studentCourses(String studentId) {
+        return enrollmentIndex.isLoaded()
+                ? enrollmentIndex.coursesOf(studentId)
+                : repository.findCourseIdsByStudentId(studentId);
+    }
+
+    /**
+     * 选了该课程的学号（选课索引已加载时不访问数据库）
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<String> courseStudents(String courseId) {
+        return enrollmentIndex.isLoaded()
+                ? enrollmentIndex.studentsOf(courseId)
+                : repository.findStudentIdsByCourseId(courseId);
+    }
+
     @Transactional(readOnly = true)
     public List<EnrollmentRecord> listAll() {
         log.debug("查询所有选课记录");
         return repository.findAll();
     }
+
+    /**
+     * 键集分页获取选课记录，after 为上一页最后一条的 ID（首页传 null）
+     */
+    @Transactional(readOnly = true)
+    public List<EnrollmentRecord> listPage(String after, int limit) {
+        log.debug("分页查询选课记录: after={}, limit={}", after, limit);
+        return after == null
+                ? repository.findFirstPage(Limit.of(limit))
+                : repository.findPageAfter(after, Limit.of(limit));
+    }
+
+    /**
+     * 逐行遍历所有选课记录，处理完即从持久化上下文中移除，内存占用与总行数无关
+     */
+    @Transactional(readOnly = true)
+    public void forEachEnrollment(Consumer<EnrollmentRecord> action) {
+        try (Stream<EnrollmentRecord> records = repository.streamAll()) {
+            records.forEach(record -> {
+                action.accept(record);
+                entityManager.detach(record);
+            });
+        }
+    }
 }
@@ -0,0 +1,144 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import com.zjgsu.ljy.coursecloud.enrollment.client.CatalogServiceClient;
+import com.zjgsu.ljy.coursecloud.enrollment.client.SeatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 座位归还：退课释放座位与选课失败后撤销预占都经此发送到 catalog-service。
+ * 调用不经过熔断器与舱壁（熔断打开时补偿也必须送达），失败后按指数退避重试；每次操作带幂等 key，
+ * 超时后重试不会重复归还。超过 max-age 仍未成功的放弃并记录错误日志（catalog-service 的幂等记录保留更久）。
+ * 待重试的操作只保存在内存中，实例重启时丢失
+ */
+@Component
+public class SeatReleases {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatReleases.class);
+
+    private final CatalogServiceClient catalogServiceClient;
+    private final DelayQueue<PendingRelease> retries = new DelayQueue<>();
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long maxAgeMs;
+    private final Counter abandoned;
+
+    public SeatReleases(CatalogServiceClient catalogServiceClient, MeterRegistry meterRegistry,
+                        @Value("${enrollment.seat-release.initial-backoff-ms:500}") long initialBackoffMs,
+                        @Value("${enrollment.seat-release.max-backoff-ms:30000}") long maxBackoffMs,
+                        @Value("${enrollment.seat-release.max-age:1h}") Duration maxAge) {
+        this.catalogServiceClient = catalogServiceClient;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.maxAgeMs = maxAge.toMillis();
+        Gauge.builder("enrollment.seat_release.pending", retries, DelayQueue::size)
+                .description("等待重试的座位归还")
+                .register(meterRegistry);
+        this.abandoned = Counter.builder("enrollment.seat_release.abandoned")
+                .description("超过重试期限仍未送达、已放弃的座位归还")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 释放 count 个座位（退课），key 标识本次释放
+     */
+    public void release(String courseId, int count, String key) {
+        send(new PendingRelease(courseId, count, key, false));
+    }
+
+    /**
+     * 撤销以 key 执行的预占；预占已成功、未执行或结果未知时都可调用
+     */
+    public void cancel(String courseId, String key) {
+        send(new PendingRelease(courseId, 0, key, true));
+    }
+
+    /**
+     * 重发到期的失败操作
+     */
+    @Scheduled(fixedDelayString = "${enrollment.seat-release.retry-interval-ms:500}")
+    public void retryDue() {
+        // 先取出本轮到期的操作再发送：同步失败的操作重新入队后留到下一轮
+        List<PendingRelease> due = new ArrayList<>();
+        retries.drainTo(due);
+        due.forEach(this::send);
+    }
+
+    /**
+     * 等待重试的操作数
+     */
+    public int pending() {
+        return retries.size();
+    }
+
+    private void send(PendingRelease release) {
+        Mono<SeatResponse> call = release.cancel
+                ? catalogServiceClient.cancelReservation(release.courseId, release.key)
+                : catalogServiceClient.releaseSeats(release.courseId, release.count, release.key);
+        // 异步执行，失败只排队重试，不覆盖调用方的原始异常
+        call.contextCapture()
+                .subscribe(response -> log.debug("归还座位: courseId={}, seats={}, key={}",
+                                release.courseId, response.seats(), release.key),
+                        e -> retryLater(release, e));
+    }
+
+    private void retryLater(PendingRelease release, Throwable error) {
+        if (error instanceof IllegalArgumentException) {
+            log.warn("课程已不存在，不再归还座位: courseId={}, key={}", release.courseId, release.key);
+            return;
+        }
+        if (System.currentTimeMillis() - release.createdAt >= maxAgeMs) {
+            abandoned.increment();
+            log.error("归还座位超过重试期限，已放弃: courseId={}, count={}, key={}, error={}",
+                    release.courseId, release.count, release.key, error.getMessage());
+            return;
+        }
+        long backoffMs = Math.min(maxBackoffMs, initialBackoffMs << Math.min(release.attempts, 20));
+        release.attempts++;
+        release.dueAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+        log.warn("归还座位失败，{} ms 后重试: courseId={}, key={}, attempts={}, error={}",
+                backoffMs, release.courseId, release.key, release.attempts, error.getMessage());
+        retries.add(release);
+    }
+
+    private static final class PendingRelease implements Delayed {
+        private final String courseId;
+        private final int count;  // 撤销预占时不使用
+        private final String key;
+        private final boolean cancel;
+        private final long createdAt = System.currentTimeMillis();
+        private int attempts;
+        private long dueAt;  // System.nanoTime()
+
+        private PendingRelease(String courseId, int count, String key, boolean cancel) {
+            this.courseId = courseId;
+            this.count = count;
+            this.key = key;
+            this.cancel = cancel;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((PendingRelease) other).dueAt);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按学号分段的互斥锁：同一学生的"查询已选课程 → 上课时间冲突检查 → 写入选课记录"串行执行，
+ * 否则同一学生的两个并发选课都以对方写入前的已选课程做检查，可能同时选上两门冲突的课程。
+ *
+ * 学号按哈希映射到固定数量的分段锁，不同学生只在哈希碰撞时互相等待；
+ * 使用 ReentrantLock 以免虚拟线程持锁等待下游时钉住载体线程。
+ * 只在本实例内互斥，多实例部署时跨实例的并发窗口由选课索引的失效通知缩小，但不能完全消除。
+ */
+@Component
+public class StudentLocks {
+
+    private final ReentrantLock[] stripes;
+
+    public StudentLocks(@Value("${enrollment.student-locks.stripes:1024}") int stripes) {
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 学生 studentId 的锁，调用方自行 lock / unlock
+     */
+    public ReentrantLock of(String studentId) {
+        return stripes[stripe(studentId)];
+    }
+
+    /**
+     * 依次获取全部学生的锁（批量选课）；按分段下标升序加锁，多个批量请求之间不会死锁
+     *
+     * @return 已获取的锁，交给 unlockAll 释放
+     */
+    public List<ReentrantLock> lockAll(Collection<String> studentIds) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String studentId : studentIds) {
+            indexes.add(stripe(studentId));
+        }
+        List<ReentrantLock> locked = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            stripes[index].lock();
+            locked.add(stripes[index]);
+        }
+        return locked;
+    }
+
+    public void unlockAll(List<ReentrantLock> locked) {
+        for (int i = locked.size() - 1; i >= 0; i--) {
+            locked.get(i).unlock();
+        }
+    }
+
+    private int stripe(String studentId) {
+        return Math.floorMod(studentId.hashCode(), stripes.length);
+    }
+}
@@ -0,0 +1,59 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * 学生存在性本地缓存：选课窗口内学生几乎不会被删除，命中时跳过对 user-service 的远程校验。
+ *
+ * 只缓存"学生存在"这一事实，不缓存不存在的结果，避免新建学生后仍被拒绝；
+ * 学生被修改或删除时 user-service 推送失效通知（类型 student，键为学号），立即移出缓存。
+ * 课程容量始终以 catalog-service 的原子预占为准，不进入缓存。
+ */
+@Component
+public class StudentLookupCache implements InvalidationListener {
+
+    private final Cache<String, Boolean> knownStudents;
+
+    public StudentLookupCache(MeterRegistry meterRegistry,
+                              @Value("${enrollment.cache.student.max-size:100000}") long maxSize,
+                              @Value("${enrollment.cache.student.ttl:10m}") Duration ttl) {
+        this.knownStudents = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // 暴露 cache.gets{result=hit|miss} / cache.evictions 等指标
+        CaffeineCacheMetrics.monitor(meterRegistry, knownStudents, "enrollment.students");
+    }
+
+    public boolean isKnown(String studentId) {
+        return knownStudents.getIfPresent(studentId) != null;
+    }
+
+    public void markKnown(String studentId) {
+        knownStudents.put(studentId, Boolean.TRUE);
+    }
+
+    public void evict(String studentId) {
+        knownStudents.invalidate(studentId);
+    }
+
+    @Override
+    public String type() {
+        return "student";
+    }
+
+    @Override
+    public void invalidate(Collection<String> studentIds) {
+        knownStudents.invalidateAll(studentIds);
+    }
+}
@@ -0,0 +1,535 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationListener;
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationPublisher;
+import com.zjgsu.ljy.coursecloud.enrollment.model.WaitlistEntry;
+import com.zjgsu.ljy.coursecloud.enrollment.repository.WaitlistRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 课程候补队列：持久化在 waitlist 表（自增 id 即排队顺序），内存中每门课程一个按 id 有序的队列。
+ * <ul>
+ *     <li>加入、退出、递补各一次数据库写入；查询与出队只读内存</li>
+ *     <li>内存队列用 Fenwick 树（树状数组）记录每个槽位是否仍在队，排队位置即前缀和，O(log n)；
+ *     退出只把槽位置空，队首指针跳过空槽，槽位用尽时整体压缩</li>
+ *     <li>递补（claim）在一个事务内条件删除队首条目并写入选课记录，多实例并发递补同一条目时只有一个成功</li>
+ *     <li>课程已满时按指数退避推迟下一次后台递补，本实例归还座位时立即唤醒</li>
+ *     <li>跨实例：写入后通过 InvalidationPublisher 通知其他副本，收到通知的副本从数据库重新读取这些课程的队列</li>
+ * </ul>
+ * 关闭（enrollment.waitlist.enabled=false）时不加载、不接受加入。
+ */
+@Component
+public class Waitlist implements InvalidationListener, SmartInitializingSingleton {
+
+    public static final String INVALIDATION_TYPE = "waitlist";
+
+    private static final Logger log = LoggerFactory.getLogger(Waitlist.class);
+
+    private final WaitlistRepository repository;
+    private final InvalidationPublisher invalidationPublisher;
+    private final TransactionTemplate insertTransaction;
+    private final boolean enabled;
+    private final long minBackoffMs;
+    private final long maxBackoffMs;
+
+    private final ConcurrentHashMap<String, CourseQueue> queues = new ConcurrentHashMap<>();
+
+    public Waitlist(WaitlistRepository repository, InvalidationPublisher invalidationPublisher,
+                    PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                    @Value("${enrollment.waitlist.enabled:true}") boolean enabled,
+                    @Value("${enrollment.waitlist.admit-interval-ms:1000}") long minBackoffMs,
+                    @Value("${enrollment.waitlist.max-backoff-ms:30000}") long maxBackoffMs) {
+        this.repository = repository;
+        this.invalidationPublisher = invalidationPublisher;
+        this.insertTransaction = new TransactionTemplate(transactionManager);
+        this.insertTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.minBackoffMs = minBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        Gauge.builder("enrollment.waitlist.size", this, Waitlist::size)
+                .description("所有课程候补队列中的学生数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动时按 (course_id, id) 顺序全量加载
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Map<String, List<WaitlistEntry>> byCourse = new LinkedHashMap<>();
+            for (WaitlistEntry entry : repository.findAllInOrder()) {
+                byCourse.computeIfAbsent(entry.getCourseId(), id -> new ArrayList<>()).add(entry);
+            }
+            byCourse.forEach((courseId, entries) -> queue(courseId).reset(entries));
+            log.info("候补队列加载完成: {} 门课程, {} 名学生", byCourse.size(), size());
+        } catch (RuntimeException e) {
+            log.warn("候补队列加载失败: {}", e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 加入候补队列，已在队列中时保持原位置。写入在独立事务中提交：调用方随后以 WaitlistedException 结束时不回滚排队；
+     * 其他实例并发写入同一学生时唯一约束冲突只回滚该独立事务，不会把调用方事务标记为只能回滚
+     *
+     * @return 排队位置（从 1 开始）
+     */
+    public int join(String courseId, String studentId) {
+        if (!enabled) {
+            throw new IllegalStateException("Waitlist is disabled");
+        }
+        CourseQueue queue = queue(courseId);
+        queue.lock.lock();
+        try {
+            int position = queue.position(studentId);
+            if (position > 0) {
+                return position;
+            }
+            // 同一课程的加入串行执行，内存队列按 id 升序追加
+            if (repository.existsByCourseIdAndStudentId(courseId, studentId)) {
+                // 其他实例已写入，本实例尚未收到通知
+                queue.reset(repository.findByCourseIdInOrder(courseId));
+                return queue.position(studentId);
+            }
+            try {
+                WaitlistEntry saved = insertTransaction.execute(status -> {
+                    WaitlistEntry entry = repository.saveAndFlush(new WaitlistEntry(courseId, studentId));
+                    // 随写入事务提交后发送
+                    invalidationPublisher.publish(INVALIDATION_TYPE, courseId);
+                    return entry;
+                });
+                if (!queue.append(saved.getId(), studentId)) {
+                    queue.reset(repository.findByCourseIdInOrder(courseId));
+                }
+            } catch (DataIntegrityViolationException e) {
+                // 检查之后其他实例抢先写入
+                queue.reset(repository.findByCourseIdInOrder(courseId));
+            }
+            return queue.position(studentId);
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * 退出候补队列
+     *
+     * @return 学生是否在队列中
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean leave(String courseId, String studentId) {
+        if (!enabled) {
+            return false;
+        }
+        boolean removed = repository.deleteByCourseIdAndStudentId(courseId, studentId) > 0;
+        CourseQueue queue = queues.get(courseId);
+        if (queue != null) {
+            queue.lock.lock();
+            try {
+                queue.remove(studentId, -1);
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+        if (removed) {
+            invalidationPublisher.publish(INVALIDATION_TYPE, courseId);
+        }
+        return removed;
+    }
+
+    /**
+     * 排队位置（从 1 开始），不在队列中时返回 0
+     */
+    public int position(String courseId, String studentId) {
+        CourseQueue queue = queues.get(courseId);
+        if (queue == null) {
+            return 0;
+        }
+        queue.lock.lock();
+        try {
+            return queue.position(studentId);
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    public boolean hasWaiting(String courseId) {
+        CourseQueue queue = queues.get(courseId);
+        if (queue == null) {
+            return false;
+        }
+        queue.lock.lock();
+        try {
+            return queue.size() > 0;
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * 队首条目（不出队），队列为空时返回 null
+     */
+    public WaitlistEntry peek(String courseId) {
+        CourseQueue queue = queues.get(courseId);
+        if (queue == null) {
+            return null;
+        }
+        queue.lock.lock();
+        try {
+            int slot = queue.head();
+            return slot >= 0 ? new WaitlistEntry(queue.ids[slot], courseId, queue.students[slot]) : null;
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * 递补：条件删除条目并在同一事务内执行 admission（写入选课记录），提交后移出内存队列。
+     * 条目已被其他实例递补或学生已退出时不执行 admission，返回 null；admission 抛出异常时整体回滚，条目保留
+     */
+    @Transactional
+    public <T> T claim(WaitlistEntry entry, Supplier<T> admission) {
+        if (repository.deleteByIdIfPresent(entry.getId()) == 0) {
+            discard(entry);
+            return null;
+        }
+        T result = admission.get();
+        afterCommit(() -> discard(entry));
+        invalidationPublisher.publish(INVALIDATION_TYPE, entry.getCourseId());
+        return result;
+    }
+
+    /**
+     * 移除无法递补的条目（已选该课程、上课时间冲突）
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean drop(WaitlistEntry entry) {
+        boolean removed = repository.deleteByIdIfPresent(entry.getId()) > 0;
+        discard(entry);
+        if (removed) {
+            invalidationPublisher.publish(INVALIDATION_TYPE, entry.getCourseId());
+        }
+        return removed;
+    }
+
+    /**
+     * 清空课程的候补队列（课程已删除）
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void clear(String courseId) {
+        repository.deleteByCourseId(courseId);
+        CourseQueue queue = queues.get(courseId);
+        if (queue != null) {
+            queue.lock.lock();
+            try {
+                queue.reset(List.of());
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+        invalidationPublisher.publish(INVALIDATION_TYPE, courseId);
+    }
+
+    /**
+     * 按排队顺序列出学号
+     */
+    public List<String> list(String courseId) {
+        CourseQueue queue = queues.get(courseId);
+        if (queue == null) {
+            return List.of();
+        }
+        queue.lock.lock();
+        try {
+            return queue.list();
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    // ==================== 后台递补调度 ====================
+
+    /**
+     * 队列非空且不在退避期内的课程
+     */
+    public List<String> dueCourses() {
+        long now = System.currentTimeMillis();
+        List<String> due = new ArrayList<>();
+        queues.forEach((courseId, queue) -> {
+            queue.lock.lock();
+            try {
+                if (queue.size() > 0 && queue.retryAt <= now) {
+                    due.add(courseId);
+                }
+            } finally {
+                queue.lock.unlock();
+            }
+        });
+        return due;
+    }
+
+    /**
+     * 课程已满：推迟下一次递补尝试，间隔从 admit-interval-ms 起倍增至 max-backoff-ms
+     */
+    public void backoff(String courseId) {
+        CourseQueue queue = queues.get(courseId);
+        if (queue != null) {
+            queue.lock.lock();
+            try {
+                queue.backoffMs = queue.backoffMs == 0 ? minBackoffMs : Math.min(queue.backoffMs * 2, maxBackoffMs);
+                queue.retryAt = System.currentTimeMillis() + queue.backoffMs;
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 课程有座位释放：下一轮立即尝试递补
+     */
+    public void wake(String courseId) {
+        CourseQueue queue = queues.get(courseId);
+        if (queue != null) {
+            queue.lock.lock();
+            try {
+                queue.backoffMs = 0;
+                queue.retryAt = 0;
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (CourseQueue queue : queues.values()) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String type() {
+        return INVALIDATION_TYPE;
+    }
+
+    /**
+     * 其他实例修改了这些课程的候补队列：从数据库重新读取并替换（不再向外广播）
+     */
+    @Override
+    public void invalidate(Collection<String> courseIds) {
+        if (!enabled) {
+            return;
+        }
+        for (String courseId : courseIds) {
+            List<WaitlistEntry> entries = repository.findByCourseIdInOrder(courseId);
+            CourseQueue queue = queue(courseId);
+            queue.lock.lock();
+            try {
+                queue.reset(entries);
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+    }
+
+    private CourseQueue queue(String courseId) {
+        return queues.computeIfAbsent(courseId, id -> new CourseQueue());
+    }
+
+    private void discard(WaitlistEntry entry) {
+        CourseQueue queue = queues.get(entry.getCourseId());
+        if (queue != null) {
+            queue.lock.lock();
+            try {
+                queue.remove(entry.getStudentId(), entry.getId());
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 单门课程的内存队列，槽位 [head, tail) 按 id 升序，students[slot] 为 null 表示已出队。
+     * 方法须持有 lock；使用 ReentrantLock 而非 synchronized：虚拟线程在持锁执行 JDBC 时不会钉住载体线程
+     */
+    private static final class CourseQueue {
+
+        private static final int MIN_CAPACITY = 16;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Integer> slots = new HashMap<>();
+        private long[] ids = new long[MIN_CAPACITY];
+        private String[] students = new String[MIN_CAPACITY];
+        private int[] tree = new int[MIN_CAPACITY + 1];  // Fenwick 树，下标从 1 开始，叶子为槽位是否在队
+        private int head;
+        private int tail;
+
+        private long retryAt;
+        private long backoffMs;
+
+        int size() {
+            return slots.size();
+        }
+
+        int head() {
+            return head < tail ? head : -1;
+        }
+
+        int position(String studentId) {
+            Integer slot = slots.get(studentId);
+            return slot != null ? prefix(slot) : 0;
+        }
+
+        /**
+         * 追加到队尾；id 小于队尾条目（其他实例的写入已先行加载）时不追加，返回 false
+         */
+        boolean append(long id, String studentId) {
+            if (tail > 0 && id < ids[tail - 1]) {
+                return false;
+            }
+            if (tail == ids.length) {
+                compact();
+            }
+            ids[tail] = id;
+            students[tail] = studentId;
+            slots.put(studentId, tail);
+            add(tail, 1);
+            tail++;
+            return true;
+        }
+
+        /**
+         * 移除学生的条目；id 为 -1 时不校验条目 id
+         */
+        boolean remove(String studentId, long id) {
+            Integer slot = slots.get(studentId);
+            if (slot == null || (id >= 0 && ids[slot] != id)) {
+                return false;
+            }
+            slots.remove(studentId);
+            students[slot] = null;
+            add(slot, -1);
+            while (head < tail && students[head] == null) {
+                head++;
+            }
+            return true;
+        }
+
+        List<String> list() {
+            List<String> studentIds = new ArrayList<>(slots.size());
+            for (int slot = head; slot < tail; slot++) {
+                if (students[slot] != null) {
+                    studentIds.add(students[slot]);
+                }
+            }
+            return studentIds;
+        }
+
+        void reset(List<WaitlistEntry> entries) {
+            int capacity = Math.max(MIN_CAPACITY, entries.size() * 2);
+            long[] newIds = new long[capacity];
+            String[] newStudents = new String[capacity];
+            for (int i = 0; i < entries.size(); i++) {
+                newIds[i] = entries.get(i).getId();
+                newStudents[i] = entries.get(i).getStudentId();
+            }
+            rebuild(newIds, newStudents, entries.size());
+        }
+
+        // 槽位用尽：只保留在队条目，容量为在队数的两倍
+        private void compact() {
+            int live = slots.size();
+            int capacity = Math.max(MIN_CAPACITY, live * 2);
+            long[] newIds = new long[capacity];
+            String[] newStudents = new String[capacity];
+            int count = 0;
+            for (int slot = head; slot < tail; slot++) {
+                if (students[slot] != null) {
+                    newIds[count] = ids[slot];
+                    newStudents[count] = students[slot];
+                    count++;
+                }
+            }
+            rebuild(newIds, newStudents, count);
+        }
+
+        // O(n) 建树：每个节点把自己的和加到父节点
+        private void rebuild(long[] newIds, String[] newStudents, int count) {
+            ids = newIds;
+            students = newStudents;
+            tree = new int[newIds.length + 1];
+            slots.clear();
+            for (int slot = 0; slot < count; slot++) {
+                slots.put(newStudents[slot], slot);
+            }
+            for (int node = 1; node < tree.length; node++) {
+                tree[node] += node <= count ? 1 : 0;
+                int parent = node + (node & -node);
+                if (parent < tree.length) {
+                    tree[parent] += tree[node];
+                }
+            }
+            head = 0;
+            tail = count;
+        }
+
+        private void add(int slot, int delta) {
+            for (int node = slot + 1; node < tree.length; node += node & -node) {
+                tree[node] += delta;
+            }
+        }
+
+        // 槽位 [0, slot] 中在队的条目数
+        private int prefix(int slot) {
+            int sum = 0;
+            for (int node = slot + 1; node > 0; node -= node & -node) {
+                sum += tree[node];
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 候补后台递补：定期处理队列非空且不在退避期内的课程，有空位时按排队顺序入课。
+ * 各实例都会运行；同一条目由 Waitlist.claim 的条件删除保证只递补一次，抢占失败的实例归还座位
+ */
+@Component
+public class WaitlistAdmitter {
+
+    private static final Logger log = LoggerFactory.getLogger(WaitlistAdmitter.class);
+
+    private final Waitlist waitlist;
+    private final EnrollmentService enrollmentService;
+
+    public WaitlistAdmitter(Waitlist waitlist, EnrollmentService enrollmentService) {
+        this.waitlist = waitlist;
+        this.enrollmentService = enrollmentService;
+    }
+
+    @Scheduled(fixedDelayString = "${enrollment.waitlist.admit-interval-ms:1000}")
+    public void admit() {
+        if (!waitlist.isEnabled()) {
+            return;
+        }
+        for (String courseId : waitlist.dueCourses()) {
+            try {
+                enrollmentService.admitWaitlisted(courseId);
+            } catch (RuntimeException e) {
+                // 下游不可用等：条目留在队首，下一轮重试
+                log.warn("候补递补中断: courseId={}, error={}", courseId, e.getMessage());
+            }
+        }
+    }
+}
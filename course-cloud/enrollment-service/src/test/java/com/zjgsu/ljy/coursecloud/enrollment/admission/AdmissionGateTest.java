@@ -0,0 +1,138 @@
+package com.zjgsu.ljy.coursecloud.enrollment.admission;
+
+import com.zjgsu.ljy.coursecloud.enrollment.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionGateTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    // 被放行的请求按放行顺序记录，持有的许可由测试逐个关闭
+    private final List<String> admitted = new CopyOnWriteArrayList<>();
+    private final List<AdmissionGate.Permit> permits = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void waitersAreAdmittedInArrivalOrderAcrossCourses() throws Exception {
+        AdmissionGate gate = gate(1, 1, 10, Duration.ofSeconds(10));
+        AdmissionGate.Permit holder = gate.acquire("a");
+
+        enqueue(gate, "b", "b1");
+        enqueue(gate, "c", "c1");
+        enqueue(gate, "b", "b2");
+        enqueue(gate, "a", "a2");
+
+        holder.close();
+        for (int i = 1; i <= 4; i++) {
+            awaitAdmitted(i);
+            permits.get(i - 1).close();
+        }
+
+        assertThat(admitted).containsExactly("b1", "c1", "b2", "a2");
+        assertThat(gate.queueDepth()).isZero();
+        assertThat(gate.inFlight()).isZero();
+    }
+
+    @Test
+    void fullCourseHeadIsSkippedForOtherCourses() throws Exception {
+        AdmissionGate gate = gate(2, 1, 10, Duration.ofSeconds(10));
+        AdmissionGate.Permit hot = gate.acquire("hot");
+        AdmissionGate.Permit other = gate.acquire("other");
+
+        enqueue(gate, "hot", "hot2");
+        enqueue(gate, "hot", "hot3");
+        enqueue(gate, "cold", "cold1");
+
+        // 全局预算空出一个，hot 的课程预算仍满：越过 hot 队首放行 cold
+        other.close();
+        awaitAdmitted(1);
+        assertThat(admitted).containsExactly("cold1");
+
+        hot.close();
+        awaitAdmitted(2);
+        assertThat(admitted).containsExactly("cold1", "hot2");
+        assertThat(gate.queueDepth()).isEqualTo(1);
+
+        permits.get(1).close();
+        awaitAdmitted(3);
+        assertThat(admitted).containsExactly("cold1", "hot2", "hot3");
+    }
+
+    @Test
+    void timedOutHeadIsSkippedAndNextWaiterTakesOver() throws Exception {
+        AdmissionGate gate = gate(1, 1, 10, Duration.ofMillis(200));
+        AdmissionGate.Permit holder = gate.acquire("a");
+
+        Future<?> expired = executor.submit(() -> gate.acquire("b"));
+        assertThatThrownBy(() -> expired.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(AdmissionRejectedException.class);
+        assertThat(gate.queueDepth()).isZero();
+
+        enqueue(gate, "b", "b2");
+        holder.close();
+        awaitAdmitted(1);
+
+        assertThat(admitted).containsExactly("b2");
+        assertThat(gate.queueDepth()).isZero();
+        assertThat(gate.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() throws Exception {
+        AdmissionGate gate = gate(1, 1, 1, Duration.ofSeconds(10));
+        AdmissionGate.Permit holder = gate.acquire("a");
+        enqueue(gate, "b", "b1");
+
+        assertThatThrownBy(() -> gate.acquire("c"))
+                .isInstanceOf(AdmissionRejectedException.class)
+                .hasMessageContaining("queue is full");
+
+        holder.close();
+        awaitAdmitted(1);
+        assertThat(admitted).containsExactly("b1");
+    }
+
+    private static AdmissionGate gate(int maxConcurrent, int perCourse, int maxQueue, Duration maxWait) {
+        return new AdmissionGate(new SimpleMeterRegistry(), true, maxConcurrent, perCourse, maxQueue, maxWait);
+    }
+
+    // 在新线程中排队，返回时该请求已进入等待队列，保证到达顺序与调用顺序一致
+    private void enqueue(AdmissionGate gate, String courseId, String name) throws InterruptedException {
+        int depth = gate.queueDepth();
+        executor.submit(() -> {
+            AdmissionGate.Permit permit = gate.acquire(courseId);
+            admitted.add(name);
+            permits.add(permit);
+            return null;
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gate.queueDepth() == depth) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private void awaitAdmitted(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (permits.size() < count) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+}
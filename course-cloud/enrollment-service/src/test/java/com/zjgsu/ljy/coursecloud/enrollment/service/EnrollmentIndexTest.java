@@ -0,0 +1,141 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+class EnrollmentIndexTest {
+
+    private JdbcTemplate database;
+    private EnrollmentIndex index;
+    // 全量加载读到第一行后执行一次，模拟加载期间发生的写入
+    private final AtomicReference<Runnable> duringLoad = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:index-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        database = new JdbcTemplate(dataSource);
+        database.execute("CREATE TABLE enrollments (student_id VARCHAR(64), course_id VARCHAR(64))");
+
+        JdbcTemplate jdbcTemplate = spy(new JdbcTemplate(dataSource));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            database.query(invocation.<PreparedStatementCreator>getArgument(0), (RowCallbackHandler) rs -> {
+                handler.processRow(rs);
+                Runnable action = duringLoad.getAndSet(null);
+                if (action != null) {
+                    action.run();
+                }
+            });
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        index = new EnrollmentIndex(jdbcTemplate, mock(InvalidationPublisher.class), new SimpleMeterRegistry(), true);
+    }
+
+    @Test
+    void collidingIdsAndGrowthKeepEveryLink() {
+        index.afterSingletonsInstantiated();
+        // "Aa" 与 "BB" 的 hashCode 相同，由两者拼接的学号全部落在同一探测链上
+        List<String> colliding = new ArrayList<>();
+        for (int mask = 0; mask < 512; mask++) {
+            StringBuilder id = new StringBuilder();
+            for (int bit = 0; bit < 9; bit++) {
+                id.append((mask >> bit & 1) == 0 ? "Aa" : "BB");
+            }
+            colliding.add(id.toString());
+        }
+        for (String studentId : colliding) {
+            index.added(studentId, "c-" + (studentId.hashCode() & 7));
+            index.added(studentId, "shared");
+        }
+        for (int i = 0; i < 3000; i++) {
+            index.added("s" + i, "c" + i % 50);
+        }
+
+        assertThat(index.size()).isEqualTo(512 * 2 + 3000);
+        for (String studentId : colliding) {
+            assertThat(index.coursesOf(studentId)).containsExactlyInAnyOrder("c-" + (studentId.hashCode() & 7), "shared");
+        }
+        assertThat(index.studentsOf("shared")).hasSize(512);
+        assertThat(index.contains("s42", "c42")).isTrue();
+        assertThat(index.contains("s42", "c43")).isFalse();
+
+        index.removed(colliding.get(7), "shared");
+        index.added("s42", "c42");
+        assertThat(index.studentsOf("shared")).hasSize(511).doesNotContain(colliding.get(7));
+        assertThat(index.size()).isEqualTo(512 * 2 + 3000 - 1);
+        assertThat(index.coursesOf("unknown")).isEmpty();
+    }
+
+    @Test
+    void invalidationDuringInitialLoadIsNotLost() {
+        insert("s1", "c1");
+        insert("s2", "c1");
+        duringLoad.set(() -> {
+            // 其他实例在加载期间为 s1 选了 c2，通知先于加载完成到达
+            insert("s1", "c2");
+            index.invalidate(List.of("s1"));
+        });
+
+        index.afterSingletonsInstantiated();
+
+        assertThat(index.isLoaded()).isTrue();
+        assertThat(index.coursesOf("s1")).containsExactlyInAnyOrder("c1", "c2");
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void localWriteDuringReloadSurvivesSwap() {
+        insert("s1", "c1");
+        insert("s2", "c1");
+        index.afterSingletonsInstantiated();
+
+        duringLoad.set(() -> {
+            // 加载已读到的行在替换前被本实例退课删除
+            database.update("DELETE FROM enrollments WHERE student_id = 's2'");
+            index.removed("s2", "c1");
+        });
+        index.reload();
+
+        assertThat(index.coursesOf("s2")).isEmpty();
+        assertThat(index.studentsOf("c1")).containsExactly("s1");
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void reloadCorrectsDriftFromMissedInvalidations() {
+        insert("s1", "c1");
+        index.afterSingletonsInstantiated();
+        // 其他实例的写入，通知丢失
+        insert("s1", "c2");
+        database.update("DELETE FROM enrollments WHERE course_id = 'c1'");
+        assertThat(index.coursesOf("s1")).containsExactly("c1");
+
+        index.reload();
+
+        assertThat(index.coursesOf("s1")).containsExactly("c2");
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    private void insert(String studentId, String courseId) {
+        database.update("INSERT INTO enrollments (student_id, course_id) VALUES (?, ?)", studentId, courseId);
+    }
+}
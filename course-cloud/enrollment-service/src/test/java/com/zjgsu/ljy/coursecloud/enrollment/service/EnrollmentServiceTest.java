@@ -0,0 +1,226 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationPublisher;
+import com.zjgsu.ljy.coursecloud.enrollment.client.CatalogServiceClient;
+import com.zjgsu.ljy.coursecloud.enrollment.client.SeatResponse;
+import com.zjgsu.ljy.coursecloud.enrollment.client.UserServiceClient;
+import com.zjgsu.ljy.coursecloud.enrollment.model.BatchEnrollmentResult;
+import com.zjgsu.ljy.coursecloud.enrollment.model.BatchEnrollmentStatus;
+import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentKey;
+import com.zjgsu.ljy.coursecloud.enrollment.model.EnrollmentRecord;
+import com.zjgsu.ljy.coursecloud.enrollment.model.WaitlistEntry;
+import com.zjgsu.ljy.coursecloud.enrollment.model.WithdrawResult;
+import com.zjgsu.ljy.coursecloud.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ljy.coursecloud.enrollment.repository.WaitlistRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class EnrollmentServiceTest {
+
+    private UserServiceClient userServiceClient;
+    private CatalogServiceClient catalogServiceClient;
+    private EnrollmentRepository repository;
+    private JdbcTemplate jdbcTemplate;
+    private SeatReleases seatReleases;
+    private Waitlist waitlist;
+    private StudentLocks studentLocks;
+    private EnrollmentService enrollmentService;
+    private final AtomicLong nextWaitlistId = new AtomicLong(1);
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        userServiceClient = mock(UserServiceClient.class);
+        catalogServiceClient = mock(CatalogServiceClient.class);
+        repository = mock(EnrollmentRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        seatReleases = mock(SeatReleases.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+
+        WaitlistRepository waitlistRepository = mock(WaitlistRepository.class);
+        when(waitlistRepository.saveAndFlush(any(WaitlistEntry.class))).thenAnswer(invocation -> {
+            WaitlistEntry entry = invocation.getArgument(0);
+            entry.setId(nextWaitlistId.getAndIncrement());
+            return entry;
+        });
+        when(waitlistRepository.deleteByIdIfPresent(anyLong())).thenReturn(1);
+        waitlist = new Waitlist(waitlistRepository, mock(InvalidationPublisher.class), transactionManager,
+                meterRegistry, true, 1000, 30000);
+
+        studentLocks = new StudentLocks(16);
+        when(catalogServiceClient.findScheduleConflicts(anyString(), any())).thenReturn(Mono.just(List.of()));
+        enrollmentService = new EnrollmentService(userServiceClient, catalogServiceClient, repository, jdbcTemplate,
+                new StudentLookupCache(meterRegistry, 1000, Duration.ofMinutes(10)), Runnable::run, null,
+                new EnrollmentMetrics(meterRegistry), mock(EnrollmentIndex.class), waitlist,
+                new TransactionTemplate(transactionManager), studentLocks, seatReleases);
+    }
+
+    // ==================== 批量选课 ====================
+    @Test
+    void batchSkipsDuplicatesMissingStudentsAndExistingEnrollments() {
+        when(userServiceClient.findMissingStudentIdsBlocking(any())).thenReturn(List.of("s3"));
+        when(repository.findPairs(any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{"c2", "s1"}))
+                .thenReturn(List.of());
+        grant("c1", 2);
+
+        List<BatchEnrollmentResult> results = enrollmentService.enrollBatch(List.of(
+                new EnrollmentKey("c1", "s1"), new EnrollmentKey("c1", "s1"), new EnrollmentKey("c1", "s2"),
+                new EnrollmentKey("c1", "s3"), new EnrollmentKey("c2", "s1")));
+
+        assertThat(results).extracting(BatchEnrollmentResult::status).containsExactly(
+                BatchEnrollmentStatus.ENROLLED, BatchEnrollmentStatus.DUPLICATE_IN_REQUEST,
+                BatchEnrollmentStatus.ENROLLED, BatchEnrollmentStatus.STUDENT_NOT_FOUND,
+                BatchEnrollmentStatus.ALREADY_ENROLLED);
+        verify(catalogServiceClient).reserveSeats(eq("c1"), eq(2), any(), anyString());
+        verify(catalogServiceClient, never()).reserveSeats(eq("c2"), anyInt(), any(), anyString());
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> rows) -> rows.size() == 2));
+        verifyNoInteractions(seatReleases);
+    }
+
+    @Test
+    void batchOnFullCourseGrantsSeatsInRequestOrder() {
+        grant("c1", 2);
+
+        List<BatchEnrollmentResult> results = enrollmentService.enrollBatch(List.of(
+                new EnrollmentKey("c1", "s1"), new EnrollmentKey("c1", "s2"), new EnrollmentKey("c1", "s3")));
+
+        assertThat(results).extracting(BatchEnrollmentResult::status).containsExactly(
+                BatchEnrollmentStatus.ENROLLED, BatchEnrollmentStatus.ENROLLED, BatchEnrollmentStatus.COURSE_FULL);
+    }
+
+    @Test
+    void batchHoldsNoStudentLockWhileReservingSeats() {
+        AtomicBoolean lockedDuringReserve = new AtomicBoolean();
+        when(catalogServiceClient.reserveSeats(eq("c1"), anyInt(), any(), anyString())).thenAnswer(invocation -> {
+            lockedDuringReserve.set(studentLocks.of("s1").isLocked());
+            return Mono.just(new SeatResponse("8082", "catalog-service", "c1", 1, "SUCCESS", null, null));
+        });
+
+        enrollmentService.enrollBatch(List.of(new EnrollmentKey("c1", "s1")));
+
+        assertThat(lockedDuringReserve).isFalse();
+        assertThat(studentLocks.of("s1").isLocked()).isFalse();
+    }
+
+    @Test
+    void batchDoesNotJumpAheadOfTheWaitlist() {
+        waitlist.join("c1", "s9");
+
+        List<BatchEnrollmentResult> results = enrollmentService.enrollBatch(List.of(new EnrollmentKey("c1", "s1")));
+
+        assertThat(results).extracting(BatchEnrollmentResult::status)
+                .containsExactly(BatchEnrollmentStatus.COURSE_FULL);
+        verify(catalogServiceClient, never()).reserveSeats(anyString(), anyInt(), any(), anyString());
+    }
+
+    @Test
+    void batchReturnsSeatsOfPairsEnrolledWhileReserving() {
+        when(repository.findPairs(any(), any()))
+                .thenReturn(List.of())
+                .thenReturn(List.<Object[]>of(new Object[]{"c1", "s2"}));
+        grant("c1", 2);
+
+        List<BatchEnrollmentResult> results = enrollmentService.enrollBatch(List.of(
+                new EnrollmentKey("c1", "s1"), new EnrollmentKey("c1", "s2")));
+
+        assertThat(results).extracting(BatchEnrollmentResult::status).containsExactly(
+                BatchEnrollmentStatus.ENROLLED, BatchEnrollmentStatus.ALREADY_ENROLLED);
+        verify(seatReleases).release(eq("c1"), eq(1), endsWith(":surplus"));
+    }
+
+    @Test
+    void batchInsertFailureCancelsReservationsByKey() {
+        grant("c1", 1);
+        grant("c2", 1);
+        when(jdbcTemplate.batchUpdate(anyString(), any(List.class))).thenThrow(new DuplicateKeyException("dup"));
+
+        assertThatThrownBy(() -> enrollmentService.enrollBatch(List.of(
+                new EnrollmentKey("c1", "s1"), new EnrollmentKey("c2", "s1"))))
+                .isInstanceOf(IllegalStateException.class);
+
+        ArgumentCaptor<String> reservedKey = ArgumentCaptor.forClass(String.class);
+        verify(catalogServiceClient).reserveSeats(eq("c1"), eq(1), any(), reservedKey.capture());
+        verify(seatReleases).cancel("c1", reservedKey.getValue());
+        verify(seatReleases).cancel(eq("c2"), anyString());
+        verify(seatReleases, never()).release(anyString(), anyInt(), anyString());
+    }
+
+    // ==================== 退课 ====================
+    @Test
+    void withdrawReleasesTheSeatWhenNobodyIsWaiting() {
+        when(repository.findById("e1")).thenReturn(Optional.of(enrollment("e1", "c1", "s1")));
+        when(repository.deleteByIdIfPresent("e1")).thenReturn(1);
+
+        WithdrawResult result = enrollmentService.withdraw("e1");
+
+        assertThat(result.promoted()).isNull();
+        verify(seatReleases).release("c1", 1, "withdraw:e1");
+    }
+
+    @Test
+    void withdrawHandsTheSeatToTheHeadOfTheWaitlist() {
+        waitlist.join("c1", "s9");
+        when(repository.findById("e1")).thenReturn(Optional.of(enrollment("e1", "c1", "s1")));
+        when(repository.deleteByIdIfPresent("e1")).thenReturn(1);
+        when(repository.saveAndFlush(any(EnrollmentRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        WithdrawResult result = enrollmentService.withdraw("e1");
+
+        assertThat(result.promoted().getStudentId()).isEqualTo("s9");
+        assertThat(waitlist.hasWaiting("c1")).isFalse();
+        verifyNoInteractions(seatReleases);
+    }
+
+    @Test
+    void withdrawOfMissingOrConcurrentlyDeletedEnrollmentIsRejected() {
+        when(repository.findById("missing")).thenReturn(Optional.empty());
+        when(repository.findById("e1")).thenReturn(Optional.of(enrollment("e1", "c1", "s1")));
+        when(repository.deleteByIdIfPresent("e1")).thenReturn(0);
+
+        assertThatThrownBy(() -> enrollmentService.withdraw("missing")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> enrollmentService.withdraw("e1")).isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(seatReleases);
+    }
+
+    private void grant(String courseId, int seats) {
+        when(catalogServiceClient.reserveSeats(eq(courseId), anyInt(), any(), anyString()))
+                .thenReturn(Mono.just(new SeatResponse("8082", "catalog-service", courseId, seats, "SUCCESS", null, null)));
+    }
+
+    private static EnrollmentRecord enrollment(String id, String courseId, String studentId) {
+        EnrollmentRecord record = new EnrollmentRecord(courseId, studentId);
+        record.setId(id);
+        return record;
+    }
+}
@@ -0,0 +1,120 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import com.zjgsu.ljy.coursecloud.enrollment.client.CatalogServiceClient;
+import com.zjgsu.ljy.coursecloud.enrollment.client.DownstreamMetrics;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SeatReleasesTest {
+
+    private static final String SEAT_BODY = """
+            {"port":"8082","hostname":"catalog-service","courseId":"c1","seats":1,"status":"SUCCESS","message":null}""";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private HttpStatus status = HttpStatus.OK;
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private CatalogServiceClient client;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        client = new CatalogServiceClient(WebClient.builder().exchangeFunction(this::exchange),
+                "http://catalog-service", Duration.ofSeconds(2), circuitBreakerRegistry,
+                BulkheadRegistry.ofDefaults(), new DownstreamMetrics(meterRegistry));
+    }
+
+    @Test
+    void releasesAreSentWhileTheCircuitBreakerIsOpen() {
+        circuitBreakerRegistry.circuitBreaker("catalog-service").transitionToOpenState();
+        SeatReleases releases = releases(0, Duration.ofHours(1));
+
+        releases.cancel("c1", "s1:c1:k");
+        releases.release("c1", 1, "withdraw:e1");
+
+        assertThat(requests).containsExactly("/api/courses/c1/seats/cancel?key=s1:c1:k",
+                "/api/courses/c1/seats/release?count=1&key=withdraw:e1");
+        assertThat(releases.pending()).isZero();
+    }
+
+    @Test
+    void failedReleaseIsRetriedWithTheSameKeyUntilItSucceeds() {
+        failuresLeft.set(2);
+        SeatReleases releases = releases(0, Duration.ofHours(1));
+
+        releases.cancel("c1", "s1:c1:k");
+        assertThat(releases.pending()).isEqualTo(1);
+        releases.retryDue();
+        releases.retryDue();
+        releases.retryDue();
+
+        assertThat(requests).hasSize(3).allMatch(uri -> uri.endsWith("key=s1:c1:k"));
+        assertThat(releases.pending()).isZero();
+    }
+
+    @Test
+    void retriesWaitForTheBackoff() {
+        failuresLeft.set(1);
+        SeatReleases releases = releases(60_000, Duration.ofHours(1));
+
+        releases.cancel("c1", "s1:c1:k");
+        releases.retryDue();
+
+        assertThat(requests).hasSize(1);
+        assertThat(releases.pending()).isEqualTo(1);
+    }
+
+    @Test
+    void missingCourseIsNotRetried() {
+        status = HttpStatus.NOT_FOUND;
+        SeatReleases releases = releases(0, Duration.ofHours(1));
+
+        releases.release("c1", 1, "withdraw:e1");
+
+        assertThat(releases.pending()).isZero();
+    }
+
+    @Test
+    void releasesPastMaxAgeAreAbandoned() {
+        failuresLeft.set(Integer.MAX_VALUE);
+        SeatReleases releases = releases(0, Duration.ZERO);
+
+        releases.cancel("c1", "s1:c1:k");
+
+        assertThat(releases.pending()).isZero();
+        assertThat(meterRegistry.counter("enrollment.seat_release.abandoned").count()).isEqualTo(1);
+    }
+
+    private SeatReleases releases(long backoffMs, Duration maxAge) {
+        return new SeatReleases(client, meterRegistry, backoffMs, backoffMs, maxAge);
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request) {
+        requests.add(request.url().getPath() + "?" + request.url().getQuery());
+        if (failuresLeft.getAndDecrement() > 0) {
+            return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+        return Mono.just(ClientResponse.create(status)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(SEAT_BODY)
+                .build());
+    }
+}
@@ -0,0 +1,140 @@
+package com.zjgsu.ljy.coursecloud.enrollment.service;
+
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationPublisher;
+import com.zjgsu.ljy.coursecloud.enrollment.model.WaitlistEntry;
+import com.zjgsu.ljy.coursecloud.enrollment.repository.WaitlistRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WaitlistTest {
+
+    private WaitlistRepository repository;
+    private PlatformTransactionManager transactionManager;
+    private Waitlist waitlist;
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(WaitlistRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(repository.saveAndFlush(any(WaitlistEntry.class))).thenAnswer(invocation -> {
+            WaitlistEntry entry = invocation.getArgument(0);
+            entry.setId(nextId.getAndIncrement());
+            return entry;
+        });
+        when(repository.deleteByIdIfPresent(anyLong())).thenReturn(1);
+        waitlist = new Waitlist(repository, mock(InvalidationPublisher.class), transactionManager,
+                new SimpleMeterRegistry(), true, 1000, 30000);
+    }
+
+    @Test
+    void positionsFollowJoinOrderAndCloseGapsOnLeave() {
+        for (int i = 1; i <= 5; i++) {
+            assertThat(waitlist.join("c1", "s" + i)).isEqualTo(i);
+        }
+        assertThat(waitlist.join("c1", "s3")).isEqualTo(3);
+
+        waitlist.leave("c1", "s2");
+        waitlist.leave("c1", "s1");
+
+        assertThat(waitlist.position("c1", "s3")).isEqualTo(1);
+        assertThat(waitlist.position("c1", "s5")).isEqualTo(3);
+        assertThat(waitlist.position("c1", "s1")).isZero();
+        assertThat(waitlist.peek("c1").getStudentId()).isEqualTo("s3");
+        assertThat(waitlist.list("c1")).containsExactly("s3", "s4", "s5");
+    }
+
+    @Test
+    void positionsStayExactAcrossCompaction() {
+        // 远超初始容量的加入 / 退出交替，触发多次压缩；与按顺序保存的参照列表逐一比对
+        Random random = new Random(7);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                String studentId = "s" + i;
+                waitlist.join("c1", studentId);
+                expected.add(studentId);
+            } else {
+                String studentId = expected.remove(random.nextInt(expected.size()));
+                waitlist.leave("c1", studentId);
+            }
+        }
+
+        assertThat(waitlist.list("c1")).isEqualTo(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(waitlist.position("c1", expected.get(i))).isEqualTo(i + 1);
+        }
+        assertThat(waitlist.size()).isEqualTo(expected.size());
+    }
+
+    @Test
+    void claimPromotesInFifoOrder() {
+        waitlist.join("c1", "s1");
+        waitlist.join("c1", "s2");
+        waitlist.join("c1", "s3");
+
+        List<String> admitted = new ArrayList<>();
+        WaitlistEntry head;
+        while ((head = waitlist.peek("c1")) != null) {
+            String studentId = head.getStudentId();
+            assertThat(waitlist.claim(head, () -> admitted.add(studentId))).isTrue();
+        }
+
+        assertThat(admitted).containsExactly("s1", "s2", "s3");
+        assertThat(waitlist.hasWaiting("c1")).isFalse();
+    }
+
+    @Test
+    void claimOfEntryTakenElsewhereSkipsAdmission() {
+        waitlist.join("c1", "s1");
+        waitlist.join("c1", "s2");
+        when(repository.deleteByIdIfPresent(anyLong())).thenReturn(0);
+
+        Object result = waitlist.claim(waitlist.peek("c1"), () -> {
+            throw new AssertionError("admission must not run");
+        });
+
+        assertThat(result).isNull();
+        assertThat(waitlist.peek("c1").getStudentId()).isEqualTo("s2");
+    }
+
+    @Test
+    void entryWrittenByAnotherInstanceIsReloadedWithoutInsert() {
+        when(repository.existsByCourseIdAndStudentId("c1", "s1")).thenReturn(true);
+        when(repository.findByCourseIdInOrder("c1")).thenReturn(List.of(
+                new WaitlistEntry(10L, "c1", "s0"), new WaitlistEntry(11L, "c1", "s1")));
+
+        assertThat(waitlist.join("c1", "s1")).isEqualTo(2);
+        verify(repository, never()).saveAndFlush(any(WaitlistEntry.class));
+    }
+
+    @Test
+    void concurrentDuplicateInsertRollsBackOnlyItsOwnTransaction() {
+        when(repository.saveAndFlush(any(WaitlistEntry.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_waitlist_course_student"));
+        when(repository.findByCourseIdInOrder("c1")).thenReturn(List.of(new WaitlistEntry(10L, "c1", "s1")));
+
+        assertThat(waitlist.join("c1", "s1")).isEqualTo(1);
+        // 冲突发生在独立的写入事务内，回滚的是该事务，调用方事务不受影响
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+}
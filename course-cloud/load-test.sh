@@ -0,0 +1,101 @@
+#!/bin/bash
+# load-test.sh - 本地端到端压测（无需 Docker / Nacos / MySQL）
+#
+# 以 loadtest 配置启动三个服务（内嵌 H2 + 静态服务发现），运行选课日流量压测，
+# 输出吞吐、延迟分布与超卖核对结果；出现超卖时退出码为 1。
+# 服务全量采样并导出追踪数据，压测结束后按关键路径分析最慢的选课请求（TraceReport）。
+#
+# 用法：./load-test.sh [--concurrency=64] [--burst-requests=5000] ...（参数见 LoadTest.Options）
+# 环境变量：SKIP_BUILD=1 跳过构建；JAVA_OPTS 追加服务 JVM 参数；EXTRA_PROFILES 叠加配置（如 virtual）
+
+set -eo pipefail
+
+# 颜色定义（增强可读性）
+RED='\033[0;31m'
+GREEN='\033[0;32m'
+BLUE='\033[0;34m'
+NC='\033[0m' # 重置颜色
+
+info() {
+    echo -e "${BLUE}[INFO]${NC} $1"
+}
+
+success() {
+    echo -e "${GREEN}[SUCCESS]${NC} $1"
+}
+
+error() {
+    echo -e "${RED}[ERROR]${NC} $1"
+}
+
+ROOT_DIR="$(cd "$(dirname "$0")" && pwd)"
+OUT_DIR="${ROOT_DIR}/benchmarks/target/loadtest"
+TRACE_DIR="${OUT_DIR}/traces"
+SERVICES="user-service:8081 catalog-service:8082 enrollment-service:8083"
+PROFILES="loadtest${EXTRA_PROFILES:+,${EXTRA_PROFILES}}"
+PIDS=()
+
+# 退出时停止本脚本启动的服务
+cleanup() {
+    for pid in "${PIDS[@]}"; do
+        kill "$pid" 2>/dev/null || true
+    done
+}
+trap cleanup EXIT
+
+# 1. 构建
+if [ "${SKIP_BUILD}" != "1" ]; then
+    info "构建服务与压测工具..."
+    (cd "${ROOT_DIR}/common" && mvn -B -q -DskipTests install)
+    (cd "${ROOT_DIR}/common-ratelimit" && mvn -B -q -DskipTests install)
+    for entry in $SERVICES; do
+        (cd "${ROOT_DIR}/${entry%%:*}" && mvn -B -q -DskipTests install)
+    done
+    (cd "${ROOT_DIR}/benchmarks" && mvn -B -q -DskipTests package)
+fi
+
+# 2. 启动服务
+rm -rf "${TRACE_DIR}"
+mkdir -p "${OUT_DIR}"
+for entry in $SERVICES; do
+    service=${entry%%:*}
+    port=${entry##*:}
+    info "启动 ${service}（端口 ${port}，配置 ${PROFILES}）..."
+    SPRING_PROFILES_ACTIVE="${PROFILES}" LOADTEST_TRACE_DIR="${TRACE_DIR}" \
+        java -Dfile.encoding=UTF-8 -Dstdout.encoding=UTF-8 ${JAVA_OPTS} \
+        -jar "${ROOT_DIR}/${service}/target/${service}.jar" --server.port="${port}" > "${OUT_DIR}/${service}.log" 2>&1 &
+    PIDS+=($!)
+done
+
+# 3. 等待健康检查
+for entry in $SERVICES; do
+    service=${entry%%:*}
+    port=${entry##*:}
+    for i in $(seq 1 90); do
+        if curl -s -o /dev/null "http://localhost:${port}/actuator/health"; then
+            success "${service} 已就绪"
+            break
+        fi
+        if [ "$i" -eq 90 ]; then
+            error "${service} 启动超时，日志：${OUT_DIR}/${service}.log"
+            exit 1
+        fi
+        sleep 1
+    done
+done
+
+# 4. 运行压测
+info "开始压测..."
+status=0
+java -Dfile.encoding=UTF-8 -Dstdout.encoding=UTF-8 -cp "${ROOT_DIR}/benchmarks/target/benchmarks.jar" \
+    com.zjgsu.ljy.coursecloud.benchmark.load.LoadTest --out="${OUT_DIR}" "$@" || status=$?
+
+# 5. 追踪分析（先停止服务，确保 span 全部写出）
+cleanup
+for pid in "${PIDS[@]}"; do
+    wait "$pid" 2>/dev/null || true
+done
+PIDS=()
+java -Dfile.encoding=UTF-8 -Dstdout.encoding=UTF-8 -cp "${ROOT_DIR}/benchmarks/target/benchmarks.jar" \
+    com.zjgsu.ljy.coursecloud.benchmark.load.TraceReport --dir="${TRACE_DIR}"
+exit $status
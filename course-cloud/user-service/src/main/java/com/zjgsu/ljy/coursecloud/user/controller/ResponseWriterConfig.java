@@ -0,0 +1,74 @@
+package com.zjgsu.ljy.coursecloud.user.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.zjgsu.ljy.coursecloud.common.web.PageResponse;
+import com.zjgsu.ljy.coursecloud.common.web.ServiceResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 响应包装（ServiceResponse / PageResponse）使用启动时构建好的 ObjectWriter 写出，
+ * 跳过通用 Jackson 转换器每次请求的类型解析与 writer 创建
+ */
+@Configuration
+public class ResponseWriterConfig implements WebMvcConfigurer {
+
+    private final ObjectMapper objectMapper;
+
+    public ResponseWriterConfig(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new EnvelopeConverter(Map.of(
+                ServiceResponse.class, writerFor(ServiceResponse.class),
+                PageResponse.class, writerFor(PageResponse.class))));
+    }
+
+    // 写出后不关闭响应流，由容器负责
+    private ObjectWriter writerFor(Class<?> type) {
+        return objectMapper.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    static final class EnvelopeConverter extends AbstractHttpMessageConverter<Object> {
+
+        private final Map<Class<?>, ObjectWriter> writers;
+
+        EnvelopeConverter(Map<Class<?>, ObjectWriter> writers) {
+            super(MediaType.APPLICATION_JSON);
+            this.writers = writers;
+        }
+
+        @Override
+        protected boolean supports(Class<?> clazz) {
+            return writers.containsKey(clazz);
+        }
+
+        @Override
+        protected boolean canRead(MediaType mediaType) {
+            return false;
+        }
+
+        @Override
+        protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+            throw new UnsupportedOperationException("Envelope types are write-only");
+        }
+
+        @Override
+        protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+            writers.get(value.getClass()).writeValue(outputMessage.getBody(), value);
+        }
+    }
+}
@@ -1,20 +1,33 @@
 package com.zjgsu.ljy.coursecloud.user.controller;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ljy.coursecloud.common.web.InstanceIdentity;
+import com.zjgsu.ljy.coursecloud.common.web.PageResponse;
+import com.zjgsu.ljy.coursecloud.common.web.ServiceResponse;
 import com.zjgsu.ljy.coursecloud.user.model.Student;
 import com.zjgsu.ljy.coursecloud.user.model.Teacher;
 import com.zjgsu.ljy.coursecloud.user.service.UserService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -26,39 +39,30 @@ public class UserController {
     private static final Logger log = LoggerFactory.getLogger(UserController.class);
 
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final InstanceIdentity identity;
 
-    @Value("${server.port}")
-    private String currentPort;
-
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper, InstanceIdentity identity) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.identity = identity;
     }
 
-    // ==================== 辅助方法：获取主机名 ====================
-    private String getHostname() {
-        // 优先使用环境变量 HOSTNAME (Docker 容器中最可靠)
-        String hostname = System.getenv("HOSTNAME");
-        if (hostname != null && !hostname.isEmpty()) {
-            return hostname;
-        }
-
-        // 备用方案：使用 InetAddress
+    private static void writeLine(JsonGenerator generator, Object value) {
         try {
-            return InetAddress.getLocalHost().getHostName();
-        } catch (Exception e) {
-            log.warn("Failed to get hostname: {}", e.getMessage());
+            generator.writeObject(value);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
-        // 最后的 fallback
-        return "unknown-" + currentPort;
     }
 
     // ==================== Student Endpoints ====================
     @PostMapping("/students")
     @ResponseStatus(HttpStatus.CREATED)
-    public Map<String, Object> createStudent(@Valid @RequestBody StudentRequest request) {
+    public ServiceResponse<StudentResponse> createStudent(@Valid @RequestBody StudentRequest request) {
         log.info("User Service [port: {}, hostname: {}] creating student: {}",
-                currentPort, getHostname(), request.studentId());
+                identity.port(), identity.hostname(), request.studentId());
 
         Student student = new Student(
                 request.username(),
@@ -70,86 +74,95 @@ public class UserController {
         );
         Student created = userService.createStudent(student);
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("port", currentPort);
-        response.put("hostname", getHostname());
-        response.put("data", StudentResponse.from(created));
-        response.put("status", "SUCCESS");
-        return response;
+        return ServiceResponse.success(identity, StudentResponse.from(created));
     }
 
     @GetMapping("/students")
-    public Map<String, Object> getAllStudents() {
+    public ServiceResponse<List<StudentResponse>> getAllStudents() {
         log.info("User Service [port: {}, hostname: {}] getting all students",
-                currentPort, getHostname());
+                identity.port(), identity.hostname());
 
         List<StudentResponse> students = userService.getAllStudents().stream()
                 .map(StudentResponse::from)
                 .collect(Collectors.toList());
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("port", currentPort);
-        response.put("hostname", getHostname());
-        response.put("data", students);
-        response.put("count", students.size());
-        response.put("status", "SUCCESS");
-        return response;
+        return ServiceResponse.list(identity, students);
+    }
+
+    @GetMapping("/students/page")
+    public PageResponse<StudentResponse> getStudentPage(@RequestParam(required = false) String after,
+                                                        @RequestParam(defaultValue = "50") @Min(1) @Max(500) int limit) {
+        log.info("User Service [port: {}, hostname: {}] getting students after: {}, limit: {}",
+                identity.port(), identity.hostname(), after, limit);
+
+        List<StudentResponse> students = userService.getStudentPage(after, limit).stream()
+                .map(StudentResponse::from)
+                .collect(Collectors.toList());
+
+        // 不足一页说明已到末尾
+        return PageResponse.of(identity, students,
+                students.size() == limit ? students.get(students.size() - 1).id() : null);
+    }
+
+    @GetMapping(value = "/students/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStudents() {
+        log.info("User Service [port: {}, hostname: {}] streaming all students",
+                identity.port(), identity.hostname());
+
+        // NDJSON：每行一个 JSON 对象，边读边写，内存占用恒定
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.setRootValueSeparator(null);
+            userService.forEachStudent(student -> writeLine(generator, StudentResponse.from(student)));
+            generator.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/students/{id}")
-    public ResponseEntity<Map<String, Object>> getStudentById(@PathVariable String id) {
+    public ResponseEntity<ServiceResponse<StudentResponse>> getStudentById(@PathVariable String id) {
         log.info("User Service [port: {}, hostname: {}] getting student by id: {}",
-                currentPort, getHostname(), id);
+                identity.port(), identity.hostname(), id);
 
         return userService.getStudentById(id)
-                .map(student -> {
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("port", currentPort);
-                    response.put("hostname", getHostname());
-                    response.put("data", StudentResponse.from(student));
-                    response.put("status", "SUCCESS");
-                    return ResponseEntity.ok(response);
-                })
-                .orElseGet(() -> {
-                    Map<String, Object> errorResponse = new HashMap<>();
-                    errorResponse.put("port", currentPort);
-                    errorResponse.put("hostname", getHostname());
-                    errorResponse.put("status", "ERROR");
-                    errorResponse.put("message", "Student with id " + id + " not found");
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
-                });
+                .map(student -> ResponseEntity.ok(ServiceResponse.success(identity, StudentResponse.from(student))))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ServiceResponse.error(identity, "Student with id " + id + " not found")));
     }
 
     @GetMapping("/students/studentId/{studentId}")
-    public ResponseEntity<Map<String, Object>> getStudentByStudentId(@PathVariable String studentId) {
+    public ResponseEntity<ServiceResponse<StudentResponse>> getStudentByStudentId(@PathVariable String studentId) {
         log.info("User Service [port: {}, hostname: {}] getting student by studentId: {}",
-                currentPort, getHostname(), studentId);
+                identity.port(), identity.hostname(), studentId);
 
         return userService.getStudentByStudentId(studentId)
-                .map(student -> {
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("port", currentPort);
-                    response.put("hostname", getHostname());
-                    response.put("data", StudentResponse.from(student));
-                    response.put("status", "SUCCESS");
-                    return ResponseEntity.ok(response);
-                })
-                .orElseGet(() -> {
-                    Map<String, Object> errorResponse = new HashMap<>();
-                    errorResponse.put("port", currentPort);
-                    errorResponse.put("hostname", getHostname());
-                    errorResponse.put("status", "ERROR");
-                    errorResponse.put("message", "Student with studentId " + studentId + " not found");
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
-                });
+                .map(student -> ResponseEntity.ok(ServiceResponse.success(identity, StudentResponse.from(student))))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ServiceResponse.error(identity, "Student with studentId " + studentId + " not found")));
+    }
+
+    @PostMapping("/students/batch")
+    public ServiceResponse<Map<String, StudentResponse>> getStudentsByStudentIds(@RequestBody @NotEmpty @Size(max = 20000) List<String> studentIds) {
+        log.info("User Service [port: {}, hostname: {}] batch getting {} students by studentId",
+                identity.port(), identity.hostname(), studentIds.size());
+
+        Map<String, StudentResponse> students = new LinkedHashMap<>();
+        userService.getStudentsByStudentIds(studentIds)
+                .forEach((studentId, student) -> students.put(studentId, StudentResponse.from(student)));
+        List<String> missing = studentIds.stream()
+                .distinct()
+                .filter(studentId -> !students.containsKey(studentId))
+                .toList();
+
+        return ServiceResponse.batch(identity, students, missing);
     }
 
     @PutMapping("/students/{id}")
-    public ResponseEntity<Map<String, Object>> updateStudent(
+    public ResponseEntity<ServiceResponse<StudentResponse>> updateStudent(
             @PathVariable String id,
             @Valid @RequestBody StudentRequest request) {
         log.info("User Service [port: {}, hostname: {}] updating student: {}",
-                currentPort, getHostname(), id);
+                identity.port(), identity.hostname(), id);
 
         return userService.getStudentById(id)
                 .map(existing -> {
@@ -161,37 +174,26 @@ public class UserController {
                     existing.setGrade(request.grade());
                     Student updated = userService.updateStudent(existing);
 
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("port", currentPort);
-                    response.put("hostname", getHostname());
-                    response.put("data", StudentResponse.from(updated));
-                    response.put("status", "SUCCESS");
-                    return ResponseEntity.ok(response);
+                    return ResponseEntity.ok(ServiceResponse.success(identity, StudentResponse.from(updated)));
                 })
-                .orElseGet(() -> {
-                    Map<String, Object> errorResponse = new HashMap<>();
-                    errorResponse.put("port", currentPort);
-                    errorResponse.put("hostname", getHostname());
-                    errorResponse.put("status", "ERROR");
-                    errorResponse.put("message", "Student with id " + id + " not found");
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
-                });
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ServiceResponse.error(identity, "Student with id " + id + " not found")));
     }
 
     @DeleteMapping("/students/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteStudent(@PathVariable String id) {
         log.info("User Service [port: {}, hostname: {}] deleting student: {}",
-                currentPort, getHostname(), id);
+                identity.port(), identity.hostname(), id);
         userService.deleteStudent(id);
     }
 
     // ==================== Teacher Endpoints ====================
     @PostMapping("/teachers")
     @ResponseStatus(HttpStatus.CREATED)
-    public Map<String, Object> createTeacher(@Valid @RequestBody TeacherRequest request) {
+    public ServiceResponse<TeacherResponse> createTeacher(@Valid @RequestBody TeacherRequest request) {
         log.info("User Service [port: {}, hostname: {}] creating teacher: {}",
-                currentPort, getHostname(), request.teacherId());
+                identity.port(), identity.hostname(), request.teacherId());
 
         Teacher teacher = new Teacher(
                 request.username(),
@@ -203,85 +205,78 @@ public class UserController {
         );
         Teacher created = userService.createTeacher(teacher);
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("port", currentPort);
-        response.put("hostname", getHostname());
-        response.put("data", TeacherResponse.from(created));
-        response.put("status", "SUCCESS");
-        return response;
+        return ServiceResponse.success(identity, TeacherResponse.from(created));
     }
 
     @GetMapping("/teachers")
-    public Map<String, Object> getAllTeachers() {
+    public ServiceResponse<List<TeacherResponse>> getAllTeachers() {
         log.info("User Service [port: {}, hostname: {}] getting all teachers",
-                currentPort, getHostname());
+                identity.port(), identity.hostname());
 
         List<TeacherResponse> teachers = userService.getAllTeachers().stream()
                 .map(TeacherResponse::from)
                 .collect(Collectors.toList());
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("port", currentPort);
-        response.put("hostname", getHostname());
-        response.put("data", teachers);
-        response.put("count", teachers.size());
-        response.put("status", "SUCCESS");
-        return response;
+        return ServiceResponse.list(identity, teachers);
+    }
+
+    @GetMapping("/teachers/page")
+    public PageResponse<TeacherResponse> getTeacherPage(@RequestParam(required = false) String after,
+                                                        @RequestParam(defaultValue = "50") @Min(1) @Max(500) int limit) {
+        log.info("User Service [port: {}, hostname: {}] getting teachers after: {}, limit: {}",
+                identity.port(), identity.hostname(), after, limit);
+
+        List<TeacherResponse> teachers = userService.getTeacherPage(after, limit).stream()
+                .map(TeacherResponse::from)
+                .collect(Collectors.toList());
+
+        // 不足一页说明已到末尾
+        return PageResponse.of(identity, teachers,
+                teachers.size() == limit ? teachers.get(teachers.size() - 1).id() : null);
+    }
+
+    @GetMapping(value = "/teachers/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTeachers() {
+        log.info("User Service [port: {}, hostname: {}] streaming all teachers",
+                identity.port(), identity.hostname());
+
+        // NDJSON：每行一个 JSON 对象，边读边写，内存占用恒定
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.setRootValueSeparator(null);
+            userService.forEachTeacher(teacher -> writeLine(generator, TeacherResponse.from(teacher)));
+            generator.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/teachers/{id}")
-    public ResponseEntity<Map<String, Object>> getTeacherById(@PathVariable String id) {
+    public ResponseEntity<ServiceResponse<TeacherResponse>> getTeacherById(@PathVariable String id) {
         log.info("User Service [port: {}, hostname: {}] getting teacher by id: {}",
-                currentPort, getHostname(), id);
+                identity.port(), identity.hostname(), id);
 
         return userService.getTeacherById(id)
-                .map(teacher -> {
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("port", currentPort);
-                    response.put("hostname", getHostname());
-                    response.put("data", TeacherResponse.from(teacher));
-                    response.put("status", "SUCCESS");
-                    return ResponseEntity.ok(response);
-                })
-                .orElseGet(() -> {
-                    Map<String, Object> errorResponse = new HashMap<>();
-                    errorResponse.put("port", currentPort);
-                    errorResponse.put("hostname", getHostname());
-                    errorResponse.put("status", "ERROR");
-                    errorResponse.put("message", "Teacher with id " + id + " not found");
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
-                });
+                .map(teacher -> ResponseEntity.ok(ServiceResponse.success(identity, TeacherResponse.from(teacher))))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ServiceResponse.error(identity, "Teacher with id " + id + " not found")));
     }
 
     @GetMapping("/teachers/teacherId/{teacherId}")
-    public ResponseEntity<Map<String, Object>> getTeacherByTeacherId(@PathVariable String teacherId) {
+    public ResponseEntity<ServiceResponse<TeacherResponse>> getTeacherByTeacherId(@PathVariable String teacherId) {
         log.info("User Service [port: {}, hostname: {}] getting teacher by teacherId: {}",
-                currentPort, getHostname(), teacherId);
+                identity.port(), identity.hostname(), teacherId);
 
         return userService.getTeacherByTeacherId(teacherId)
-                .map(teacher -> {
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("port", currentPort);
-                    response.put("hostname", getHostname());
-                    response.put("data", TeacherResponse.from(teacher));
-                    response.put("status", "SUCCESS");
-                    return ResponseEntity.ok(response);
-                })
-                .orElseGet(() -> {
-                    Map<String, Object> errorResponse = new HashMap<>();
-                    errorResponse.put("port", currentPort);
-                    errorResponse.put("hostname", getHostname());
-                    errorResponse.put("status", "ERROR");
-                    errorResponse.put("message", "Teacher with teacherId " + teacherId + " not found");
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
-                });
+                .map(teacher -> ResponseEntity.ok(ServiceResponse.success(identity, TeacherResponse.from(teacher))))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ServiceResponse.error(identity, "Teacher with teacherId " + teacherId + " not found")));
     }
 
     @DeleteMapping("/teachers/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteTeacher(@PathVariable String id) {
         log.info("User Service [port: {}, hostname: {}] deleting teacher: {}",
-                currentPort, getHostname(), id);
+                identity.port(), identity.hostname(), id);
         userService.deleteTeacher(id);
     }
 
@@ -290,8 +285,8 @@ public class UserController {
     public Map<String, Object> healthCheck() {
         Map<String, Object> health = new HashMap<>();
         health.put("status", "UP");
-        health.put("port", currentPort);
-        health.put("hostname", getHostname());
+        health.put("port", identity.port());
+        health.put("hostname", identity.hostname());
         health.put("service", "user-service");
         health.put("timestamp", System.currentTimeMillis());
         return health;
@@ -316,8 +311,8 @@ public class UserController {
         Map<String, Object> response = new HashMap<>();
         response.put("service", "user-service");
         response.put("endpoint", "/api/students/test");
-        response.put("port", currentPort);
-        response.put("hostname", getHostname());
+        response.put("port", identity.port());
+        response.put("hostname", identity.hostname());
 
         // ★ 添加容器IP,用于负载均衡测试
         try {
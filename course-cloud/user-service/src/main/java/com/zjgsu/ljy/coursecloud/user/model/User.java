@@ -25,7 +25,7 @@ public abstract class User {
     private String email;
 
     @Enumerated(EnumType.STRING)
-    @Column(name = "user_type_enum", nullable = false, insertable = false, updatable = false)
+    @Column(name = "user_type_enum", nullable = false, updatable = false)
     private UserType userType;
 
     @Column(name = "created_at", nullable = false, updatable = false)
@@ -2,15 +2,36 @@ package com.zjgsu.ljy.coursecloud.user.repository;
 
 
 import com.zjgsu.ljy.coursecloud.user.model.Student;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface StudentRepository extends JpaRepository<Student, String> {
     Optional<Student> findByStudentId(String studentId);
+    List<Student> findByStudentIdIn(Collection<String> studentIds);
     boolean existsByStudentId(String studentId);
     boolean existsByEmail(String email);
 
+    // 键集分页：按主键排序，从游标之后取 limit 条
+    List<Student> findAllByOrderByIdAsc(Limit limit);
+    List<Student> findByIdGreaterThanOrderByIdAsc(String after, Limit limit);
+
+    // 流式读取：配合 MySQL useCursorFetch=true 使用服务端游标，按 fetchSize 分批拉取
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT s FROM Student s")
+    Stream<Student> streamAll();
+
 }
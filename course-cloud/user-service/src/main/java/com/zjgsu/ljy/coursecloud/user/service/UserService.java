@@ -1,25 +1,43 @@
 package com.zjgsu.ljy.coursecloud.user.service;
 
 
+import com.zjgsu.ljy.coursecloud.common.invalidation.InvalidationPublisher;
 import com.zjgsu.ljy.coursecloud.user.model.Student;
 import com.zjgsu.ljy.coursecloud.user.model.Teacher;
 import com.zjgsu.ljy.coursecloud.user.repository.StudentRepository;
 import com.zjgsu.ljy.coursecloud.user.repository.TeacherRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
 public class UserService {
     private final StudentRepository studentRepository;
     private final TeacherRepository teacherRepository;
+    private final EntityManager entityManager;
+    private final InvalidationPublisher invalidationPublisher;
 
-    public UserService(StudentRepository studentRepository, TeacherRepository teacherRepository) {
+    private static final int QUERY_CHUNK_SIZE = 1000;  // IN 列表分片，避免超出驱动参数上限
+    private static final String STUDENT_CACHE = "student";  // 其他服务按学号缓存的学生信息
+
+    public UserService(StudentRepository studentRepository, TeacherRepository teacherRepository,
+                       EntityManager entityManager, InvalidationPublisher invalidationPublisher) {
         this.studentRepository = studentRepository;
         this.teacherRepository = teacherRepository;
+        this.entityManager = entityManager;
+        this.invalidationPublisher = invalidationPublisher;
     }
 
     public Student createStudent(Student student) {
@@ -50,7 +68,55 @@ public class UserService {
         return teacherRepository.findAll();
     }
 
+    /**
+     * 键集分页获取学生，after 为上一页最后一条的 ID（首页传 null）
+     */
+    @Transactional(readOnly = true)
+    public List<Student> getStudentPage(String after, int limit) {
+        return after == null
+                ? studentRepository.findAllByOrderByIdAsc(Limit.of(limit))
+                : studentRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+    }
+
+    /**
+     * 键集分页获取教师，after 为上一页最后一条的 ID（首页传 null）
+     */
+    @Transactional(readOnly = true)
+    public List<Teacher> getTeacherPage(String after, int limit) {
+        return after == null
+                ? teacherRepository.findAllByOrderByIdAsc(Limit.of(limit))
+                : teacherRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+    }
+
+    /**
+     * 逐行遍历所有学生，处理完即从持久化上下文中移除，内存占用与总行数无关
+     */
+    @Transactional(readOnly = true)
+    public void forEachStudent(Consumer<Student> action) {
+        try (Stream<Student> students = studentRepository.streamAll()) {
+            students.forEach(student -> {
+                action.accept(student);
+                entityManager.detach(student);
+            });
+        }
+    }
+
+    /**
+     * 逐行遍历所有教师，处理完即从持久化上下文中移除，内存占用与总行数无关
+     */
+    @Transactional(readOnly = true)
+    public void forEachTeacher(Consumer<Teacher> action) {
+        try (Stream<Teacher> teachers = teacherRepository.streamAll()) {
+            teachers.forEach(teacher -> {
+                action.accept(teacher);
+                entityManager.detach(teacher);
+            });
+        }
+    }
+
     public void deleteStudent(String id) {
+        studentRepository.findById(id)
+                .ifPresent(student -> invalidationPublisher.publish(STUDENT_CACHE, student.getStudentId()));
         studentRepository.deleteById(id);
     }
 
@@ -62,10 +128,33 @@ public class UserService {
         return studentRepository.findByStudentId(studentId);
     }
 
+    /**
+     * 按学号批量查询，IN 列表按 QUERY_CHUNK_SIZE 分片，返回以学号为键的 Map
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Student> getStudentsByStudentIds(Collection<String> studentIds) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(studentIds));
+        Map<String, Student> found = new LinkedHashMap<>();
+        for (int i = 0; i < distinct.size(); i += QUERY_CHUNK_SIZE) {
+            List<String> chunk = distinct.subList(i, Math.min(i + QUERY_CHUNK_SIZE, distinct.size()));
+            for (Student student : studentRepository.findByStudentIdIn(chunk)) {
+                found.put(student.getStudentId(), student);
+            }
+        }
+        return found;
+    }
+
     public Optional<Teacher> getTeacherByTeacherId(String teacherId) {
         return teacherRepository.findByTeacherId(teacherId);
     }
+    /**
+     * 更新学生；学号可能被修改，新旧学号都通知其他服务失效
+     */
     public Student updateStudent(Student student) {
-        return studentRepository.save(student);
+        studentRepository.findById(student.getId())
+                .ifPresent(existing -> invalidationPublisher.publish(STUDENT_CACHE, existing.getStudentId()));
+        Student saved = studentRepository.save(student);
+        invalidationPublisher.publish(STUDENT_CACHE, saved.getStudentId());
+        return saved;
     }
 }